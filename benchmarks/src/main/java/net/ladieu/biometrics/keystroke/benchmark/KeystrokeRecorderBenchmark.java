@@ -0,0 +1,91 @@
+package net.ladieu.biometrics.keystroke.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.ladieu.biometrics.keystroke.model.KeystrokeRecorder;
+import net.ladieu.biometrics.keystroke.model.KeystrokeRecorderImpl;
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+import net.ladieu.biometrics.keystroke.model.LowerCaseKeystrokeFactory;
+import net.ladieu.biometrics.keystroke.model.PrimitiveKeystrokeRecorder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Replays a typed password through a recorder, the way a server would replay
+ * a session's raw key events. Each operation is one session of two events per
+ * character; run with -prof gc and check gc.alloc.rate.norm, which should be
+ * 0 B/op for the primitive recorder.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KeystrokeRecorderBenchmark {
+
+	@Param( { "primitive", "keystroke" })
+	public String recorderType;
+
+	@Param( { "8", "16", "32" })
+	public int passwordLength;
+
+	private KeystrokeRecorder recorder;
+	private char[] characters;
+	private long[] downTimes;
+	private long[] upTimes;
+
+	@Setup
+	public void setUp() {
+		if ("primitive".equals(recorderType)) {
+			recorder = new PrimitiveKeystrokeRecorder(
+					new LowerCaseKeystrokeFactory());
+		} else {
+			recorder = new KeystrokeRecorderImpl(
+					new LowerCaseKeystrokeFactory());
+		}
+
+		KeystrokeSequence sample = new SyntheticKeystrokes(passwordLength, 42)
+				.nextSample();
+
+		characters = new char[passwordLength];
+		downTimes = new long[passwordLength];
+		upTimes = new long[passwordLength];
+
+		for (int i = 0; i < passwordLength; i++) {
+			characters[i] = sample.getValue(i);
+			downTimes[i] = sample.getStartTime(i);
+			upTimes[i] = sample.getEndTime(i);
+		}
+	}
+
+	/**
+	 * Presses and releases every character, checking for completion after
+	 * each release as KeystrokeDirector does.
+	 */
+	@Benchmark
+	public int replaySession() {
+		recorder.reset();
+
+		int completions = 0;
+		for (int i = 0; i < characters.length; i++) {
+			recorder.keyDown(characters[i], downTimes[i]);
+			recorder.keyUp(characters[i], upTimes[i]);
+			if (0 == recorder.getActiveKeyCount()) {
+				completions++;
+			}
+		}
+
+		return completions + recorder.getResultView().size();
+	}
+}
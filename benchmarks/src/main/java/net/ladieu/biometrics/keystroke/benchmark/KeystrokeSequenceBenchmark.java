@@ -0,0 +1,82 @@
+package net.ladieu.biometrics.keystroke.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.ladieu.biometrics.keystroke.model.Keystroke;
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+import net.ladieu.biometrics.keystroke.model.PackedKeystrokeSequence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of walking and copying a single sequence, comparing the linked
+ * Keystroke form with indexed and packed access.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KeystrokeSequenceBenchmark {
+
+	@Param( { "8", "16", "32" })
+	public int passwordLength;
+
+	private KeystrokeSequence sequence;
+	private PackedKeystrokeSequence packedSequence;
+
+	@Setup
+	public void setUp() {
+		sequence = new SyntheticKeystrokes(passwordLength, 42).nextSample();
+		packedSequence = PackedKeystrokeSequence.pack(sequence);
+	}
+
+	@Benchmark
+	public long iterateKeystrokes() {
+		long total = 0;
+		for (Keystroke keystroke : sequence) {
+			total += keystroke.getDwellTime() + keystroke.getFlightTime();
+		}
+		return total;
+	}
+
+	@Benchmark
+	public long indexedTimings() {
+		long total = 0;
+		for (int i = 0; i < sequence.size(); i++) {
+			total += sequence.getDwellTime(i) + sequence.getFlightTime(i);
+		}
+		return total;
+	}
+
+	@Benchmark
+	public long packedTimings() {
+		long total = 0;
+		for (int i = 0; i < packedSequence.size(); i++) {
+			total += packedSequence.getDwellTime(i)
+					+ packedSequence.getFlightTime(i);
+		}
+		return total;
+	}
+
+	@Benchmark
+	public KeystrokeSequence createCopy() {
+		return sequence.createCopy();
+	}
+
+	@Benchmark
+	public PackedKeystrokeSequence pack() {
+		return PackedKeystrokeSequence.pack(sequence);
+	}
+}
@@ -0,0 +1,23 @@
+package net.ladieu.biometrics.keystroke.benchmark;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.List;
+
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+import net.ladieu.biometrics.keystroke.model.persistence.TemplateStorage;
+
+/**
+ * Storage that keeps nothing, so matcher benchmarks never touch the disk.
+ */
+class NullTemplateStorage implements TemplateStorage {
+
+	public List<KeystrokeSequence> getStoredTemplate(String userName)
+			throws IOException {
+		throw new FileNotFoundException(userName);
+	}
+
+	public void saveTemplate(String userName, List<KeystrokeSequence> template) {
+		// discarded
+	}
+}
@@ -0,0 +1,74 @@
+package net.ladieu.biometrics.keystroke.benchmark;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import net.ladieu.biometrics.keystroke.model.StatisticalMatcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Recalculating the statistics of long passphrases on the calling thread
+ * against spreading the positions over an executor.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParallelStatisticsBenchmark {
+
+	@Param( { "16", "48" })
+	public int passwordLength;
+
+	@Param( { "100", "1000" })
+	public int sampleCount;
+
+	@Param( { "false", "true" })
+	public boolean parallel;
+
+	private ExecutorService executor;
+	private StatisticalMatcher matcher;
+
+	@Setup
+	public void setUp() {
+		SyntheticKeystrokes typist = new SyntheticKeystrokes(passwordLength,
+				42);
+
+		matcher = new StatisticalMatcher("benchmark", typist.getPassword(),
+				new NullTemplateStorage());
+		matcher.addSequences(typist.nextSamples(sampleCount));
+
+		if (parallel) {
+			executor = Executors.newFixedThreadPool(Runtime.getRuntime()
+					.availableProcessors());
+			matcher.setStatisticsExecutor(executor, 0);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (null != executor) {
+			executor.shutdown();
+		}
+	}
+
+	@Benchmark
+	public StatisticalMatcher recalculateStats() {
+		matcher.recalculateStats();
+		return matcher;
+	}
+}
@@ -0,0 +1,92 @@
+package net.ladieu.biometrics.keystroke.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+import net.ladieu.biometrics.keystroke.model.StatisticalMatcher;
+import net.ladieu.biometrics.keystroke.model.distance.DistanceModel;
+import net.ladieu.biometrics.keystroke.model.distance.MahalanobisDistanceModel;
+import net.ladieu.biometrics.keystroke.model.distance.ScaledManhattanDistanceModel;
+import net.ladieu.biometrics.keystroke.model.distance.ZScoreDistanceModel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Verification, template analysis and adaptation cost at varying password lengths and
+ * template sizes, for the box and whisker statistics and each built-in
+ * DistanceModel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StatisticalMatcherBenchmark {
+
+	@Param( { "8", "16", "32" })
+	public int passwordLength;
+
+	@Param( { "10", "100", "1000" })
+	public int sampleCount;
+
+	@Param( { "boxPlot", "scaledManhattan", "zScore", "mahalanobis" })
+	public String model;
+
+	private StatisticalMatcher matcher;
+	private KeystrokeSequence genuineAttempt;
+
+	@Setup
+	public void setUp() {
+		SyntheticKeystrokes typist = new SyntheticKeystrokes(passwordLength,
+				42);
+
+		matcher = new StatisticalMatcher("benchmark", typist.getPassword(),
+				new NullTemplateStorage());
+		matcher.addSequences(typist.nextSamples(sampleCount));
+		matcher.setDistanceModel(createModel());
+		// a full window, so adapt() always replaces the oldest sample
+		matcher.setAdaptiveWindow(sampleCount);
+
+		genuineAttempt = typist.nextSample();
+	}
+
+	private DistanceModel createModel() {
+		if ("scaledManhattan".equals(model)) {
+			return new ScaledManhattanDistanceModel();
+		}
+		if ("zScore".equals(model)) {
+			return new ZScoreDistanceModel();
+		}
+		if ("mahalanobis".equals(model)) {
+			return new MahalanobisDistanceModel();
+		}
+		return null;
+	}
+
+	@Benchmark
+	public float getDistance() {
+		return matcher.getDistance(genuineAttempt);
+	}
+
+	@Benchmark
+	public StatisticalMatcher recalculateStats() {
+		matcher.recalculateStats();
+		return matcher;
+	}
+
+	@Benchmark
+	public boolean adapt() {
+		return matcher.adapt(genuineAttempt);
+	}
+}
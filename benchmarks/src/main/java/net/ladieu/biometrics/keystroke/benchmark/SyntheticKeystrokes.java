@@ -0,0 +1,100 @@
+package net.ladieu.biometrics.keystroke.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.ladieu.biometrics.keystroke.model.Keystroke;
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+
+/**
+ * Generates repeatable keystroke data for benchmarks. Each generator models a
+ * single typist: every position of the password gets its own mean dwell and
+ * flight time, and samples vary normally around those means, with the
+ * occasional hesitation to give the statistics some outliers.
+ */
+public class SyntheticKeystrokes {
+
+	private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz";
+
+	private static final double HESITATION_RATE = 0.02;
+
+	private final Random random;
+	private final String password;
+	private final long[] meanDwell;
+	private final long[] meanFlight;
+
+	/**
+	 * @param passwordLength
+	 *            number of keystrokes per sample
+	 * @param seed
+	 *            seed for the password, the typist and their samples
+	 */
+	public SyntheticKeystrokes(int passwordLength, long seed) {
+		super();
+		if (passwordLength < 1) {
+			throw new IllegalArgumentException(
+					"passwordLength must be positive");
+		}
+
+		random = new Random(seed);
+
+		char[] characters = new char[passwordLength];
+		meanDwell = new long[passwordLength];
+		meanFlight = new long[passwordLength];
+
+		for (int i = 0; i < passwordLength; i++) {
+			characters[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+			meanDwell[i] = 60 + random.nextInt(80);
+			meanFlight[i] = 40 + random.nextInt(200);
+		}
+
+		password = new String(characters);
+	}
+
+	public String getPassword() {
+		return password;
+	}
+
+	/**
+	 * @return a new, fully released sample of the password
+	 */
+	public KeystrokeSequence nextSample() {
+		KeystrokeSequence result = new KeystrokeSequence();
+
+		long time = 1000;
+		for (int i = 0; i < password.length(); i++) {
+			if (i > 0) {
+				time += vary(meanFlight[i]);
+			}
+
+			Keystroke keystroke = new Keystroke(password.charAt(i), time);
+			result.addKeystroke(keystroke);
+
+			time += vary(meanDwell[i]);
+			keystroke.release(time);
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return sampleCount new samples of the password
+	 */
+	public List<KeystrokeSequence> nextSamples(int sampleCount) {
+		List<KeystrokeSequence> result = new ArrayList<KeystrokeSequence>(
+				sampleCount);
+		for (int i = 0; i < sampleCount; i++) {
+			result.add(nextSample());
+		}
+		return result;
+	}
+
+	private long vary(long mean) {
+		double value = mean + random.nextGaussian() * mean * 0.15;
+		if (random.nextDouble() < HESITATION_RATE) {
+			value += mean * 3;
+		}
+		return Math.max(1, Math.round(value));
+	}
+}
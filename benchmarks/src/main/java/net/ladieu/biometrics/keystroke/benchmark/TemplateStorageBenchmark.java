@@ -0,0 +1,114 @@
+package net.ladieu.biometrics.keystroke.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+import net.ladieu.biometrics.keystroke.model.persistence.BinaryTemplateStorage;
+import net.ladieu.biometrics.keystroke.model.persistence.MappedTemplateStorage;
+import net.ladieu.biometrics.keystroke.model.persistence.SerializingTemplateStorage;
+import net.ladieu.biometrics.keystroke.model.persistence.TemplateStorage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Saving and loading a single user's template with each storage format, in a
+ * scratch directory under java.io.tmpdir.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TemplateStorageBenchmark {
+
+	private static final String USER_NAME = "benchmark";
+
+	@Param( { "serializing", "binary", "mapped" })
+	public String storageType;
+
+	@Param( { "16" })
+	public int passwordLength;
+
+	@Param( { "10", "100" })
+	public int sampleCount;
+
+	private File directory;
+	private TemplateStorage storage;
+	private List<KeystrokeSequence> template;
+
+	@Setup
+	public void setUp() throws IOException {
+		directory = File.createTempFile("template-benchmark", "");
+		if (!directory.delete() || !directory.mkdir()) {
+			throw new IOException("unable to create [" + directory + "]");
+		}
+
+		if ("serializing".equals(storageType)) {
+			storage = new SerializingTemplateStorage(directory);
+		} else if ("binary".equals(storageType)) {
+			storage = new BinaryTemplateStorage(directory);
+		} else if ("mapped".equals(storageType)) {
+			storage = new MappedTemplateStorage(new File(directory,
+					"templates.bin"));
+		} else {
+			throw new IllegalArgumentException("unknown storageType ["
+					+ storageType + "]");
+		}
+
+		template = new SyntheticKeystrokes(passwordLength, 42)
+				.nextSamples(sampleCount);
+		storage.saveTemplate(USER_NAME, template);
+	}
+
+	/**
+	 * The mapped store appends on every save, so reclaim the space between
+	 * iterations rather than letting the file grow for the whole run.
+	 */
+	@TearDown(Level.Iteration)
+	public void compact() throws IOException {
+		if (storage instanceof MappedTemplateStorage) {
+			((MappedTemplateStorage) storage).compact();
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		if (storage instanceof MappedTemplateStorage) {
+			((MappedTemplateStorage) storage).close();
+		}
+
+		File[] files = directory.listFiles();
+		if (null != files) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	@Benchmark
+	public void save() throws IOException {
+		storage.saveTemplate(USER_NAME, template);
+	}
+
+	@Benchmark
+	public List<KeystrokeSequence> load() throws IOException {
+		return storage.getStoredTemplate(USER_NAME);
+	}
+}
@@ -0,0 +1,208 @@
+package net.ladieu.biometrics.keystroke.controller;
+
+import java.util.concurrent.Executor;
+
+import javax.swing.SwingUtilities;
+
+import net.ladieu.biometrics.keystroke.controller.KeystrokeNotification.KeystrokeNotificationType;
+import net.ladieu.biometrics.keystroke.metrics.Counter;
+import net.ladieu.biometrics.keystroke.metrics.Metrics;
+
+/**
+ * Delivers notifications to another observer later, on an Executor, so the
+ * key listener that raised them returns without waiting on observer work.
+ *
+ * Notifications wait in a bounded ring buffer and are delivered in order.
+ * An UPDATE or REFRESH raised while the last queued notification is of the
+ * same type from the same origin is dropped. The queued one already tells the
+ * observer to look at the origin again, and by the time it is delivered the
+ * origin holds both changes. When the buffer is full, the oldest queued
+ * UPDATE or REFRESH is discarded to make room; only when there is none is the
+ * oldest notification of any type discarded. Raising a notification never
+ * blocks, so delivery may safely use the thread that raises them, such as
+ * the AWT event dispatch thread.
+ *
+ * The delegate sees the origin as it is when the notification is delivered,
+ * not as it was when raised. Deliver on the thread that owns the origin, or
+ * use this only for observers that don't read it.
+ */
+public class AsyncKeystrokeDirectorObserver implements
+		KeystrokeDirectorObserver {
+
+	/**
+	 * Runs tasks on the AWT event dispatch thread, after the events already
+	 * waiting there.
+	 */
+	public static final Executor EVENT_DISPATCH_THREAD = new Executor() {
+		public void execute(Runnable task) {
+			SwingUtilities.invokeLater(task);
+		}
+	};
+
+	private static final int DEFAULT_CAPACITY = 64;
+
+	private static final Counter COALESCED = Metrics.getDefault().counter(
+			"director.async.coalesced");
+	private static final Counter DISCARDED = Metrics.getDefault().counter(
+			"director.async.discarded");
+
+	private final KeystrokeDirectorObserver delegate;
+	private final Executor executor;
+
+	// guarded by this
+	private final KeystrokeNotification[] queue;
+	private int head;
+	private int size;
+	private boolean draining;
+
+	private final Runnable drain = new Runnable() {
+		public void run() {
+			deliverQueued();
+		}
+	};
+
+	/**
+	 * @param delegate
+	 *            the observer to deliver to
+	 * @param executor
+	 *            where notifications are delivered
+	 */
+	public AsyncKeystrokeDirectorObserver(KeystrokeDirectorObserver delegate,
+			Executor executor) {
+		this(delegate, executor, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param delegate
+	 *            the observer to deliver to
+	 * @param executor
+	 *            where notifications are delivered
+	 * @param capacity
+	 *            the most notifications waiting to be delivered
+	 */
+	public AsyncKeystrokeDirectorObserver(KeystrokeDirectorObserver delegate,
+			Executor executor, int capacity) {
+		super();
+		if (null == delegate) {
+			throw new IllegalArgumentException("delegate must be non-null");
+		}
+		if (null == executor) {
+			throw new IllegalArgumentException("executor must be non-null");
+		}
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.delegate = delegate;
+		this.executor = executor;
+		this.queue = new KeystrokeNotification[capacity];
+	}
+
+	public KeystrokeDirectorObserver getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * @return the number of notifications waiting to be delivered
+	 */
+	public synchronized int getQueuedCount() {
+		return size;
+	}
+
+	/**
+	 * Queues the notification and returns without delivering it.
+	 */
+	public void notificationReceived(KeystrokeNotification event) {
+		boolean startDraining;
+
+		synchronized (this) {
+			if (size > 0 && isCoalescable(event)) {
+				KeystrokeNotification last = get(size - 1);
+				if (last.getType() == event.getType()
+						&& last.getOrigin() == event.getOrigin()) {
+					COALESCED.increment();
+					return;
+				}
+			}
+
+			if (size == queue.length) {
+				discardOldest();
+			}
+			queue[(head + size) % queue.length] = event;
+			size++;
+
+			startDraining = !draining;
+			draining = true;
+		}
+
+		if (startDraining) {
+			executor.execute(drain);
+		}
+	}
+
+	private static boolean isCoalescable(KeystrokeNotification event) {
+		return KeystrokeNotificationType.UPDATE == event.getType()
+				|| KeystrokeNotificationType.REFRESH == event.getType();
+	}
+
+	private KeystrokeNotification get(int index) {
+		return queue[(head + index) % queue.length];
+	}
+
+	private void discardOldest() {
+		int victim = 0;
+		for (int i = 0; i < size; i++) {
+			if (isCoalescable(get(i))) {
+				victim = i;
+				break;
+			}
+		}
+
+		// close the gap by shifting the older notifications up one
+		for (int i = victim; i > 0; i--) {
+			queue[(head + i) % queue.length] = get(i - 1);
+		}
+		queue[head] = null;
+		head = (head + 1) % queue.length;
+		size--;
+
+		DISCARDED.increment();
+	}
+
+	private synchronized KeystrokeNotification poll() {
+		if (0 == size) {
+			draining = false;
+			return null;
+		}
+		KeystrokeNotification event = queue[head];
+		queue[head] = null;
+		head = (head + 1) % queue.length;
+		size--;
+		return event;
+	}
+
+	/**
+	 * Delivers until the queue is empty. If the delegate throws, the rest of
+	 * the queue is delivered by a fresh task before the exception propagates.
+	 */
+	private void deliverQueued() {
+		boolean delivered = false;
+		try {
+			KeystrokeNotification event;
+			while (null != (event = poll())) {
+				delegate.notificationReceived(event);
+			}
+			delivered = true;
+		} finally {
+			if (!delivered) {
+				boolean resume;
+				synchronized (this) {
+					resume = size > 0;
+					draining = resume;
+				}
+				if (resume) {
+					executor.execute(drain);
+				}
+			}
+		}
+	}
+}
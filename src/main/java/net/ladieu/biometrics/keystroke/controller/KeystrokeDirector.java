@@ -2,19 +2,37 @@ package net.ladieu.biometrics.keystroke.controller;
 
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import net.ladieu.biometrics.keystroke.controller.KeystrokeNotification.KeystrokeNotificationType;
+import net.ladieu.biometrics.keystroke.metrics.LatencyHistogram;
+import net.ladieu.biometrics.keystroke.metrics.Metrics;
 import net.ladieu.biometrics.keystroke.model.KeystrokeException;
 import net.ladieu.biometrics.keystroke.model.KeystrokeRecorder;
+import net.ladieu.system.HighResolutionTimeSource;
 import net.ladieu.system.SystemTime;
 
 public class KeystrokeDirector implements KeyListener {
 
 	private static final char DEFAULT_COMPLETION_CHAR = '\n';
 
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	// time to notify every observer, by notification type ordinal
+	private static final LatencyHistogram[] NOTIFY_LATENCY = createNotifyLatencies();
+
 	private char completionChar;
+	private TimeUnit timeResolution;
+	private HighResolutionTimeSource timeSource;
+
+	// maps KeyEvent.getWhen() onto the timeline of the director's clock
+	private boolean eventClockAnchored;
+	private long eventClockOffset;
+	private long lastEventNanos;
 
 	private boolean inputCompleted;
 	private KeystrokeRecorder recorder;
@@ -27,6 +45,7 @@ public class KeystrokeDirector implements KeyListener {
 	public KeystrokeDirector(char completionChar) {
 		super();
 		this.completionChar = completionChar;
+		this.timeResolution = TimeUnit.MILLISECONDS;
 		observers = new LinkedHashSet<KeystrokeDirectorObserver>();
 		inputCompleted = false;
 	}
@@ -35,24 +54,82 @@ public class KeystrokeDirector implements KeyListener {
 		this.recorder = recorder;
 	}
 
+	/**
+	 * Sets the unit of the key times given to the recorder.
+	 * 
+	 * Templates must be captured, stored and verified at one resolution.
+	 */
+	public void setTimeResolution(TimeUnit timeResolution) {
+		if (null == timeResolution) {
+			throw new IllegalArgumentException(
+					"timeResolution must be non-null");
+		}
+		this.timeResolution = timeResolution;
+	}
+
+	public TimeUnit getTimeResolution() {
+		return timeResolution;
+	}
+
+	/**
+	 * Sets the clock key events are timed by; SystemTime is used when none is
+	 * set. A MonotonicTimeSource gives exact intervals at sub-millisecond
+	 * resolutions.
+	 * 
+	 * The time the windowing system stamped on each KeyEvent is mapped onto
+	 * this clock, so every key is timed on one timeline: a key that waited in
+	 * the event queue keeps its stamped time, while one delivered within the
+	 * millisecond it was stamped in is timed by the clock.
+	 */
+	public void setTimeSource(HighResolutionTimeSource timeSource) {
+		this.timeSource = timeSource;
+		eventClockAnchored = false;
+		lastEventNanos = 0;
+	}
+
 	public void addObserver(KeystrokeDirectorObserver observer) {
 		observers.add(observer);
 	}
 
+	/**
+	 * Adds an observer that is notified later on the given executor, so key
+	 * events are recorded without waiting for it.
+	 * 
+	 * @see AsyncKeystrokeDirectorObserver
+	 */
+	public void addObserver(KeystrokeDirectorObserver observer,
+			Executor executor) {
+		observers.add(new AsyncKeystrokeDirectorObserver(observer, executor));
+	}
+
 	public void removeObserver(KeystrokeDirectorObserver observer) {
-		observers.remove(observer);
+		if (!observers.remove(observer)) {
+			Iterator<KeystrokeDirectorObserver> iterator = observers
+					.iterator();
+			while (iterator.hasNext()) {
+				KeystrokeDirectorObserver candidate = iterator.next();
+				if (candidate instanceof AsyncKeystrokeDirectorObserver
+						&& observer == ((AsyncKeystrokeDirectorObserver) candidate)
+								.getDelegate()) {
+					iterator.remove();
+				}
+			}
+		}
 	}
 
 	public void keyPressed(KeyEvent event) {
+		keyPressed(event.getKeyChar(), getEventTime(event));
+	}
 
-		long eventTime = SystemTime.asMillis();
-
-		if (completionChar == event.getKeyChar()) {
+	/**
+	 * Records a key press at the given time, in the time resolution.
+	 */
+	public void keyPressed(char keyChar, long eventTime) {
+		if (completionChar == keyChar) {
 			flagCompletion();
 		} else {
 			try {
-				recorder.keyDown(Character.toLowerCase(event.getKeyChar()),
-						eventTime);
+				recorder.keyDown(Character.toLowerCase(keyChar), eventTime);
 			} catch (KeystrokeException e) {
 				notifyObservers(KeystrokeNotificationType.CORRUPTION);
 			}
@@ -61,15 +138,19 @@ public class KeystrokeDirector implements KeyListener {
 	}
 
 	public void keyReleased(KeyEvent event) {
-		long eventTime = SystemTime.asMillis();
+		keyReleased(event.getKeyChar(), getEventTime(event));
+	}
 
+	/**
+	 * Records a key release at the given time, in the time resolution.
+	 */
+	public void keyReleased(char keyChar, long eventTime) {
 		// notify observers if key up reports a state change
-		if (recorder
-				.keyUp(Character.toLowerCase(event.getKeyChar()), eventTime)) {
+		if (recorder.keyUp(Character.toLowerCase(keyChar), eventTime)) {
 			notifyObservers(KeystrokeNotificationType.UPDATE);
 		}
 
-		if (isInputCompleted() && recorder.getActiveKeys().isEmpty()) {
+		if (isInputCompleted() && 0 == recorder.getActiveKeyCount()) {
 			notifyObservers(KeystrokeNotificationType.COMPLETION);
 		}
 	}
@@ -78,6 +159,35 @@ public class KeystrokeDirector implements KeyListener {
 		// no-op
 	}
 
+	private long getEventTime(KeyEvent event) {
+		long now = (null != timeSource ? timeSource.nanos() : SystemTime
+				.asNanos());
+		long eventNanos = now;
+
+		long stamp = event.getWhen() * NANOS_PER_MILLI;
+		if (stamp > 0) {
+			// the smallest gap seen between the two clocks is the one with the
+			// least queueing delay in it
+			if (!eventClockAnchored || now - stamp < eventClockOffset) {
+				eventClockOffset = now - stamp;
+				eventClockAnchored = true;
+			}
+			long stamped = stamp + eventClockOffset;
+			if (stamped < lastEventNanos - NANOS_PER_MILLI) {
+				// the wall clock behind the stamps was set back
+				eventClockOffset = now - stamp;
+				stamped = now;
+			}
+			if (now - stamped >= NANOS_PER_MILLI) {
+				eventNanos = stamped;
+			}
+		}
+
+		eventNanos = Math.max(eventNanos, lastEventNanos);
+		lastEventNanos = eventNanos;
+		return timeResolution.convert(eventNanos, TimeUnit.NANOSECONDS);
+	}
+
 	public void filterOutliers() {
 		notifyObservers(KeystrokeNotificationType.FILTER);
 	}
@@ -86,13 +196,26 @@ public class KeystrokeDirector implements KeyListener {
 		notifyObservers(KeystrokeNotificationType.REFRESH);
 	}
 
+	private static LatencyHistogram[] createNotifyLatencies() {
+		KeystrokeNotificationType[] types = KeystrokeNotificationType.values();
+		LatencyHistogram[] result = new LatencyHistogram[types.length];
+		for (KeystrokeNotificationType type : types) {
+			result[type.ordinal()] = Metrics.getDefault().histogram(
+					"director.notify." + type.name().toLowerCase());
+		}
+		return result;
+	}
+
 	protected void notifyObservers(KeystrokeNotificationType type) {
+		long start = System.nanoTime();
 
 		KeystrokeNotification event = new KeystrokeNotification(type, recorder);
 
 		for (KeystrokeDirectorObserver observer : observers) {
 			observer.notificationReceived(event);
 		}
+
+		NOTIFY_LATENCY[type.ordinal()].recordSince(start);
 	}
 
 	protected boolean isInputCompleted() {
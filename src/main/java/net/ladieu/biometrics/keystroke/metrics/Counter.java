@@ -0,0 +1,27 @@
+package net.ladieu.biometrics.keystroke.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A count that only goes up. Safe to share between threads.
+ */
+public final class Counter {
+
+	private final AtomicLong count = new AtomicLong();
+
+	Counter() {
+		super();
+	}
+
+	public void increment() {
+		count.incrementAndGet();
+	}
+
+	public void add(long amount) {
+		count.addAndGet(amount);
+	}
+
+	public long get() {
+		return count.get();
+	}
+}
@@ -0,0 +1,78 @@
+package net.ladieu.biometrics.keystroke.metrics;
+
+/**
+ * The durations recorded by a LatencyHistogram at one point in time, in
+ * nanoseconds. Immutable.
+ */
+public final class HistogramSnapshot {
+
+	private final long[] buckets;
+	private final long count;
+	private final long total;
+	private final long max;
+
+	HistogramSnapshot(long[] buckets, long count, long total, long max) {
+		super();
+		this.buckets = buckets;
+		this.count = count;
+		this.total = total;
+		this.max = max;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getTotal() {
+		return total;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * @return the mean duration, or 0 if nothing was recorded
+	 */
+	public double getMean() {
+		return (0 == count ? 0 : (double) total / count);
+	}
+
+	/**
+	 * @param percentile
+	 *            between 0 and 100
+	 * @return a duration at least as long as the given percentage of the
+	 *         recorded ones, and less than twice the actual percentile; 0 if
+	 *         nothing was recorded
+	 */
+	public long getPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("percentile [" + percentile
+					+ "] must be between 0 and 100");
+		}
+
+		long recorded = 0;
+		for (long bucketCount : buckets) {
+			recorded += bucketCount;
+		}
+		if (0 == recorded) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(recorded * percentile / 100));
+		long seen = 0;
+		for (int b = 0; b < buckets.length; b++) {
+			seen += buckets[b];
+			if (seen >= rank) {
+				return Math.min(max, LatencyHistogram.upperBoundOf(b));
+			}
+		}
+		return max;
+	}
+
+	public String toString() {
+		return "[n: " + count + ", mean: " + (long) getMean() + "ns, p50: "
+				+ getPercentile(50) + "ns, p99: " + getPercentile(99)
+				+ "ns, max: " + max + "ns]";
+	}
+}
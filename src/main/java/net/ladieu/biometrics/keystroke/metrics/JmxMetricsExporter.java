@@ -0,0 +1,172 @@
+package net.ladieu.biometrics.keystroke.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Publishes a Metrics registry as a read-only MBean. Each counter is an
+ * attribute of its own name. Each histogram has the attributes
+ * &lt;name&gt;.count, &lt;name&gt;.meanMicros, &lt;name&gt;.p50Micros,
+ * &lt;name&gt;.p99Micros and &lt;name&gt;.maxMicros.
+ *
+ * Values are read from the registry when JMX asks for them, so nothing is
+ * computed unless someone is looking. Counters and histograms created after
+ * registration appear the next time the MBean's info is read.
+ */
+public class JmxMetricsExporter implements DynamicMBean {
+
+	public static final String DEFAULT_OBJECT_NAME = "net.ladieu.biometrics:type=Metrics";
+
+	private static final String COUNT = ".count";
+	private static final String MEAN = ".meanMicros";
+	private static final String P50 = ".p50Micros";
+	private static final String P99 = ".p99Micros";
+	private static final String MAX = ".maxMicros";
+
+	private final Metrics metrics;
+
+	public JmxMetricsExporter(Metrics metrics) {
+		super();
+		if (null == metrics) {
+			throw new IllegalArgumentException("metrics must be non-null");
+		}
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Registers the default registry with the platform MBean server under
+	 * DEFAULT_OBJECT_NAME.
+	 *
+	 * @return the name it was registered under
+	 * @throws JMException
+	 *             if it could not be registered, for instance because it
+	 *             already is
+	 */
+	public static ObjectName registerDefault() throws JMException {
+		ObjectName name = new ObjectName(DEFAULT_OBJECT_NAME);
+		ManagementFactory.getPlatformMBeanServer().registerMBean(
+				new JmxMetricsExporter(Metrics.getDefault()), name);
+		return name;
+	}
+
+	/**
+	 * Registers this exporter with the given server.
+	 */
+	public void register(MBeanServer server, ObjectName name)
+			throws JMException {
+		server.registerMBean(this, name);
+	}
+
+	public Object getAttribute(String attribute)
+			throws AttributeNotFoundException, MBeanException,
+			ReflectionException {
+		MetricsSnapshot snapshot = metrics.snapshot();
+		Object value = getAttribute(snapshot, attribute);
+		if (null == value) {
+			throw new AttributeNotFoundException(attribute);
+		}
+		return value;
+	}
+
+	private Object getAttribute(MetricsSnapshot snapshot, String attribute) {
+		if (snapshot.getCounters().containsKey(attribute)) {
+			return snapshot.getCounter(attribute);
+		}
+
+		int suffix = attribute.lastIndexOf('.');
+		if (suffix < 0) {
+			return null;
+		}
+		HistogramSnapshot histogram = snapshot.getHistogram(attribute
+				.substring(0, suffix));
+		if (null == histogram) {
+			return null;
+		}
+
+		String field = attribute.substring(suffix);
+		if (COUNT.equals(field)) {
+			return histogram.getCount();
+		}
+		if (MEAN.equals(field)) {
+			return histogram.getMean() / 1000;
+		}
+		if (P50.equals(field)) {
+			return histogram.getPercentile(50) / 1000.0;
+		}
+		if (P99.equals(field)) {
+			return histogram.getPercentile(99) / 1000.0;
+		}
+		if (MAX.equals(field)) {
+			return histogram.getMax() / 1000.0;
+		}
+		return null;
+	}
+
+	public AttributeList getAttributes(String[] attributes) {
+		MetricsSnapshot snapshot = metrics.snapshot();
+		AttributeList result = new AttributeList();
+		for (String attribute : attributes) {
+			Object value = getAttribute(snapshot, attribute);
+			if (null != value) {
+				result.add(new Attribute(attribute, value));
+			}
+		}
+		return result;
+	}
+
+	public MBeanInfo getMBeanInfo() {
+		MetricsSnapshot snapshot = metrics.snapshot();
+		List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+
+		for (String name : snapshot.getCounters().keySet()) {
+			attributes.add(new MBeanAttributeInfo(name, "java.lang.Long",
+					"counter", true, false, false));
+		}
+		for (Map.Entry<String, HistogramSnapshot> entry : snapshot
+				.getHistograms().entrySet()) {
+			String name = entry.getKey();
+			attributes.add(new MBeanAttributeInfo(name + COUNT,
+					"java.lang.Long", "calls recorded", true, false, false));
+			for (String field : new String[] { MEAN, P50, P99, MAX }) {
+				attributes.add(new MBeanAttributeInfo(name + field,
+						"java.lang.Double", "latency in microseconds", true,
+						false, false));
+			}
+		}
+
+		return new MBeanInfo(getClass().getName(),
+				"Keystroke biometrics counters and latencies", attributes
+						.toArray(new MBeanAttributeInfo[attributes.size()]),
+				null, new MBeanOperationInfo[0], null);
+	}
+
+	public Object invoke(String actionName, Object[] params, String[] signature)
+			throws MBeanException, ReflectionException {
+		throw new ReflectionException(new NoSuchMethodException(actionName));
+	}
+
+	public void setAttribute(Attribute attribute)
+			throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("[" + attribute.getName()
+				+ "] is read-only");
+	}
+
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+}
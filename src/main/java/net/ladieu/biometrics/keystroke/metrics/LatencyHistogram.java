@@ -0,0 +1,77 @@
+package net.ladieu.biometrics.keystroke.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records durations in nanoseconds into power of two buckets: bucket 0 holds
+ * 0ns, and bucket b holds durations from 2^(b-1) up to 2^b - 1. Percentiles
+ * read from it are therefore accurate to within a factor of two, which is
+ * plenty to tell a p99 of 50us from one of 5ms.
+ *
+ * Recording is a handful of atomic updates and never allocates, so it can
+ * sit on hot paths. Safe to share between threads.
+ */
+public final class LatencyHistogram {
+
+	static final int BUCKETS = 64;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	LatencyHistogram() {
+		super();
+	}
+
+	/**
+	 * Records the time elapsed since the given System.nanoTime() reading.
+	 */
+	public void recordSince(long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * @param nanos
+	 *            the duration; negative durations are recorded as 0
+	 */
+	public void record(long nanos) {
+		long duration = Math.max(0, nanos);
+
+		buckets.incrementAndGet(bucketOf(duration));
+		count.incrementAndGet();
+		total.addAndGet(duration);
+
+		long currentMax = max.get();
+		while (duration > currentMax
+				&& !max.compareAndSet(currentMax, duration)) {
+			currentMax = max.get();
+		}
+	}
+
+	/**
+	 * @return a copy of the recorded durations. Recording may continue while
+	 *         the copy is taken, so its count and buckets may disagree
+	 *         slightly.
+	 */
+	public HistogramSnapshot snapshot() {
+		long[] counts = new long[BUCKETS];
+		for (int b = 0; b < BUCKETS; b++) {
+			counts[b] = buckets.get(b);
+		}
+		return new HistogramSnapshot(counts, count.get(), total.get(), max
+				.get());
+	}
+
+	static int bucketOf(long nanos) {
+		return 64 - Long.numberOfLeadingZeros(nanos);
+	}
+
+	/**
+	 * @return the longest duration held by the given bucket
+	 */
+	static long upperBoundOf(int bucket) {
+		return (0 == bucket ? 0 : (1L << bucket) - 1);
+	}
+}
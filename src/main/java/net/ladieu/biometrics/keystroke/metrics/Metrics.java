@@ -0,0 +1,77 @@
+package net.ladieu.biometrics.keystroke.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A registry of named counters and latency histograms.
+ *
+ * The matcher, storage and director record into the default registry.
+ * Components look up their counters and histograms once, when their class
+ * loads, so recording involves no map lookups. Read everything with
+ * snapshot(), or through JMX with {@link JmxMetricsExporter}.
+ */
+public class Metrics {
+
+	private static final Metrics DEFAULT = new Metrics();
+
+	private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+	private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<String, LatencyHistogram>();
+
+	/**
+	 * @return the registry the built-in instrumentation records into
+	 */
+	public static Metrics getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * @return the counter with the given name, created on first use
+	 */
+	public Counter counter(String name) {
+		Counter counter = counters.get(name);
+		if (null == counter) {
+			Counter created = new Counter();
+			counter = counters.putIfAbsent(name, created);
+			if (null == counter) {
+				counter = created;
+			}
+		}
+		return counter;
+	}
+
+	/**
+	 * @return the histogram with the given name, created on first use
+	 */
+	public LatencyHistogram histogram(String name) {
+		LatencyHistogram histogram = histograms.get(name);
+		if (null == histogram) {
+			LatencyHistogram created = new LatencyHistogram();
+			histogram = histograms.putIfAbsent(name, created);
+			if (null == histogram) {
+				histogram = created;
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * @return the current value of every counter and histogram, by name
+	 */
+	public MetricsSnapshot snapshot() {
+		Map<String, Long> counterValues = new TreeMap<String, Long>();
+		for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+			counterValues.put(entry.getKey(), entry.getValue().get());
+		}
+
+		Map<String, HistogramSnapshot> histogramValues = new TreeMap<String, HistogramSnapshot>();
+		for (Map.Entry<String, LatencyHistogram> entry : histograms
+				.entrySet()) {
+			histogramValues.put(entry.getKey(), entry.getValue().snapshot());
+		}
+
+		return new MetricsSnapshot(counterValues, histogramValues);
+	}
+}
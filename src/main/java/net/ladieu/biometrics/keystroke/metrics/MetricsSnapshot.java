@@ -0,0 +1,64 @@
+package net.ladieu.biometrics.keystroke.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Every counter and histogram of a Metrics registry at one point in time.
+ * Immutable.
+ */
+public final class MetricsSnapshot {
+
+	private final Map<String, Long> counters;
+	private final Map<String, HistogramSnapshot> histograms;
+
+	MetricsSnapshot(Map<String, Long> counters,
+			Map<String, HistogramSnapshot> histograms) {
+		super();
+		this.counters = Collections.unmodifiableMap(counters);
+		this.histograms = Collections.unmodifiableMap(histograms);
+	}
+
+	/**
+	 * @return counter values by name, in name order
+	 */
+	public Map<String, Long> getCounters() {
+		return counters;
+	}
+
+	/**
+	 * @return histograms by name, in name order
+	 */
+	public Map<String, HistogramSnapshot> getHistograms() {
+		return histograms;
+	}
+
+	/**
+	 * @return the value of the named counter, or 0 if it doesn't exist
+	 */
+	public long getCounter(String name) {
+		Long value = counters.get(name);
+		return (null == value ? 0 : value);
+	}
+
+	/**
+	 * @return the named histogram, or null if it doesn't exist
+	 */
+	public HistogramSnapshot getHistogram(String name) {
+		return histograms.get(name);
+	}
+
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for (Map.Entry<String, Long> entry : counters.entrySet()) {
+			result.append(entry.getKey()).append(": ").append(
+					entry.getValue()).append('\n');
+		}
+		for (Map.Entry<String, HistogramSnapshot> entry : histograms
+				.entrySet()) {
+			result.append(entry.getKey()).append(": ").append(
+					entry.getValue()).append('\n');
+		}
+		return result.toString();
+	}
+}
@@ -0,0 +1,18 @@
+package net.ladieu.biometrics.keystroke.model;
+
+/**
+ * A matcher whose template can follow the user's typing as it drifts, by
+ * learning from attempts that were verified as genuine.
+ */
+public interface AdaptiveKeystrokeMatcher extends KeystrokeMatcher {
+
+	/**
+	 * Offers a verified attempt to the template.
+	 * 
+	 * @param attempt
+	 *            an attempt that was accepted as a match
+	 * @return true if the attempt became part of the template; false if the
+	 *         matcher is not currently adapting, or can't use the attempt
+	 */
+	boolean adapt(KeystrokeSequence attempt);
+}
@@ -0,0 +1,128 @@
+package net.ladieu.biometrics.keystroke.model;
+
+/**
+ * Immutable verification model holding the regular (non-outlier) dwell and
+ * flight ranges for each keystroke position of a template. Built once whenever
+ * the template statistics are recalculated, so that scoring a sequence is a
+ * single pass over primitive arrays.
+ */
+public final class CompiledTemplate {
+
+	private final long[] minDwell;
+	private final long[] maxDwell;
+	private final long[] minFlight;
+	private final long[] maxFlight;
+
+	/**
+	 * @param minDwell
+	 *            lowest regular dwell time, indexed by keystroke position
+	 * @param maxDwell
+	 *            highest regular dwell time, indexed by keystroke position
+	 * @param minFlight
+	 *            lowest regular flight time, indexed by keystroke position
+	 * @param maxFlight
+	 *            highest regular flight time, indexed by keystroke position
+	 * @throws IllegalArgumentException
+	 *             if any array is null or the arrays differ in length
+	 */
+	public CompiledTemplate(long[] minDwell, long[] maxDwell, long[] minFlight,
+			long[] maxFlight) {
+		super();
+		if (null == minDwell || null == maxDwell || null == minFlight
+				|| null == maxFlight) {
+			throw new IllegalArgumentException("ranges must be non-null");
+		}
+
+		int length = minDwell.length;
+		if (maxDwell.length != length || minFlight.length != length
+				|| maxFlight.length != length) {
+			throw new IllegalArgumentException(
+					"dwell and flight ranges must have the same length");
+		}
+
+		this.minDwell = minDwell.clone();
+		this.maxDwell = maxDwell.clone();
+		this.minFlight = minFlight.clone();
+		this.maxFlight = maxFlight.clone();
+	}
+
+	/**
+	 * @return the number of keystroke positions covered by this template
+	 */
+	public int getLength() {
+		return minDwell.length;
+	}
+
+	public long getMinDwell(int position) {
+		return minDwell[position];
+	}
+
+	public long getMaxDwell(int position) {
+		return maxDwell[position];
+	}
+
+	public long getMinFlight(int position) {
+		return minFlight[position];
+	}
+
+	public long getMaxFlight(int position) {
+		return maxFlight[position];
+	}
+
+	/**
+	 * Counts the dwell and flight times of the given sequence that fall
+	 * outside the regular range for their position.
+	 *
+	 * @param sequence
+	 *            the sequence to score; must be as long as the template
+	 * @return the number of outlying dwell and flight times, between 0 and
+	 *         twice the template length
+	 * @throws IllegalArgumentException
+	 *             if the sequence length differs from the template length
+	 */
+	public int countOutliers(KeystrokeTimings sequence) {
+		int length = sequence.size();
+		if (length != minDwell.length) {
+			throw new IllegalArgumentException("sequence length [" + length
+					+ "] does not match template length [" + minDwell.length
+					+ "]");
+		}
+
+		int numberOfOutliers = 0;
+
+		for (int i = 0; i < length; i++) {
+			long dwell = sequence.getDwellTime(i);
+			long flight = sequence.getFlightTime(i);
+
+			if (dwell < minDwell[i] || dwell > maxDwell[i]) {
+				numberOfOutliers++;
+			}
+
+			if (flight < minFlight[i] || flight > maxFlight[i]) {
+				numberOfOutliers++;
+			}
+		}
+
+		return numberOfOutliers;
+	}
+
+	/**
+	 * Counts the dwell and flight times of a single position of the given
+	 * sequence that fall outside the regular range for that position.
+	 *
+	 * @return 0, 1 or 2
+	 */
+	public int countOutliers(KeystrokeTimings sequence, int position) {
+		long dwell = sequence.getDwellTime(position);
+		long flight = sequence.getFlightTime(position);
+
+		int numberOfOutliers = 0;
+		if (dwell < minDwell[position] || dwell > maxDwell[position]) {
+			numberOfOutliers++;
+		}
+		if (flight < minFlight[position] || flight > maxFlight[position]) {
+			numberOfOutliers++;
+		}
+		return numberOfOutliers;
+	}
+}
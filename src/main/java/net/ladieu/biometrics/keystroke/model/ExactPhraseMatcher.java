@@ -15,7 +15,7 @@ public class ExactPhraseMatcher implements KeystrokeMatcher {
 		this.phrase = phrase;
 	}
 
-	public float getDistance(KeystrokeSequence sequence) {
+	public float getDistance(KeystrokeTimings sequence) {
 		return phrase.equals(sequence.getCapturedValue()) ? KeystrokeMatcher.EXACT_MATCH
 				: KeystrokeMatcher.NO_MATCH;
 	}
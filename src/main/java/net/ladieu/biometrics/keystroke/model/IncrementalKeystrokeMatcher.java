@@ -0,0 +1,16 @@
+package net.ladieu.biometrics.keystroke.model;
+
+/**
+ * A matcher that can also score an attempt keystroke by keystroke, while it
+ * is still being typed.
+ */
+public interface IncrementalKeystrokeMatcher extends KeystrokeMatcher {
+
+	/**
+	 * @param threshold
+	 *            the lowest distance that would be accepted as a match
+	 * @return a scorer for one attempt against the current template, or null
+	 *         if the matcher can currently only score complete attempts
+	 */
+	IncrementalScorer createScorer(float threshold);
+}
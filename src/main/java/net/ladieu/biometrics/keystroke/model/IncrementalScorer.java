@@ -0,0 +1,142 @@
+package net.ladieu.biometrics.keystroke.model;
+
+/**
+ * Scores one attempt against a CompiledTemplate while it is being typed, so
+ * that an attempt which can no longer reach the threshold is rejected as soon
+ * as that is known rather than after the last key.
+ *
+ * Feed it the attempt after every recorded key, typically the recorder's
+ * result view on each UPDATE notification. A keystroke's dwell time is final
+ * once it is released and its flight time once the keystroke before it is
+ * released, so positions are scored in order as soon as both hold. Typed
+ * characters are checked against the phrase as they arrive.
+ *
+ * Once every position is scored the distance equals
+ * StatisticalMatcher.getDistance() for the same attempt. Not thread-safe; use
+ * one scorer per attempt, or reset() between attempts.
+ */
+public final class IncrementalScorer {
+
+	private final String phrase;
+	private final CompiledTemplate template;
+	private final float threshold;
+
+	private int checkedCount;
+	private int scoredCount;
+	private int outlierCount;
+	private boolean phraseMismatch;
+	private boolean rejected;
+
+	/**
+	 * @param phrase
+	 *            the text the attempt must match exactly
+	 * @param template
+	 *            the regular ranges for each position of the phrase
+	 * @param threshold
+	 *            the lowest distance accepted as a match
+	 * @throws IllegalArgumentException
+	 *             if the template length differs from the phrase length
+	 */
+	public IncrementalScorer(String phrase, CompiledTemplate template,
+			float threshold) {
+		super();
+		if (null == phrase || null == template) {
+			throw new IllegalArgumentException(
+					"phrase and template must be non-null");
+		}
+		if (template.getLength() != phrase.length()) {
+			throw new IllegalArgumentException("template length ["
+					+ template.getLength() + "] does not match phrase length ["
+					+ phrase.length() + "]");
+		}
+		this.phrase = phrase;
+		this.template = template;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Scores whatever the attempt has newly settled since the last update.
+	 *
+	 * @param attempt
+	 *            the attempt so far; the same attempt, grown, on every call
+	 * @return true if the attempt has been rejected
+	 */
+	public boolean update(KeystrokeTimings attempt) {
+		if (rejected) {
+			return true;
+		}
+
+		int size = attempt.size();
+
+		while (checkedCount < size) {
+			if (checkedCount >= phrase.length()
+					|| attempt.getValue(checkedCount) != phrase
+							.charAt(checkedCount)) {
+				phraseMismatch = true;
+				break;
+			}
+			checkedCount++;
+		}
+
+		while (!phraseMismatch && scoredCount < size
+				&& attempt.isReleased(scoredCount)
+				&& (0 == scoredCount || attempt.isReleased(scoredCount - 1))) {
+			outlierCount += template.countOutliers(attempt, scoredCount);
+			scoredCount++;
+		}
+
+		rejected = getBestPossibleDistance() < threshold;
+		return rejected;
+	}
+
+	/**
+	 * @return true once the attempt can no longer reach the threshold
+	 */
+	public boolean isRejected() {
+		return rejected;
+	}
+
+	/**
+	 * @return true once every position of the phrase has been typed and
+	 *         scored
+	 */
+	public boolean isComplete() {
+		return !phraseMismatch && scoredCount == phrase.length();
+	}
+
+	/**
+	 * @return the number of positions scored so far
+	 */
+	public int getScoredCount() {
+		return scoredCount;
+	}
+
+	/**
+	 * @return the number of outlying dwell and flight times found so far
+	 */
+	public int getOutlierCount() {
+		return outlierCount;
+	}
+
+	/**
+	 * @return the highest distance the attempt can still reach, which once
+	 *         complete is its distance; NO_MATCH if a wrong key was typed
+	 */
+	public float getBestPossibleDistance() {
+		if (phraseMismatch) {
+			return KeystrokeMatcher.NO_MATCH;
+		}
+		return 1.0f - outlierCount / (float) (phrase.length() * 2);
+	}
+
+	/**
+	 * Forgets the attempt so far, to score another against the same template.
+	 */
+	public void reset() {
+		checkedCount = 0;
+		scoredCount = 0;
+		outlierCount = 0;
+		phraseMismatch = false;
+		rejected = false;
+	}
+}
@@ -14,6 +14,12 @@ public interface KeystrokeFactory {
 	 */
 	public boolean acceptsCharacter(char c);
 
+	/**
+	 * @return the character that a Keystroke created for the given character
+	 *         would hold
+	 */
+	public char normalizeCharacter(char c);
+
 	/**
 	 * Creates a Keystroke for the given character
 	 * 
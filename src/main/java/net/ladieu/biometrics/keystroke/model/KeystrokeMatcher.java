@@ -5,7 +5,7 @@ public interface KeystrokeMatcher {
 	float EXACT_MATCH = 1.0f;
 	float NO_MATCH = 0.0f;
 
-	float getDistance(KeystrokeSequence sequence);
+	float getDistance(KeystrokeTimings sequence);
 
 	String getTextToMatch();
 }
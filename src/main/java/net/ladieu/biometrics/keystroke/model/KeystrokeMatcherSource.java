@@ -0,0 +1,16 @@
+package net.ladieu.biometrics.keystroke.model;
+
+import java.io.IOException;
+
+/**
+ * Supplies the matcher to verify a given user against.
+ */
+public interface KeystrokeMatcherSource {
+
+	/**
+	 * @return the matcher holding the given user's template
+	 * @throws IOException
+	 *             if the user has no template
+	 */
+	KeystrokeMatcher getMatcher(String username) throws IOException;
+}
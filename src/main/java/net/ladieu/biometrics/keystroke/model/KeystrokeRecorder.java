@@ -34,6 +34,14 @@ public interface KeystrokeRecorder {
 	 */
 	KeystrokeSequence getResult();
 
+	/**
+	 * A read-only view of the sequence being recorded. Unlike getResult(),
+	 * nothing is copied; the view reflects later key events until reset.
+	 * 
+	 * @return the live KeystrokeTimings since the last reset
+	 */
+	KeystrokeTimings getResultView();
+
 	/**
 	 * The Set of characters currently considered pressed/down by the recorder.
 	 * 
@@ -41,6 +49,17 @@ public interface KeystrokeRecorder {
 	 */
 	Set<Character> getActiveKeys();
 
+	/**
+	 * @return the number of keys currently considered pressed/down, without
+	 *         copying the active key set
+	 */
+	int getActiveKeyCount();
+
+	/**
+	 * @return true if the given character is currently considered pressed/down
+	 */
+	boolean isKeyActive(char c);
+
 	/**
 	 * Returns the state of the recorder back to new
 	 */
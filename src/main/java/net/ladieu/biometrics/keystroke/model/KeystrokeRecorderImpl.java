@@ -1,13 +1,21 @@
 package net.ladieu.biometrics.keystroke.model;
 
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 public class KeystrokeRecorderImpl implements KeystrokeRecorder {
 
-	private Map<Character, Keystroke> activeKeys;
+	/**
+	 * Room for this many simultaneously held keys before the active key arrays
+	 * need to grow; more than a handful at once is rare.
+	 */
+	private static final int INITIAL_ACTIVE_CAPACITY = 8;
+
+	// keys currently held, as parallel arrays so that tracking them doesn't
+	// box a Character per event
+	private char[] activeValues;
+	private Keystroke[] activeKeystrokes;
+	private int activeKeyCount;
 
 	private KeystrokeFactory factory;
 	private KeystrokeSequence sequence;
@@ -18,7 +26,8 @@ public class KeystrokeRecorderImpl implements KeystrokeRecorder {
 			throw new IllegalArgumentException("factory must be non-null");
 		}
 		this.factory = factory;
-		activeKeys = new HashMap<Character, Keystroke>();
+		activeValues = new char[INITIAL_ACTIVE_CAPACITY];
+		activeKeystrokes = new Keystroke[INITIAL_ACTIVE_CAPACITY];
 		reset();
 	}
 
@@ -26,15 +35,19 @@ public class KeystrokeRecorderImpl implements KeystrokeRecorder {
 		return sequence.createCopy();
 	}
 
+	public KeystrokeTimings getResultView() {
+		return sequence;
+	}
+
 	public boolean keyDown(char key, long time) {
 
-		if (!activeKeys.containsKey(key)) {
+		if (!isKeyActive(key)) {
 			if (!factory.acceptsCharacter(key)) {
 				throw new KeystrokeException("key [" + key + "] not allowed");
 			}
 
 			Keystroke newKeystroke = factory.createKeystroke(key, time);
-			activeKeys.put(newKeystroke.getValue(), newKeystroke);
+			addActiveKey(newKeystroke);
 			sequence.addKeystroke(newKeystroke);
 			return true;
 		}
@@ -44,24 +57,73 @@ public class KeystrokeRecorderImpl implements KeystrokeRecorder {
 
 	public boolean keyUp(char key, long time) {
 
-		Keystroke keystroke = activeKeys.remove(key);
+		int index = indexOfActiveKey(key);
 
-		if (null != keystroke) {
+		if (index >= 0) {
+			Keystroke keystroke = activeKeystrokes[index];
+			removeActiveKey(index);
 			keystroke.release(time);
-				
+
 			return true;
 		}
 
 		return false;
 	}
-	
 
 	public Set<Character> getActiveKeys() {
-		return new HashSet<Character>(activeKeys.keySet());
+		Set<Character> result = new HashSet<Character>();
+		for (int i = 0; i < activeKeyCount; i++) {
+			result.add(activeValues[i]);
+		}
+		return result;
+	}
+
+	public int getActiveKeyCount() {
+		return activeKeyCount;
+	}
+
+	public boolean isKeyActive(char c) {
+		return indexOfActiveKey(c) >= 0;
 	}
 
 	public void reset() {
 		sequence = new KeystrokeSequence();
 	}
 
+	private int indexOfActiveKey(char c) {
+		for (int i = 0; i < activeKeyCount; i++) {
+			if (activeValues[i] == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void addActiveKey(Keystroke keystroke) {
+		int index = indexOfActiveKey(keystroke.getValue());
+		if (index < 0) {
+			if (activeKeyCount == activeValues.length) {
+				int capacity = activeValues.length * 2;
+				char[] values = new char[capacity];
+				Keystroke[] keystrokes = new Keystroke[capacity];
+				System.arraycopy(activeValues, 0, values, 0, activeKeyCount);
+				System.arraycopy(activeKeystrokes, 0, keystrokes, 0,
+						activeKeyCount);
+				activeValues = values;
+				activeKeystrokes = keystrokes;
+			}
+			index = activeKeyCount++;
+			activeValues[index] = keystroke.getValue();
+		}
+		activeKeystrokes[index] = keystroke;
+	}
+
+	private void removeActiveKey(int index) {
+		// order doesn't matter, so fill the gap with the last entry
+		int last = --activeKeyCount;
+		activeValues[index] = activeValues[last];
+		activeKeystrokes[index] = activeKeystrokes[last];
+		activeKeystrokes[last] = null;
+	}
+
 }
@@ -2,10 +2,12 @@ package net.ladieu.biometrics.keystroke.model;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
-public class KeystrokeSequence implements Iterable<Keystroke>, Serializable {
+public class KeystrokeSequence implements KeystrokeTimings,
+		Iterable<Keystroke>, Serializable {
 
 	private static final long serialVersionUID = -7106016073755020475L;
 	private List<Keystroke> keystrokes;
@@ -18,6 +20,13 @@ public class KeystrokeSequence implements Iterable<Keystroke>, Serializable {
 	}
 
 	public String getCapturedValue() {
+		if (null == capturedValue) {
+			StringBuilder value = new StringBuilder(keystrokes.size());
+			for (Keystroke currentKeystroke : keystrokes) {
+				value.append(currentKeystroke.getValue());
+			}
+			capturedValue = value.toString();
+		}
 		return capturedValue;
 	}
 
@@ -26,8 +35,8 @@ public class KeystrokeSequence implements Iterable<Keystroke>, Serializable {
 			throw new IllegalArgumentException("addKeystroke(null) not allowed");
 		}
 
-		capturedValue = capturedValue.concat(String.valueOf(keystroke
-				.getValue()));
+		// rebuilt on demand, rather than concatenated for every keystroke
+		capturedValue = null;
 
 		linkToPriorKeystroke(keystroke);
 
@@ -44,8 +53,7 @@ public class KeystrokeSequence implements Iterable<Keystroke>, Serializable {
 	}
 
 	public Iterator<Keystroke> iterator() {
-		List<Keystroke> clonedList = new ArrayList<Keystroke>(keystrokes);
-		return clonedList.iterator();
+		return Collections.unmodifiableList(keystrokes).iterator();
 	}
 
 	public String toString() {
@@ -63,7 +71,7 @@ public class KeystrokeSequence implements Iterable<Keystroke>, Serializable {
 	public KeystrokeSequence createCopy() {
 		KeystrokeSequence copy = new KeystrokeSequence();
 		copy.keystrokes = new ArrayList<Keystroke>(this.keystrokes);
-		copy.capturedValue = new String(this.capturedValue);
+		copy.capturedValue = this.capturedValue;
 		return copy;
 	}
 
@@ -76,10 +84,38 @@ public class KeystrokeSequence implements Iterable<Keystroke>, Serializable {
 		return null;
 	}
 
+	public int size() {
+		return keystrokes.size();
+	}
+
 	public Keystroke getKeystroke(int index) {
 		return keystrokes.get(index);
 	}
 
+	public char getValue(int index) {
+		return keystrokes.get(index).getValue();
+	}
+
+	public long getStartTime(int index) {
+		return keystrokes.get(index).getStartTime();
+	}
+
+	public long getEndTime(int index) {
+		return keystrokes.get(index).getEndTime();
+	}
+
+	public boolean isReleased(int index) {
+		return keystrokes.get(index).isReleased();
+	}
+
+	public long getDwellTime(int index) {
+		return keystrokes.get(index).getDwellTime();
+	}
+
+	public long getFlightTime(int index) {
+		return keystrokes.get(index).getFlightTime();
+	}
+
 	public Keystroke getFirstKeystroke() {
 		if (!keystrokes.isEmpty()) {
 			return keystrokes.get(0);
@@ -0,0 +1,39 @@
+package net.ladieu.biometrics.keystroke.model;
+
+/**
+ * Read-only, indexed access to the timing data of a sequence of keystrokes.
+ * Lets matchers and statistics walk a sequence by position without
+ * allocating iterators or Keystroke objects.
+ *
+ * Dwell and flight times follow the rules of {@link Keystroke}: an unreleased
+ * keystroke has a dwell time of 0, and a keystroke whose prior keystroke has
+ * not been released (or which has no prior) has a flight time of 0.
+ */
+public interface KeystrokeTimings {
+
+	/**
+	 * @return the number of keystrokes
+	 */
+	int size();
+
+	char getValue(int index);
+
+	long getStartTime(int index);
+
+	/**
+	 * @return the release time of the keystroke at the given index, or 0 if
+	 *         it has not been released
+	 */
+	long getEndTime(int index);
+
+	boolean isReleased(int index);
+
+	long getDwellTime(int index);
+
+	long getFlightTime(int index);
+
+	/**
+	 * @return the characters of every keystroke, in order
+	 */
+	String getCapturedValue();
+}
@@ -34,7 +34,7 @@ public class LowerCaseKeystrokeFactory implements KeystrokeFactory {
 	 */
 	public Keystroke createKeystroke(char c, long startTime) {
 
-		char lowerCaseInput = Character.toLowerCase(c);
+		char lowerCaseInput = normalizeCharacter(c);
 
 		if (!validCharacters.contains(lowerCaseInput)) {
 			throw new IllegalArgumentException("'" + c
@@ -45,7 +45,11 @@ public class LowerCaseKeystrokeFactory implements KeystrokeFactory {
 	}
 
 	public boolean acceptsCharacter(char c) {
-		return validCharacters.contains(Character.toLowerCase(c));
+		return validCharacters.contains(normalizeCharacter(c));
+	}
+
+	public char normalizeCharacter(char c) {
+		return Character.toLowerCase(c);
 	}
 
 }
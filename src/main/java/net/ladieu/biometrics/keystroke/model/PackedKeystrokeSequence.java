@@ -0,0 +1,128 @@
+package net.ladieu.biometrics.keystroke.model;
+
+import java.io.Serializable;
+import java.util.Iterator;
+
+/**
+ * Immutable, compact form of a KeystrokeSequence held as parallel primitive
+ * arrays of characters and start/end times. Dwell and flight times are derived
+ * on demand, so a sequence costs a few arrays instead of a linked Keystroke
+ * object per character, and indexed access allocates nothing.
+ *
+ * Iterating materializes equivalent, linked Keystroke objects for code that
+ * needs them; hot paths should use the indexed {@link KeystrokeTimings}
+ * accessors instead.
+ */
+public final class PackedKeystrokeSequence implements KeystrokeTimings,
+		Iterable<Keystroke>, Serializable {
+
+	private static final long serialVersionUID = 5025826403414373215L;
+
+	/**
+	 * End time recorded for keystrokes that were never released; real end
+	 * times can't be negative.
+	 */
+	private static final long UNRELEASED = -1;
+
+	private final char[] values;
+	private final long[] startTimes;
+	private final long[] endTimes;
+	private final String capturedValue;
+
+	private PackedKeystrokeSequence(char[] values, long[] startTimes,
+			long[] endTimes) {
+		super();
+		this.values = values;
+		this.startTimes = startTimes;
+		this.endTimes = endTimes;
+		this.capturedValue = new String(values);
+	}
+
+	/**
+	 * Copies the timings of the given sequence into packed form.
+	 */
+	public static PackedKeystrokeSequence pack(KeystrokeTimings sequence) {
+		if (sequence instanceof PackedKeystrokeSequence) {
+			return (PackedKeystrokeSequence) sequence;
+		}
+
+		int length = sequence.size();
+		char[] values = new char[length];
+		long[] startTimes = new long[length];
+		long[] endTimes = new long[length];
+
+		for (int i = 0; i < length; i++) {
+			values[i] = sequence.getValue(i);
+			startTimes[i] = sequence.getStartTime(i);
+			endTimes[i] = (sequence.isReleased(i) ? sequence.getEndTime(i)
+					: UNRELEASED);
+		}
+
+		return new PackedKeystrokeSequence(values, startTimes, endTimes);
+	}
+
+	public int size() {
+		return values.length;
+	}
+
+	public char getValue(int index) {
+		return values[index];
+	}
+
+	public long getStartTime(int index) {
+		return startTimes[index];
+	}
+
+	public long getEndTime(int index) {
+		long endTime = endTimes[index];
+		return (UNRELEASED == endTime ? 0 : endTime);
+	}
+
+	public boolean isReleased(int index) {
+		return UNRELEASED != endTimes[index];
+	}
+
+	public long getDwellTime(int index) {
+		long endTime = endTimes[index];
+		return (UNRELEASED == endTime ? 0 : endTime - startTimes[index]);
+	}
+
+	public long getFlightTime(int index) {
+		if (0 == index) {
+			return 0;
+		}
+
+		long priorEndTime = endTimes[index - 1];
+		if (UNRELEASED == priorEndTime || 0 == priorEndTime) {
+			return 0;
+		}
+		return startTimes[index] - priorEndTime;
+	}
+
+	public String getCapturedValue() {
+		return capturedValue;
+	}
+
+	/**
+	 * @return a new, mutable KeystrokeSequence with the same timings
+	 */
+	public KeystrokeSequence toKeystrokeSequence() {
+		KeystrokeSequence result = new KeystrokeSequence();
+		for (int i = 0; i < values.length; i++) {
+			Keystroke keystroke = new Keystroke(values[i], startTimes[i]);
+			result.addKeystroke(keystroke);
+			if (isReleased(i)) {
+				keystroke.release(endTimes[i]);
+			}
+		}
+		return result;
+	}
+
+	public Iterator<Keystroke> iterator() {
+		return toKeystrokeSequence().iterator();
+	}
+
+	public String toString() {
+		return toKeystrokeSequence().toString();
+	}
+}
@@ -0,0 +1,250 @@
+package net.ladieu.biometrics.keystroke.model;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * KeystrokeRecorder that records into reusable primitive arrays instead of
+ * creating a Keystroke per key press. Intended for replaying raw key event
+ * streams server-side: once its arrays have grown to the longest sequence
+ * seen, keyDown, keyUp, the active key queries and reset allocate nothing.
+ *
+ * getResult() still builds a KeystrokeSequence for callers that need one;
+ * getResultView() reads the arrays directly. Characters are normalized by the
+ * factory, exactly as they would be for the Keystrokes it creates.
+ */
+public class PrimitiveKeystrokeRecorder implements KeystrokeRecorder {
+
+	private static final int INITIAL_CAPACITY = 32;
+	private static final int INITIAL_ACTIVE_CAPACITY = 8;
+
+	/**
+	 * End time recorded for keystrokes that haven't been released; real end
+	 * times can't be negative.
+	 */
+	private static final long UNRELEASED = -1;
+
+	/**
+	 * Live, read-only view of the recorded arrays.
+	 */
+	private class ResultView implements KeystrokeTimings {
+
+		public int size() {
+			return length;
+		}
+
+		public char getValue(int index) {
+			checkIndex(index);
+			return values[index];
+		}
+
+		public long getStartTime(int index) {
+			checkIndex(index);
+			return startTimes[index];
+		}
+
+		public long getEndTime(int index) {
+			checkIndex(index);
+			long endTime = endTimes[index];
+			return (UNRELEASED == endTime ? 0 : endTime);
+		}
+
+		public boolean isReleased(int index) {
+			checkIndex(index);
+			return UNRELEASED != endTimes[index];
+		}
+
+		public long getDwellTime(int index) {
+			checkIndex(index);
+			long endTime = endTimes[index];
+			return (UNRELEASED == endTime ? 0 : endTime - startTimes[index]);
+		}
+
+		public long getFlightTime(int index) {
+			checkIndex(index);
+			if (0 == index) {
+				return 0;
+			}
+
+			long priorEndTime = endTimes[index - 1];
+			if (UNRELEASED == priorEndTime || 0 == priorEndTime) {
+				return 0;
+			}
+			return startTimes[index] - priorEndTime;
+		}
+
+		public String getCapturedValue() {
+			return new String(values, 0, length);
+		}
+
+		private void checkIndex(int index) {
+			if (index < 0 || index >= length) {
+				throw new IndexOutOfBoundsException("index [" + index
+						+ "] outside of sequence of length [" + length + "]");
+			}
+		}
+	}
+
+	private final KeystrokeFactory factory;
+	private final KeystrokeTimings resultView;
+
+	private char[] values;
+	private long[] startTimes;
+	private long[] endTimes;
+	private int length;
+
+	// keys currently held, and the position each was recorded at
+	private char[] activeValues;
+	private int[] activePositions;
+	private int activeKeyCount;
+
+	public PrimitiveKeystrokeRecorder(KeystrokeFactory factory) {
+		super();
+		if (null == factory) {
+			throw new IllegalArgumentException("factory must be non-null");
+		}
+		this.factory = factory;
+		this.resultView = new ResultView();
+
+		values = new char[INITIAL_CAPACITY];
+		startTimes = new long[INITIAL_CAPACITY];
+		endTimes = new long[INITIAL_CAPACITY];
+
+		activeValues = new char[INITIAL_ACTIVE_CAPACITY];
+		activePositions = new int[INITIAL_ACTIVE_CAPACITY];
+	}
+
+	public boolean keyDown(char key, long time) {
+
+		char value = factory.normalizeCharacter(key);
+		if (indexOfActiveKey(value) >= 0) {
+			return false;
+		}
+
+		if (!factory.acceptsCharacter(key)) {
+			throw new KeystrokeException("key [" + key + "] not allowed");
+		}
+
+		if (time < 0) {
+			throw new IllegalArgumentException("startTime provided was ["
+					+ time + "]; startTime can not be negative");
+		}
+
+		if (length > 0 && startTimes[length - 1] > time) {
+			throw new KeystrokeException("keyDown at [" + time
+					+ "] is earlier than the prior keyDown at ["
+					+ startTimes[length - 1] + "]");
+		}
+
+		if (length == values.length) {
+			growSequence();
+		}
+
+		int position = length++;
+		values[position] = value;
+		startTimes[position] = time;
+		endTimes[position] = UNRELEASED;
+
+		addActiveKey(value, position);
+		return true;
+	}
+
+	public boolean keyUp(char key, long time) {
+
+		int index = indexOfActiveKey(factory.normalizeCharacter(key));
+
+		if (index < 0) {
+			return false;
+		}
+
+		int position = activePositions[index];
+		if (time < startTimes[position]) {
+			throw new KeystrokeException("endTime [" + time
+					+ "] less than startTime [" + startTimes[position] + "]");
+		}
+
+		removeActiveKey(index);
+		endTimes[position] = time;
+		return true;
+	}
+
+	public KeystrokeSequence getResult() {
+		return PackedKeystrokeSequence.pack(resultView).toKeystrokeSequence();
+	}
+
+	public KeystrokeTimings getResultView() {
+		return resultView;
+	}
+
+	public Set<Character> getActiveKeys() {
+		Set<Character> result = new HashSet<Character>();
+		for (int i = 0; i < activeKeyCount; i++) {
+			result.add(activeValues[i]);
+		}
+		return result;
+	}
+
+	public int getActiveKeyCount() {
+		return activeKeyCount;
+	}
+
+	public boolean isKeyActive(char c) {
+		return indexOfActiveKey(factory.normalizeCharacter(c)) >= 0;
+	}
+
+	/**
+	 * Forgets the recorded sequence and any held keys, keeping the arrays for
+	 * reuse.
+	 */
+	public void reset() {
+		length = 0;
+		activeKeyCount = 0;
+	}
+
+	private int indexOfActiveKey(char c) {
+		for (int i = 0; i < activeKeyCount; i++) {
+			if (activeValues[i] == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void addActiveKey(char value, int position) {
+		if (activeKeyCount == activeValues.length) {
+			int capacity = activeValues.length * 2;
+			char[] newValues = new char[capacity];
+			int[] newPositions = new int[capacity];
+			System.arraycopy(activeValues, 0, newValues, 0, activeKeyCount);
+			System.arraycopy(activePositions, 0, newPositions, 0,
+					activeKeyCount);
+			activeValues = newValues;
+			activePositions = newPositions;
+		}
+		activeValues[activeKeyCount] = value;
+		activePositions[activeKeyCount] = position;
+		activeKeyCount++;
+	}
+
+	private void removeActiveKey(int index) {
+		int last = --activeKeyCount;
+		activeValues[index] = activeValues[last];
+		activePositions[index] = activePositions[last];
+	}
+
+	private void growSequence() {
+		int capacity = values.length * 2;
+
+		char[] newValues = new char[capacity];
+		long[] newStartTimes = new long[capacity];
+		long[] newEndTimes = new long[capacity];
+
+		System.arraycopy(values, 0, newValues, 0, length);
+		System.arraycopy(startTimes, 0, newStartTimes, 0, length);
+		System.arraycopy(endTimes, 0, newEndTimes, 0, length);
+
+		values = newValues;
+		startTimes = newStartTimes;
+		endTimes = newEndTimes;
+	}
+}
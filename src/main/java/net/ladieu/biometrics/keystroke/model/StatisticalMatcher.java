@@ -2,36 +2,130 @@ package net.ladieu.biometrics.keystroke.model;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-
-import net.ladieu.biometrics.keystroke.model.persistence.SerializingTemplateStorage;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.ladieu.biometrics.keystroke.metrics.LatencyHistogram;
+import net.ladieu.biometrics.keystroke.metrics.Metrics;
+import net.ladieu.biometrics.keystroke.model.distance.CompiledDistanceModel;
+import net.ladieu.biometrics.keystroke.model.distance.DistanceModel;
+import net.ladieu.biometrics.keystroke.model.persistence.BinaryTemplateStorage;
 import net.ladieu.biometrics.keystroke.model.persistence.TemplateStorage;
-import net.ladieu.biometrics.keystroke.stats.KeystrokeDwellTimeVisitor;
-import net.ladieu.biometrics.keystroke.stats.KeystrokeFlightTimeVisitor;
-import net.ladieu.biometrics.keystroke.stats.KeystrokeVisitor;
-import net.ladieu.biometrics.keystroke.stats.StatisticalDatasetBuilder;
+import net.ladieu.biometrics.keystroke.stats.BoxPlotStatistics;
+import net.ladieu.biometrics.keystroke.stats.FeatureExtractor;
+import net.ladieu.biometrics.keystroke.stats.FeatureExtractor.Feature;
+import net.ladieu.biometrics.keystroke.stats.FeatureMatrix;
+import net.ladieu.biometrics.keystroke.stats.RunningBoxAndWhiskerStatistics;
+
+/**
+ * Matches sequences against the box and whisker statistics of a user's
+ * template, or against any other DistanceModel set with setDistanceModel().
+ * 
+ * Safe to share between threads. Everything verification reads is held in an
+ * immutable snapshot that is replaced, never modified, so getDistance() and
+ * the other readers take no locks and always see a consistent template.
+ * Methods that change the template are synchronized with each other and
+ * publish a new snapshot before returning.
+ * 
+ * With an adaptive window set, the template holds only the most recent
+ * samples, and attempts verified as genuine may be fed back through adapt()
+ * so it follows the user's typing as it drifts.
+ */
+public class StatisticalMatcher implements IncrementalKeystrokeMatcher,
+		AdaptiveKeystrokeMatcher {
+
+	private static final int MIN_BATCH_CHUNK = 1024;
+	private static final int CHUNKS_PER_CPU = 4;
+
+	private static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 16;
+
+	// the dwell time of each position at column 2i, its flight time at 2i + 1
+	private static final FeatureExtractor TIMING_EXTRACTOR = new FeatureExtractor(
+			Feature.DWELL, Feature.FLIGHT);
+
+	private static final LatencyHistogram DISTANCE_LATENCY = Metrics
+			.getDefault().histogram("matcher.getDistance");
+	private static final LatencyHistogram BATCH_LATENCY = Metrics
+			.getDefault().histogram("matcher.getDistances");
+	private static final LatencyHistogram RECALCULATE_LATENCY = Metrics
+			.getDefault().histogram("matcher.recalculateStats");
+	private static final LatencyHistogram SAVE_LATENCY = Metrics
+			.getDefault().histogram("matcher.save");
+	private static final LatencyHistogram RESTORE_LATENCY = Metrics
+			.getDefault().histogram("matcher.restore");
+	private static final LatencyHistogram ADAPT_LATENCY = Metrics
+			.getDefault().histogram("matcher.adapt");
+
+	/**
+	 * Computes something for one column of the template: the dwell times of
+	 * a position for columns below samplePoints, otherwise the flight times
+	 * of position column - samplePoints.
+	 */
+	private interface ColumnFunction<T> {
+		T compute(int column);
+	}
 
-import org.jfree.data.statistics.BoxAndWhiskerCalculator;
-import org.jfree.data.statistics.BoxAndWhiskerItem;
-import org.jfree.data.statistics.DefaultBoxAndWhiskerCategoryDataset;
+	/**
+	 * The template as seen by readers at one point in time.
+	 */
+	private static final class Snapshot {
+		private final KeystrokeMatcher phraseMatcher;
+		private final int samplePoints;
+		private final List<BoxPlotStatistics> dwellStats;
+		private final List<BoxPlotStatistics> flightStats;
+		private final CompiledTemplate compiledTemplate;
+		// null when scoring by the box and whisker statistics
+		private final CompiledDistanceModel distanceModel;
+		private final int numberOfTemplates;
+		private final int numberOfFilteredTemplates;
+
+		private Snapshot(KeystrokeMatcher phraseMatcher, int samplePoints,
+				List<BoxPlotStatistics> dwellStats,
+				List<BoxPlotStatistics> flightStats,
+				CompiledTemplate compiledTemplate,
+				CompiledDistanceModel distanceModel, int numberOfTemplates,
+				int numberOfFilteredTemplates) {
+			this.phraseMatcher = phraseMatcher;
+			this.samplePoints = samplePoints;
+			this.dwellStats = Collections.unmodifiableList(dwellStats);
+			this.flightStats = Collections.unmodifiableList(flightStats);
+			this.compiledTemplate = compiledTemplate;
+			this.distanceModel = distanceModel;
+			this.numberOfTemplates = numberOfTemplates;
+			this.numberOfFilteredTemplates = numberOfFilteredTemplates;
+		}
+	}
 
-public class StatisticalMatcher implements KeystrokeMatcher {
+	private final AtomicReference<Snapshot> snapshot = new AtomicReference<Snapshot>();
 
+	// writer state, guarded by this
 	private KeystrokeMatcher internalTemplate;
 
-	private List<KeystrokeSequence> templateBasis = new ArrayList<KeystrokeSequence>();
+	// oldest sample first, so the window evicts from the head
+	private LinkedList<KeystrokeSequence> templateBasis = new LinkedList<KeystrokeSequence>();
+	// 0 when the template is unbounded and does not adapt
+	private int adaptiveWindow = 0;
 
-	private List<BoxAndWhiskerItem> flightStats = new ArrayList<BoxAndWhiskerItem>();
-	private List<BoxAndWhiskerItem> dwellStats = new ArrayList<BoxAndWhiskerItem>();;
+	private RunningBoxAndWhiskerStatistics[] flightAccumulators;
+	private RunningBoxAndWhiskerStatistics[] dwellAccumulators;
 
-	private TemplateStorage storage = new SerializingTemplateStorage();
+	private DistanceModel distanceModel;
+
+	private ExecutorService statisticsExecutor;
+	private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+	private TemplateStorage storage;
 	private String username;
 	private int samplePoints;
-	private boolean statsDirty = true;
 	private int numberOfFilteredTemplates = 0;
 
 	/**
@@ -44,7 +138,23 @@ public class StatisticalMatcher implements KeystrokeMatcher {
 	 *            password to be used in authenticating user
 	 */
 	public StatisticalMatcher(String username, String password) {
+		this(username, password, new BinaryTemplateStorage());
+	}
+
+	/**
+	 * Starts a clean slate for enrollment, saving to the given storage.
+	 * 
+	 * @param username
+	 *            username to enroll
+	 * @param password
+	 *            password to be used in authenticating user
+	 * @param storage
+	 *            storage used by save() and restore()
+	 */
+	public StatisticalMatcher(String username, String password,
+			TemplateStorage storage) {
 		super();
+		setStorage(storage);
 		initialize(username, password);
 	}
 
@@ -58,139 +168,596 @@ public class StatisticalMatcher implements KeystrokeMatcher {
 	 *             if no template data exists
 	 */
 	public StatisticalMatcher(String username) throws IOException {
+		this(username, new BinaryTemplateStorage());
+	}
+
+	/**
+	 * Loads the template and password for the given username from the given
+	 * storage.
+	 * 
+	 * @param username
+	 *            username for which to load template data
+	 * @param storage
+	 *            storage to load from, also used by save() and restore()
+	 * @throws IOException
+	 *             if no template data exists
+	 */
+	public StatisticalMatcher(String username, TemplateStorage storage)
+			throws IOException {
 		super();
+		setStorage(storage);
 
-		restore(username);
-		
-		if (templateBasis.isEmpty()) {
-			throw new IOException(
-					"Template basis must contain at least one sample");
-		}
+		synchronized (this) {
+			this.templateBasis = new LinkedList<KeystrokeSequence>(storage
+					.getStoredTemplate(username));
 
-		String password = templateBasis.get(0).getCapturedValue();
+			if (templateBasis.isEmpty()) {
+				throw new IOException(
+						"Template basis must contain at least one sample");
+			}
 
-		initialize(username, password);
+			String password = templateBasis.get(0).getCapturedValue();
+
+			initialize(username, password);
+		}
 	}
 
-	private void initialize(String username, String password) {
+	private void setStorage(TemplateStorage storage) {
+		if (null == storage) {
+			throw new IllegalArgumentException("storage must be non-null");
+		}
+		this.storage = storage;
+	}
+
+	private synchronized void initialize(String username, String password) {
 		this.username = username;
 		internalTemplate = new ExactPhraseMatcher(password);
 		samplePoints = password.length();
+		rebuildAccumulators();
+		recalculateStats();
 	}
 
-	public void addSequence(KeystrokeSequence sequence) {
-		this.templateBasis.add(sequence);
-		statsDirty = true;
+	/**
+	 * Adds a sample to the template. The running statistics for each position
+	 * are updated at O(log n) cost per position, and a new snapshot is
+	 * published for readers.
+	 * 
+	 * @param sequence
+	 *            a sequence with one keystroke per sample point
+	 * @throws IllegalArgumentException
+	 *             if the sequence is not the same length as the template
+	 */
+	public synchronized void addSequence(KeystrokeSequence sequence) {
+		addSequences(Collections.singletonList(sequence));
 	}
 
-	public void recalculateStats() {
-		dwellStats.clear();
-		flightStats.clear();
-		if (!templateBasis.isEmpty()) {
-			dwellStats.addAll(analyzeData(new KeystrokeDwellTimeVisitor()));
-			flightStats.addAll(analyzeData(new KeystrokeFlightTimeVisitor()));
+	/**
+	 * Adds several samples to the template, publishing a single new snapshot
+	 * once all of them have been added.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if any sequence is not the same length as the template, in
+	 *             which case none are added
+	 */
+	public synchronized void addSequences(
+			List<? extends KeystrokeSequence> sequences) {
+		for (KeystrokeSequence sequence : sequences) {
+			if (sequence.size() != samplePoints) {
+				throw new IllegalArgumentException("sequence length ["
+						+ sequence.size()
+						+ "] does not match template length [" + samplePoints
+						+ "]");
+			}
 		}
 
-		statsDirty = false;
+		for (KeystrokeSequence sequence : sequences) {
+			this.templateBasis.add(sequence);
+			accumulate(sequence);
+		}
+		evictBeyondWindow();
+		recalculateStats();
 	}
 
-	public float getDistance(KeystrokeSequence sequence) {
-		if (KeystrokeMatcher.NO_MATCH == internalTemplate.getDistance(sequence)) {
-			return KeystrokeMatcher.NO_MATCH;
+	private void accumulate(KeystrokeTimings sequence) {
+		for (int i = 0; i < samplePoints; i++) {
+			dwellAccumulators[i].add(sequence.getDwellTime(i));
+			flightAccumulators[i].add(sequence.getFlightTime(i));
 		}
+	}
 
-		return this.getStatisticalDistance(sequence);
+	/**
+	 * Drops the oldest samples until the template fits the adaptive window,
+	 * taking their times back out of the running statistics.
+	 */
+	private void evictBeyondWindow() {
+		if (0 == adaptiveWindow) {
+			return;
+		}
+		while (templateBasis.size() > adaptiveWindow) {
+			unaccumulate(templateBasis.removeFirst());
+		}
 	}
 
-	protected float getStatisticalDistance(KeystrokeSequence sequence) {
-		return Float.valueOf(1.0f - (getNumberOfOutliers(sequence) / Float
-				.valueOf(samplePoints * 2))); // 2x sample points because we
-		// capture set for flight and
-		// set for dwell
+	private void unaccumulate(KeystrokeTimings sequence) {
+		for (int i = 0; i < samplePoints; i++) {
+			dwellAccumulators[i].remove(sequence.getDwellTime(i));
+			flightAccumulators[i].remove(sequence.getFlightTime(i));
+		}
 	}
 
-	private int getNumberOfOutliers(KeystrokeSequence sequence) {
+	/**
+	 * Bounds the template to the given number of most recent samples, and
+	 * lets adapt() add verified attempts to it. Once the window is full,
+	 * each new sample replaces the oldest at O(log n) cost per position, so
+	 * memory and update cost stay constant however long the template is in
+	 * use. A template already larger than the window loses its oldest
+	 * samples at once.
+	 * 
+	 * That cost only holds for the box and whisker statistics. A
+	 * DistanceModel set with setDistanceModel() is still compiled again over
+	 * the whole window on every update, which costs time proportional to the
+	 * window size times the number of features (and, for
+	 * MahalanobisDistanceModel, a matrix inversion on top), so keep windows
+	 * small when adapting with a model.
+	 * 
+	 * @param capacity
+	 *            the most samples to keep, or 0 to keep every sample and stop
+	 *            adapting
+	 * @throws IllegalArgumentException
+	 *             if capacity is negative
+	 */
+	public synchronized void setAdaptiveWindow(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("capacity [" + capacity
+					+ "] can not be negative");
+		}
+		this.adaptiveWindow = capacity;
+		if (capacity > 0 && templateBasis.size() > capacity) {
+			evictBeyondWindow();
+			recalculateStats();
+		}
+	}
 
-		int numberOfOutliers = 0;
+	/**
+	 * @return the most samples the template keeps, or 0 if it is unbounded
+	 *         and does not adapt
+	 */
+	public synchronized int getAdaptiveWindow() {
+		return adaptiveWindow;
+	}
 
-		StatisticalDatasetBuilder statsBuilder = new StatisticalDatasetBuilder(
-				this);
+	/**
+	 * Adds a verified attempt to the template when an adaptive window is set,
+	 * replacing the oldest sample once the window is full. The caller is
+	 * trusted to only offer attempts that were accepted as genuine. Changes
+	 * are kept in memory until save().
+	 */
+	public synchronized boolean adapt(KeystrokeSequence attempt) {
+		if (0 == adaptiveWindow || attempt.size() != samplePoints
+				|| !getTextToMatch().equals(attempt.getCapturedValue())) {
+			return false;
+		}
 
-		DefaultBoxAndWhiskerCategoryDataset stats = statsBuilder
-				.generateStats();
+		long start = System.nanoTime();
+		try {
+			addSequence(attempt);
+		} finally {
+			ADAPT_LATENCY.recordSince(start);
+		}
+		return true;
+	}
 
-		int keystrokeIndex = 1;
-		for (Keystroke currentKeystroke : sequence) {
+	/**
+	 * Discards the running statistics and recomputes them from the full
+	 * template basis; only needed when samples are removed or replaced. The
+	 * basis is read once into a primitive feature matrix, and each column's
+	 * statistics are filled from that rather than from the keystrokes.
+	 */
+	private void rebuildAccumulators() {
+		final FeatureMatrix timings = TIMING_EXTRACTOR.extract(templateBasis);
+		final int rows = timings.getRowCount();
+
+		RunningBoxAndWhiskerStatistics[] accumulators = computeColumns(
+				new ColumnFunction<RunningBoxAndWhiskerStatistics>() {
+					public RunningBoxAndWhiskerStatistics compute(int column) {
+						RunningBoxAndWhiskerStatistics accumulator = new RunningBoxAndWhiskerStatistics();
+						int position = column % samplePoints;
+						int feature = 2 * position
+								+ (column < samplePoints ? 0 : 1);
+
+						for (int row = 0; row < rows; row++) {
+							accumulator.add(timings.get(row, feature));
+						}
+						return accumulator;
+					}
+				}, new RunningBoxAndWhiskerStatistics[samplePoints * 2]);
+
+		dwellAccumulators = new RunningBoxAndWhiskerStatistics[samplePoints];
+		flightAccumulators = new RunningBoxAndWhiskerStatistics[samplePoints];
+		System.arraycopy(accumulators, 0, dwellAccumulators, 0, samplePoints);
+		System.arraycopy(accumulators, samplePoints, flightAccumulators, 0,
+				samplePoints);
+	}
 
-			long dwell = currentKeystroke.getDwellTime();
-			long flight = currentKeystroke.getFlightTime();
+	/**
+	 * Recomputes the statistics from the running per-position statistics and
+	 * publishes them as a new snapshot. Every change to the template already
+	 * does this, so callers never need to.
+	 */
+	public synchronized void recalculateStats() {
+		long start = System.nanoTime();
+		try {
+			publishStats();
+		} finally {
+			RECALCULATE_LATENCY.recordSince(start);
+		}
+	}
+
+	private void publishStats() {
+		List<BoxPlotStatistics> dwellStats = new ArrayList<BoxPlotStatistics>();
+		List<BoxPlotStatistics> flightStats = new ArrayList<BoxPlotStatistics>();
+		if (!templateBasis.isEmpty()) {
+			BoxPlotStatistics[] stats = computeColumns(
+					new ColumnFunction<BoxPlotStatistics>() {
+						public BoxPlotStatistics compute(int column) {
+							if (column < samplePoints) {
+								return dwellAccumulators[column]
+										.createStatistics();
+							}
+							return flightAccumulators[column - samplePoints]
+									.createStatistics();
+						}
+					}, new BoxPlotStatistics[samplePoints * 2]);
+
+			for (int i = 0; i < samplePoints; i++) {
+				dwellStats.add(stats[i]);
+				flightStats.add(stats[samplePoints + i]);
+			}
+		}
 
-			long minFlight = stats.getMinRegularValue("flight", keystrokeIndex)
-					.longValue();
-			long maxFlight = stats.getMaxRegularValue("flight", keystrokeIndex)
-					.longValue();
+		CompiledDistanceModel compiledModel = null;
+		if (null != distanceModel && !templateBasis.isEmpty()) {
+			compiledModel = distanceModel.compile(templateBasis);
+		}
 
-			long minDwell = stats.getMinRegularValue("dwell", keystrokeIndex)
-					.longValue();
-			long maxDwell = stats.getMaxRegularValue("dwell", keystrokeIndex)
-					.longValue();
+		snapshot.set(new Snapshot(internalTemplate, samplePoints, dwellStats,
+				flightStats, compileTemplate(dwellStats, flightStats),
+				compiledModel, templateBasis.size(), numberOfFilteredTemplates));
+	}
 
-			if (dwell < minDwell || dwell > maxDwell) {
-				numberOfOutliers++;
+	/**
+	 * Computes every column of the template, spread over the statistics
+	 * executor when there is one and the template holds at least the
+	 * threshold number of values; otherwise on the calling thread. Either
+	 * way the results are the same.
+	 */
+	private <T> T[] computeColumns(final ColumnFunction<T> function,
+			final T[] result) {
+		int columns = result.length;
+		int values = columns * templateBasis.size();
+
+		if (null == statisticsExecutor || values < parallelThreshold
+				|| columns < 2) {
+			for (int column = 0; column < columns; column++) {
+				result[column] = function.compute(column);
 			}
+			return result;
+		}
 
-			if (flight < minFlight || flight > maxFlight) {
-				numberOfOutliers++;
+		int chunks = Math.min(columns, Runtime.getRuntime()
+				.availableProcessors() * CHUNKS_PER_CPU);
+		int chunkSize = (columns + chunks - 1) / chunks;
+
+		List<Callable<Object[]>> tasks = new ArrayList<Callable<Object[]>>(
+				chunks);
+		for (int start = 0; start < columns; start += chunkSize) {
+			final int from = start;
+			final int to = Math.min(columns, start + chunkSize);
+			tasks.add(new Callable<Object[]>() {
+				public Object[] call() {
+					Object[] chunk = new Object[to - from];
+					for (int column = from; column < to; column++) {
+						chunk[column - from] = function.compute(column);
+					}
+					return chunk;
+				}
+			});
+		}
+
+		try {
+			int column = 0;
+			for (Future<Object[]> chunk : statisticsExecutor.invokeAll(tasks)) {
+				Object[] computed = getResult(chunk);
+				System.arraycopy(computed, 0, result, column,
+						computed.length);
+				column += computed.length;
+			}
+		} catch (InterruptedException e) {
+			// finish on this thread rather than publish partial statistics
+			Thread.currentThread().interrupt();
+			for (int column = 0; column < columns; column++) {
+				result[column] = function.compute(column);
 			}
+		}
+		return result;
+	}
 
-			keystrokeIndex++;
+	/**
+	 * Computes per-position statistics on the given executor whenever the
+	 * template holds at least the given number of dwell and flight times in
+	 * total. Worthwhile for long passphrases with large templates.
+	 * 
+	 * @param executor
+	 *            executor to compute statistics on, or null to always compute
+	 *            them on the calling thread
+	 * @param parallelThreshold
+	 *            number of values below which statistics are computed on the
+	 *            calling thread anyway
+	 */
+	public synchronized void setStatisticsExecutor(ExecutorService executor,
+			int parallelThreshold) {
+		if (parallelThreshold < 0) {
+			throw new IllegalArgumentException(
+					"parallelThreshold must not be negative");
 		}
+		this.statisticsExecutor = executor;
+		this.parallelThreshold = parallelThreshold;
+	}
 
-		return numberOfOutliers;
+	/**
+	 * Scores sequences with the given model from now on. The model is
+	 * compiled again over every sample whenever the template changes,
+	 * including each time adapt() adds an attempt, so a model makes template
+	 * updates cost time proportional to the template size.
+	 * 
+	 * @param model
+	 *            the model to score with, or null to go back to counting
+	 *            outliers of the box and whisker statistics
+	 */
+	public synchronized void setDistanceModel(DistanceModel model) {
+		this.distanceModel = model;
+		recalculateStats();
 	}
 
-	public List<BoxAndWhiskerItem> getFlightTimeStatistics() {
-		if (statsDirty) {
-			recalculateStats();
+	/**
+	 * @return the model sequences are scored with, or null if they are scored
+	 *         by the box and whisker statistics
+	 */
+	public synchronized DistanceModel getDistanceModel() {
+		return distanceModel;
+	}
+
+	public float getDistance(KeystrokeTimings sequence) {
+		long start = System.nanoTime();
+		try {
+			Snapshot current = snapshot.get();
+			if (KeystrokeMatcher.NO_MATCH == current.phraseMatcher
+					.getDistance(sequence)) {
+				return KeystrokeMatcher.NO_MATCH;
+			}
+
+			return getStatisticalDistance(current, sequence);
+		} finally {
+			DISTANCE_LATENCY.recordSince(start);
 		}
-		return new ArrayList<BoxAndWhiskerItem>(flightStats);
 	}
 
-	public List<BoxAndWhiskerItem> getDwellTimeStatistics() {
-		if (statsDirty) {
-			recalculateStats();
+	/**
+	 * @return a scorer for one attempt against the template as it is now,
+	 *         which later changes to the template don't affect; or null if a
+	 *         DistanceModel is set, as those only score complete attempts
+	 * @throws IllegalStateException
+	 *             if the template has no samples yet
+	 */
+	public IncrementalScorer createScorer(float threshold) {
+		Snapshot current = snapshot.get();
+		if (0 == current.numberOfTemplates) {
+			throw new IllegalStateException("template has no samples");
+		}
+		if (null != current.distanceModel) {
+			return null;
 		}
-		return new ArrayList<BoxAndWhiskerItem>(dwellStats);
+		return new IncrementalScorer(current.phraseMatcher.getTextToMatch(),
+				current.compiledTemplate, threshold);
 	}
 
-	protected List<BoxAndWhiskerItem> analyzeData(
-			KeystrokeVisitor<Number> visitor) {
+	protected float getStatisticalDistance(KeystrokeTimings sequence) {
+		return getStatisticalDistance(snapshot.get(), sequence);
+	}
 
-		BoxAndWhiskerItem[] resultArray = new BoxAndWhiskerItem[samplePoints];
+	private static float getStatisticalDistance(Snapshot current,
+			KeystrokeTimings sequence) {
+		if (null != current.distanceModel) {
+			return current.distanceModel.getDistance(sequence);
+		}
+		return toDistance(current, current.compiledTemplate
+				.countOutliers(sequence));
+	}
 
-		for (int i = 0; i < samplePoints; i++) {
-			List<Number> currentSample = new ArrayList<Number>();
+	private static float toDistance(Snapshot current, int numberOfOutliers) {
+		return Float.valueOf(1.0f - (numberOfOutliers / Float
+				.valueOf(current.samplePoints * 2))); // 2x sample points
+		// because we capture set for flight and set for dwell
+	}
+
+	/**
+	 * Scores many sequences against the current template on the calling
+	 * thread. The template is compiled once for the whole batch.
+	 * 
+	 * @param sequences
+	 *            the sequences to score
+	 * @return the distance of each sequence, in the same order
+	 */
+	public float[] getDistances(List<? extends KeystrokeTimings> sequences) {
+		long start = System.nanoTime();
+		KeystrokeTimings[] batch = toArray(sequences);
+		float[] result = new float[batch.length];
+
+		scoreRange(snapshot.get(), batch, result, 0, batch.length);
+
+		BATCH_LATENCY.recordSince(start);
+		return result;
+	}
+
+	/**
+	 * Scores many sequences against the current template, splitting the batch
+	 * into chunks that are scored concurrently on the given executor. Every
+	 * chunk is scored against the same snapshot, even if the template changes
+	 * while the batch is in progress.
+	 * 
+	 * @param sequences
+	 *            the sequences to score
+	 * @param executor
+	 *            executor on which to score chunks of the batch
+	 * @return the distance of each sequence, in the same order
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the chunks to complete
+	 */
+	public float[] getDistances(List<? extends KeystrokeTimings> sequences,
+			ExecutorService executor) throws InterruptedException {
+		long startNanos = System.nanoTime();
+		final KeystrokeTimings[] batch = toArray(sequences);
+		final float[] result = new float[batch.length];
+		final Snapshot current = snapshot.get();
+
+		int chunks = Math.max(1, Math.min(batch.length / MIN_BATCH_CHUNK,
+				Runtime.getRuntime().availableProcessors() * CHUNKS_PER_CPU));
+		int chunkSize = (batch.length + chunks - 1) / chunks;
+
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(chunks);
+		for (int start = 0; start < batch.length; start += chunkSize) {
+			final int from = start;
+			final int to = Math.min(batch.length, start + chunkSize);
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					scoreRange(current, batch, result, from, to);
+					return null;
+				}
+			});
+		}
+
+		for (Future<Object> chunk : executor.invokeAll(tasks)) {
+			getResult(chunk);
+		}
 
-			for (KeystrokeSequence currentSequence : templateBasis) {
-				currentSample.add(visitor.visitKeystroke(currentSequence
-						.getKeystroke(i)));
+		BATCH_LATENCY.recordSince(startNanos);
+		return result;
+	}
+
+	/**
+	 * Waits for a completed task, rethrowing whatever it failed with.
+	 */
+	private static <T> T getResult(Future<T> task)
+			throws InterruptedException {
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
 			}
+			throw new IllegalStateException("parallel task failed", cause);
+		}
+	}
+
+	private static void scoreRange(Snapshot current,
+			KeystrokeTimings[] batch, float[] result, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (KeystrokeMatcher.NO_MATCH == current.phraseMatcher
+					.getDistance(batch[i])) {
+				result[i] = KeystrokeMatcher.NO_MATCH;
+			} else {
+				result[i] = getStatisticalDistance(current, batch[i]);
+			}
+		}
+	}
+
+	private static KeystrokeTimings[] toArray(
+			List<? extends KeystrokeTimings> sequences) {
+		return sequences.toArray(new KeystrokeTimings[sequences.size()]);
+	}
+
+	/**
+	 * @return the primitive verification model for the current template
+	 *         statistics
+	 */
+	public CompiledTemplate getCompiledTemplate() {
+		return snapshot.get().compiledTemplate;
+	}
+
+	private static CompiledTemplate compileTemplate(
+			List<BoxPlotStatistics> dwellStats,
+			List<BoxPlotStatistics> flightStats) {
+		int length = dwellStats.size();
+
+		long[] minDwell = new long[length];
+		long[] maxDwell = new long[length];
+		long[] minFlight = new long[length];
+		long[] maxFlight = new long[length];
 
-			resultArray[i] = getStatsForSample(currentSample);
+		for (int i = 0; i < length; i++) {
+			BoxPlotStatistics dwell = dwellStats.get(i);
+			BoxPlotStatistics flight = flightStats.get(i);
+
+			minDwell[i] = dwell.getMinRegularValue();
+			maxDwell[i] = dwell.getMaxRegularValue();
+			minFlight[i] = flight.getMinRegularValue();
+			maxFlight[i] = flight.getMaxRegularValue();
 		}
 
-		return Arrays.asList(resultArray);
+		return new CompiledTemplate(minDwell, maxDwell, minFlight, maxFlight);
+	}
+
+	public List<BoxPlotStatistics> getFlightTimeStatistics() {
+		return new ArrayList<BoxPlotStatistics>(snapshot.get().flightStats);
 	}
 
-	protected BoxAndWhiskerItem getStatsForSample(List<Number> sample) {
-		return BoxAndWhiskerCalculator.calculateBoxAndWhiskerStatistics(sample);
+	public List<BoxPlotStatistics> getDwellTimeStatistics() {
+		return new ArrayList<BoxPlotStatistics>(snapshot.get().dwellStats);
 	}
 
 	public String getTextToMatch() {
-		return internalTemplate.getTextToMatch();
+		return snapshot.get().phraseMatcher.getTextToMatch();
+	}
+
+	/**
+	 * Removes every sample with a dwell or flight time outside the regular
+	 * range of its position. Each sample is checked once against the
+	 * primitive per-position fences of the current snapshot, and only the
+	 * removed samples are taken back out of the running statistics.
+	 * 
+	 * @return the number of samples removed
+	 */
+	public synchronized int filterOutliers() {
+		CompiledTemplate fences = snapshot.get().compiledTemplate;
+
+		int removed = 0;
+		for (Iterator<KeystrokeSequence> i = templateBasis.iterator(); i
+				.hasNext();) {
+			KeystrokeSequence currentSequence = i.next();
+			if (fences.countOutliers(currentSequence) > 0) {
+				i.remove();
+				unaccumulate(currentSequence);
+				removed++;
+			}
+		}
+
+		if (removed > 0) {
+			numberOfFilteredTemplates += removed;
+			recalculateStats();
+		}
+		return removed;
 	}
 
-	public void filterOutliers(Map<Integer, Set<Number>> flightOutliers,
+	/**
+	 * Removes every sample holding one of the given times, keyed by position.
+	 * Times are matched with equals(), so they must be Longs; prefer
+	 * filterOutliers(), which needs no outlier sets.
+	 */
+	public synchronized void filterOutliers(Map<Integer, Set<Number>> flightOutliers,
 			Map<Integer, Set<Number>> dwellOutliers) {
 
 		List<KeystrokeSequence> filteredTemplateBasis = new ArrayList<KeystrokeSequence>();
@@ -228,24 +795,60 @@ public class StatisticalMatcher implements KeystrokeMatcher {
 
 		templateBasis.clear();
 		templateBasis.addAll(filteredTemplateBasis);
-		statsDirty = true;
+		rebuildAccumulators();
+		recalculateStats();
+	}
+
+	/**
+	 * @return the feature vectors of every sample of the template, one row
+	 *         per sample
+	 */
+	public synchronized FeatureMatrix extractFeatures(
+			FeatureExtractor extractor) {
+		return extractor.extract(templateBasis);
 	}
 
 	public int getNumberOfTemplatesCaptured() {
-		return templateBasis.size();
+		return snapshot.get().numberOfTemplates;
 	}
 
 	public int getNumberOfFilteredTemplates() {
-		return numberOfFilteredTemplates;
+		return snapshot.get().numberOfFilteredTemplates;
 	}
 
-	public void save() {
-		storage.saveTemplate(username, templateBasis);
+	/**
+	 * Writes the template to storage.
+	 * 
+	 * @throws IOException
+	 *             if the template could not be written
+	 */
+	public synchronized void save() throws IOException {
+		long start = System.nanoTime();
+		try {
+			storage.saveTemplate(username, new ArrayList<KeystrokeSequence>(
+					templateBasis));
+		} finally {
+			SAVE_LATENCY.recordSince(start);
+		}
 	}
 
-	public void restore(String username) throws IOException {
-		this.templateBasis = storage.getStoredTemplate(username);
-		statsDirty = true;
+	/**
+	 * Replaces the template with the one stored for the given user.
+	 * 
+	 * @throws IOException
+	 *             if the user has no stored template
+	 */
+	public synchronized void restore(String username) throws IOException {
+		long start = System.nanoTime();
+		try {
+			this.templateBasis = new LinkedList<KeystrokeSequence>(storage
+					.getStoredTemplate(username));
+			rebuildAccumulators();
+			evictBeyondWindow();
+			recalculateStats();
+		} finally {
+			RESTORE_LATENCY.recordSince(start);
+		}
 	}
 
 }
@@ -0,0 +1,273 @@
+package net.ladieu.biometrics.keystroke.model;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.ladieu.biometrics.keystroke.metrics.Counter;
+import net.ladieu.biometrics.keystroke.metrics.Metrics;
+import net.ladieu.biometrics.keystroke.model.persistence.TemplateStorage;
+import net.ladieu.system.SystemTime;
+
+/**
+ * Keeps loaded, compiled StatisticalMatchers for recently verified users in
+ * memory so that repeated logins don't re-read and re-analyze the template.
+ *
+ * Entries are evicted least recently used first once the registry is full,
+ * and expire a fixed time after they were loaded. Saving a template through
+ * {@link #getStorage()} (including StatisticalMatcher.save() on any matcher
+ * this registry created) invalidates that user's entry.
+ *
+ * With an adaptive window set, matchers are loaded with that window and
+ * save their template after every attempt they adapt to, so what they learn
+ * survives expiry, eviction and restarts. Saving an adapted template keeps
+ * the matcher's own entry. Back the registry with a
+ * WriteBehindTemplateStorage so those saves don't hold up verification.
+ */
+public class StatisticalMatcherRegistry implements KeystrokeMatcherSource {
+
+	private static class CachedMatcher {
+		private final StatisticalMatcher matcher;
+		private final long loadTime;
+
+		private CachedMatcher(StatisticalMatcher matcher, long loadTime) {
+			this.matcher = matcher;
+			this.loadTime = loadTime;
+		}
+	}
+
+	/**
+	 * Saves its template after every attempt it adapts to. A failed save
+	 * leaves the attempt in memory, to be written with the next one.
+	 */
+	private static class PersistentAdaptiveMatcher extends StatisticalMatcher {
+
+		private PersistentAdaptiveMatcher(String username,
+				TemplateStorage storage) throws IOException {
+			super(username, storage);
+		}
+
+		public synchronized boolean adapt(KeystrokeSequence attempt) {
+			if (!super.adapt(attempt)) {
+				return false;
+			}
+			try {
+				save();
+			} catch (IOException e) {
+				ADAPTED_SAVE_FAILURES.increment();
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Passes everything through to the real storage, dropping the cached
+	 * matcher of any user whose template is saved, unless it is the owner
+	 * saving its own template.
+	 */
+	private class InvalidatingTemplateStorage implements TemplateStorage {
+
+		// the matcher that saves through this storage, if any
+		private StatisticalMatcher owner;
+
+		public List<KeystrokeSequence> getStoredTemplate(String userName)
+				throws IOException {
+			return storage.getStoredTemplate(userName);
+		}
+
+		public void saveTemplate(String userName,
+				List<KeystrokeSequence> template) throws IOException {
+			try {
+				storage.saveTemplate(userName, template);
+			} finally {
+				// even a failed save may have changed what's stored
+				invalidate(userName, owner);
+			}
+		}
+	}
+
+	private static final Counter ADAPTED_SAVE_FAILURES = Metrics
+			.getDefault().counter("registry.adaptedSaveFailures");
+
+	private final TemplateStorage storage;
+	private final TemplateStorage invalidatingStorage;
+	private final int maximumSize;
+	private final long expireAfterMillis;
+
+	private final LinkedHashMap<String, CachedMatcher> entries;
+
+	private int adaptiveWindow;
+	private long generation;
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+
+	/**
+	 * @param storage
+	 *            storage from which templates are loaded
+	 * @param maximumSize
+	 *            the most matchers to hold at once
+	 * @param expireAfterMillis
+	 *            how long a matcher may be served after it was loaded
+	 */
+	public StatisticalMatcherRegistry(TemplateStorage storage,
+			final int maximumSize, long expireAfterMillis) {
+		super();
+		if (null == storage) {
+			throw new IllegalArgumentException("storage must be non-null");
+		}
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("maximumSize must be positive");
+		}
+		if (expireAfterMillis < 0) {
+			throw new IllegalArgumentException(
+					"expireAfterMillis can not be negative");
+		}
+
+		this.storage = storage;
+		this.invalidatingStorage = new InvalidatingTemplateStorage();
+		this.maximumSize = maximumSize;
+		this.expireAfterMillis = expireAfterMillis;
+
+		entries = new LinkedHashMap<String, CachedMatcher>(16, 0.75f, true) {
+			private static final long serialVersionUID = 6262376411934815417L;
+
+			protected boolean removeEldestEntry(
+					Map.Entry<String, CachedMatcher> eldest) {
+				if (size() > StatisticalMatcherRegistry.this.maximumSize) {
+					evictionCount++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the matcher for the given user, loading and compiling it from
+	 * storage if it isn't already held.
+	 *
+	 * @throws IOException
+	 *             if the user has no stored template
+	 */
+	public StatisticalMatcher getMatcher(String username) throws IOException {
+		long loadGeneration;
+		int window;
+
+		synchronized (this) {
+			CachedMatcher cached = entries.get(username);
+			if (null != cached && !isExpired(cached)) {
+				hitCount++;
+				return cached.matcher;
+			}
+
+			if (null != cached) {
+				entries.remove(username);
+				evictionCount++;
+			}
+			missCount++;
+			loadGeneration = generation;
+			window = adaptiveWindow;
+		}
+
+		// load outside of the lock so that one slow read doesn't hold up
+		// every other user
+		StatisticalMatcher matcher;
+		if (0 == window) {
+			matcher = new StatisticalMatcher(username, invalidatingStorage);
+		} else {
+			InvalidatingTemplateStorage ownStorage = new InvalidatingTemplateStorage();
+			matcher = new PersistentAdaptiveMatcher(username, ownStorage);
+			ownStorage.owner = matcher;
+			matcher.setAdaptiveWindow(window);
+		}
+
+		synchronized (this) {
+			// anything saved while we were loading may have made our copy
+			// stale, so only cache it if nothing was invalidated meanwhile
+			if (loadGeneration == generation) {
+				entries.put(username, new CachedMatcher(matcher, SystemTime
+						.asMillis()));
+			}
+		}
+
+		return matcher;
+	}
+
+	private boolean isExpired(CachedMatcher cached) {
+		return SystemTime.asMillis() - cached.loadTime >= expireAfterMillis;
+	}
+
+	public synchronized void invalidate(String username) {
+		invalidate(username, null);
+	}
+
+	/**
+	 * Drops the user's entry unless it holds the given matcher. Loads in
+	 * progress are never cached, as they may have read the old template.
+	 */
+	private synchronized void invalidate(String username,
+			StatisticalMatcher keep) {
+		CachedMatcher cached = entries.get(username);
+		if (null != cached && cached.matcher != keep) {
+			entries.remove(username);
+		}
+		generation++;
+	}
+
+	public synchronized void invalidateAll() {
+		entries.clear();
+		generation++;
+	}
+
+	/**
+	 * Sets the adaptive window of the matchers this registry loads, and drops
+	 * those already held so they are loaded again with it.
+	 *
+	 * @param capacity
+	 *            the most samples each template keeps, or 0 to keep every
+	 *            sample and not adapt
+	 * @throws IllegalArgumentException
+	 *             if capacity is negative
+	 * @see StatisticalMatcher#setAdaptiveWindow(int)
+	 */
+	public synchronized void setAdaptiveWindow(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("capacity [" + capacity
+					+ "] can not be negative");
+		}
+		if (capacity != adaptiveWindow) {
+			adaptiveWindow = capacity;
+			invalidateAll();
+		}
+	}
+
+	public synchronized int getAdaptiveWindow() {
+		return adaptiveWindow;
+	}
+
+	/**
+	 * @return storage that reads through to the underlying storage and
+	 *         invalidates a user's entry whenever their template is saved
+	 */
+	public TemplateStorage getStorage() {
+		return invalidatingStorage;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+}
@@ -0,0 +1,25 @@
+package net.ladieu.biometrics.keystroke.model.distance;
+
+import net.ladieu.biometrics.keystroke.model.KeystrokeTimings;
+
+/**
+ * A DistanceModel fitted to one template, as returned by
+ * DistanceModel.compile(). Immutable.
+ */
+public interface CompiledDistanceModel {
+
+	/**
+	 * @return the number of keystroke positions the model was fitted to
+	 */
+	int getLength();
+
+	/**
+	 * @param sequence
+	 *            the attempt to score; must be as long as the template
+	 * @return how closely the attempt matches, from KeystrokeMatcher.NO_MATCH
+	 *         to KeystrokeMatcher.EXACT_MATCH
+	 * @throws IllegalArgumentException
+	 *             if the sequence length differs from the template length
+	 */
+	float getDistance(KeystrokeTimings sequence);
+}
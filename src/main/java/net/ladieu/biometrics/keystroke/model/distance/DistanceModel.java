@@ -0,0 +1,26 @@
+package net.ladieu.biometrics.keystroke.model.distance;
+
+import java.util.List;
+
+import net.ladieu.biometrics.keystroke.model.KeystrokeTimings;
+
+/**
+ * A way of scoring attempts against a template of enrolled samples, which
+ * StatisticalMatcher can use in place of its box and whisker outlier count.
+ *
+ * Models see each sample as a feature vector of the dwell and flight time of
+ * every position, and are compiled once per change to the template into a
+ * form that scores an attempt in a single pass.
+ */
+public interface DistanceModel {
+
+	/**
+	 * @param samples
+	 *            the enrolled samples, all of the same length
+	 * @return the model fitted to the samples; must be safe to share between
+	 *         threads
+	 * @throws IllegalArgumentException
+	 *             if there are no samples or they differ in length
+	 */
+	CompiledDistanceModel compile(List<? extends KeystrokeTimings> samples);
+}
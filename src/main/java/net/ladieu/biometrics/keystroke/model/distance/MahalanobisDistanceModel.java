@@ -0,0 +1,210 @@
+package net.ladieu.biometrics.keystroke.model.distance;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.ladieu.biometrics.keystroke.model.KeystrokeTimings;
+import net.ladieu.biometrics.keystroke.stats.FeatureMatrix;
+
+/**
+ * Mahalanobis distance, which unlike the per-feature models accounts for
+ * features that vary together, such as a slow key followed by a short
+ * flight. The inverse covariance matrix is computed when the model is
+ * compiled, so scoring is a matrix-vector product over the feature vector.
+ *
+ * With f features and a squared distance of q, a distance per feature of
+ * d = sqrt(q / f) scores 1 / (1 + d).
+ *
+ * Templates usually have fewer samples than features, so the covariance
+ * matrix is regularized by adding a constant to its diagonal before it is
+ * inverted.
+ */
+public class MahalanobisDistanceModel implements DistanceModel {
+
+	private static final class Compiled implements CompiledDistanceModel {
+		private final int length;
+		private final double[] mean;
+		// row major, features x features
+		private final double[] inverseCovariance;
+		// the difference vector of each scoring thread, so scoring doesn't
+		// allocate
+		private final ThreadLocal<double[]> differences;
+
+		private Compiled(double[] mean, double[] inverseCovariance) {
+			this.length = mean.length / 2;
+			this.mean = mean;
+			this.inverseCovariance = inverseCovariance;
+
+			final int features = mean.length;
+			this.differences = new ThreadLocal<double[]>() {
+				protected double[] initialValue() {
+					return new double[features];
+				}
+			};
+		}
+
+		public int getLength() {
+			return length;
+		}
+
+		public float getDistance(KeystrokeTimings sequence) {
+			TimingFeatures.checkLength(sequence, length);
+
+			int features = mean.length;
+			double[] difference = differences.get();
+			for (int i = 0; i < length; i++) {
+				difference[2 * i] = sequence.getDwellTime(i) - mean[2 * i];
+				difference[2 * i + 1] = sequence.getFlightTime(i)
+						- mean[2 * i + 1];
+			}
+
+			double squared = 0;
+			int row = 0;
+			for (int i = 0; i < features; i++, row += features) {
+				double product = 0;
+				for (int j = 0; j < features; j++) {
+					product += inverseCovariance[row + j] * difference[j];
+				}
+				squared += difference[i] * product;
+			}
+
+			// rounding can leave a tiny negative value for an exact match
+			double distance = Math.sqrt(Math.max(0, squared) / features);
+			return (float) (1.0 / (1.0 + distance));
+		}
+	}
+
+	private final double regularization;
+
+	/**
+	 * For templates captured in milliseconds.
+	 */
+	public MahalanobisDistanceModel() {
+		this(TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Regularizes by the square of the smallest deviation assumed for a
+	 * feature at the given resolution, which also keeps features that never
+	 * vary invertible.
+	 * 
+	 * @param resolution
+	 *            the unit of the template's times
+	 */
+	public MahalanobisDistanceModel(TimeUnit resolution) {
+		this(square(checkedMinDeviation(resolution)));
+	}
+
+	/**
+	 * @param regularization
+	 *            amount added to each variance before inverting the covariance
+	 *            matrix, in square units of the template's times
+	 */
+	public MahalanobisDistanceModel(double regularization) {
+		super();
+		if (!(regularization > 0)) {
+			throw new IllegalArgumentException(
+					"regularization must be positive");
+		}
+		this.regularization = regularization;
+	}
+
+	public CompiledDistanceModel compile(
+			List<? extends KeystrokeTimings> samples) {
+		FeatureMatrix matrix = TimingFeatures.extract(samples);
+		double[] mean = matrix.getColumnMeans();
+		int features = mean.length;
+		int rows = matrix.getRowCount();
+
+		double[] covariance = new double[features * features];
+		double[] deviation = new double[features];
+		for (int row = 0; row < rows; row++) {
+			for (int f = 0; f < features; f++) {
+				deviation[f] = matrix.get(row, f) - mean[f];
+			}
+			for (int i = 0; i < features; i++) {
+				for (int j = i; j < features; j++) {
+					covariance[i * features + j] += deviation[i] * deviation[j];
+				}
+			}
+		}
+
+		int divisor = Math.max(1, rows - 1);
+		for (int i = 0; i < features; i++) {
+			for (int j = i; j < features; j++) {
+				double value = covariance[i * features + j] / divisor;
+				covariance[i * features + j] = value;
+				covariance[j * features + i] = value;
+			}
+			covariance[i * features + i] += regularization;
+		}
+
+		return new Compiled(mean, invert(covariance, features));
+	}
+
+	private static double checkedMinDeviation(TimeUnit resolution) {
+		TimingFeatures.checkResolution(resolution);
+		return TimingFeatures.minDeviation(resolution);
+	}
+
+	private static double square(double value) {
+		return value * value;
+	}
+
+	/**
+	 * Inverts a symmetric positive definite matrix by Gauss-Jordan elimination
+	 * with partial pivoting.
+	 */
+	static double[] invert(double[] matrix, int size) {
+		double[] work = matrix.clone();
+		double[] inverse = new double[size * size];
+		for (int i = 0; i < size; i++) {
+			inverse[i * size + i] = 1.0;
+		}
+
+		for (int column = 0; column < size; column++) {
+			int pivot = column;
+			for (int row = column + 1; row < size; row++) {
+				if (Math.abs(work[row * size + column]) > Math
+						.abs(work[pivot * size + column])) {
+					pivot = row;
+				}
+			}
+			if (0 == work[pivot * size + column]) {
+				throw new IllegalArgumentException("matrix is singular");
+			}
+			swapRows(work, size, column, pivot);
+			swapRows(inverse, size, column, pivot);
+
+			double scale = 1.0 / work[column * size + column];
+			for (int j = 0; j < size; j++) {
+				work[column * size + j] *= scale;
+				inverse[column * size + j] *= scale;
+			}
+
+			for (int row = 0; row < size; row++) {
+				double factor = work[row * size + column];
+				if (row != column && 0 != factor) {
+					for (int j = 0; j < size; j++) {
+						work[row * size + j] -= factor * work[column * size + j];
+						inverse[row * size + j] -= factor
+								* inverse[column * size + j];
+					}
+				}
+			}
+		}
+
+		return inverse;
+	}
+
+	private static void swapRows(double[] matrix, int size, int a, int b) {
+		if (a == b) {
+			return;
+		}
+		for (int j = 0; j < size; j++) {
+			double temp = matrix[a * size + j];
+			matrix[a * size + j] = matrix[b * size + j];
+			matrix[b * size + j] = temp;
+		}
+	}
+}
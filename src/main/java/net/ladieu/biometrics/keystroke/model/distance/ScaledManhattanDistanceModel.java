@@ -0,0 +1,86 @@
+package net.ladieu.biometrics.keystroke.model.distance;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.ladieu.biometrics.keystroke.model.KeystrokeTimings;
+import net.ladieu.biometrics.keystroke.stats.FeatureMatrix;
+
+/**
+ * Scaled Manhattan distance: the absolute difference of each feature from
+ * its enrolled mean, divided by the feature's mean absolute deviation, and
+ * averaged over all features. An average deviation of d scores 1 / (1 + d).
+ *
+ * Robust to the occasional wild timing, and cheap: one subtraction and one
+ * multiplication per feature.
+ */
+public class ScaledManhattanDistanceModel implements DistanceModel {
+
+	private static final class Compiled implements CompiledDistanceModel {
+		private final int length;
+		private final double[] mean;
+		private final double[] scale;
+
+		private Compiled(double[] mean, double[] scale) {
+			this.length = mean.length / 2;
+			this.mean = mean;
+			this.scale = scale;
+		}
+
+		public int getLength() {
+			return length;
+		}
+
+		public float getDistance(KeystrokeTimings sequence) {
+			TimingFeatures.checkLength(sequence, length);
+
+			double sum = 0;
+			for (int i = 0; i < length; i++) {
+				sum += Math.abs(sequence.getDwellTime(i) - mean[2 * i])
+						* scale[2 * i];
+				sum += Math.abs(sequence.getFlightTime(i) - mean[2 * i + 1])
+						* scale[2 * i + 1];
+			}
+
+			return (float) (1.0 / (1.0 + sum / mean.length));
+		}
+	}
+
+	private final double minDeviation;
+
+	/**
+	 * For templates captured in milliseconds.
+	 */
+	public ScaledManhattanDistanceModel() {
+		this(TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param resolution
+	 *            the unit of the template's times
+	 */
+	public ScaledManhattanDistanceModel(TimeUnit resolution) {
+		super();
+		TimingFeatures.checkResolution(resolution);
+		this.minDeviation = TimingFeatures.minDeviation(resolution);
+	}
+
+	public CompiledDistanceModel compile(
+			List<? extends KeystrokeTimings> samples) {
+		FeatureMatrix features = TimingFeatures.extract(samples);
+		double[] mean = features.getColumnMeans();
+		int rows = features.getRowCount();
+
+		double[] scale = new double[mean.length];
+		for (int row = 0; row < rows; row++) {
+			for (int f = 0; f < mean.length; f++) {
+				scale[f] += Math.abs(features.get(row, f) - mean[f]);
+			}
+		}
+		for (int f = 0; f < mean.length; f++) {
+			scale[f] = 1.0 / Math.max(minDeviation, scale[f] / rows);
+		}
+
+		return new Compiled(mean, scale);
+	}
+}
@@ -0,0 +1,73 @@
+package net.ladieu.biometrics.keystroke.model.distance;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.ladieu.biometrics.keystroke.model.KeystrokeTimings;
+import net.ladieu.biometrics.keystroke.stats.FeatureExtractor;
+import net.ladieu.biometrics.keystroke.stats.FeatureExtractor.Feature;
+import net.ladieu.biometrics.keystroke.stats.FeatureMatrix;
+
+/**
+ * Feature vectors as seen by the distance models: the dwell time of each
+ * position at index 2i, and its flight time at 2i + 1.
+ */
+final class TimingFeatures {
+
+	private static final FeatureExtractor EXTRACTOR = new FeatureExtractor(
+			Feature.DWELL, Feature.FLIGHT);
+
+	/**
+	 * The smallest deviation a model assumes for any feature: one
+	 * millisecond, or one unit if the resolution is coarser. Keyboards are
+	 * rarely accurate to less, so a feature that never varied is treated as
+	 * varying by that much rather than making every other value infinitely
+	 * far.
+	 * 
+	 * @param resolution
+	 *            the unit of the template's times
+	 * @return the floor, in that unit
+	 */
+	static double minDeviation(TimeUnit resolution) {
+		return Math.max(1, resolution.convert(1, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if resolution is null
+	 */
+	static void checkResolution(TimeUnit resolution) {
+		if (null == resolution) {
+			throw new IllegalArgumentException("resolution must be non-null");
+		}
+	}
+
+	private TimingFeatures() {
+		super();
+	}
+
+	/**
+	 * @return the samples as rows of features
+	 * @throws IllegalArgumentException
+	 *             if there are no samples or they differ in length
+	 */
+	static FeatureMatrix extract(List<? extends KeystrokeTimings> samples) {
+		if (samples.isEmpty()) {
+			throw new IllegalArgumentException(
+					"a model needs at least one sample");
+		}
+		return EXTRACTOR.extract(samples);
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the sequence is not of the given length
+	 */
+	static void checkLength(KeystrokeTimings sequence, int length) {
+		if (sequence.size() != length) {
+			throw new IllegalArgumentException("sequence length ["
+					+ sequence.size() + "] does not match template length ["
+					+ length + "]");
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package net.ladieu.biometrics.keystroke.model.distance;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.ladieu.biometrics.keystroke.model.KeystrokeTimings;
+import net.ladieu.biometrics.keystroke.stats.FeatureMatrix;
+
+/**
+ * Counts the features more than a given number of standard deviations from
+ * their enrolled mean, scoring like the box and whisker matcher: one minus
+ * the fraction of features out of range.
+ */
+public class ZScoreDistanceModel implements DistanceModel {
+
+	private static final double DEFAULT_LIMIT = 1.96;
+
+	private static final class Compiled implements CompiledDistanceModel {
+		private final int length;
+		private final double[] mean;
+		// how far each feature may stray from its mean, in the template's unit
+		private final double[] allowance;
+
+		private Compiled(double[] mean, double[] allowance) {
+			this.length = mean.length / 2;
+			this.mean = mean;
+			this.allowance = allowance;
+		}
+
+		public int getLength() {
+			return length;
+		}
+
+		public float getDistance(KeystrokeTimings sequence) {
+			TimingFeatures.checkLength(sequence, length);
+
+			int numberOfOutliers = 0;
+			for (int i = 0; i < length; i++) {
+				long dwell = sequence.getDwellTime(i);
+				long flight = sequence.getFlightTime(i);
+
+				if (Math.abs(dwell - mean[2 * i]) > allowance[2 * i]) {
+					numberOfOutliers++;
+				}
+				if (Math.abs(flight - mean[2 * i + 1]) > allowance[2 * i + 1]) {
+					numberOfOutliers++;
+				}
+			}
+
+			return 1.0f - numberOfOutliers / (float) mean.length;
+		}
+	}
+
+	private final double limit;
+	private final double minDeviation;
+
+	public ZScoreDistanceModel() {
+		this(DEFAULT_LIMIT);
+	}
+
+	/**
+	 * For templates captured in milliseconds.
+	 * 
+	 * @param limit
+	 *            number of standard deviations from the mean beyond which a
+	 *            feature is out of range
+	 */
+	public ZScoreDistanceModel(double limit) {
+		this(limit, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param limit
+	 *            number of standard deviations from the mean beyond which a
+	 *            feature is out of range
+	 * @param resolution
+	 *            the unit of the template's times
+	 */
+	public ZScoreDistanceModel(double limit, TimeUnit resolution) {
+		super();
+		if (!(limit > 0)) {
+			throw new IllegalArgumentException("limit must be positive");
+		}
+		TimingFeatures.checkResolution(resolution);
+		this.limit = limit;
+		this.minDeviation = TimingFeatures.minDeviation(resolution);
+	}
+
+	public CompiledDistanceModel compile(
+			List<? extends KeystrokeTimings> samples) {
+		FeatureMatrix features = TimingFeatures.extract(samples);
+		double[] mean = features.getColumnMeans();
+		int rows = features.getRowCount();
+
+		double[] allowance = new double[mean.length];
+		for (int row = 0; row < rows; row++) {
+			for (int f = 0; f < mean.length; f++) {
+				double deviation = features.get(row, f) - mean[f];
+				allowance[f] += deviation * deviation;
+			}
+		}
+		for (int f = 0; f < mean.length; f++) {
+			double deviation = Math.sqrt(allowance[f]
+					/ Math.max(1, rows - 1));
+			allowance[f] = limit * Math.max(minDeviation, deviation);
+		}
+
+		return new Compiled(mean, allowance);
+	}
+}
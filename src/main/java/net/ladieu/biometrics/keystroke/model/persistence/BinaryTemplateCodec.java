@@ -0,0 +1,276 @@
+package net.ladieu.biometrics.keystroke.model.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.ladieu.biometrics.keystroke.model.Keystroke;
+import net.ladieu.biometrics.keystroke.model.KeystrokeException;
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+
+/**
+ * Encodes templates in a compact, versioned binary layout:
+ *
+ * <pre>
+ * int     magic ('BKST')
+ * byte    version
+ * varint  nanoseconds per unit of the times below (since version 2; version
+ *         1 times are in milliseconds)
+ * varint  number of sequences
+ * per sequence:
+ *   varint  number of keystrokes (n)
+ *   n x varint  captured value, one character per keystroke
+ *   n x (zigzag varint start time delta from prior keystroke start,
+ *        varint dwell time + 1, or 0 if the keystroke was never released)
+ * </pre>
+ *
+ * Keystroke links are not written; they are rebuilt by adding the decoded
+ * keystrokes to a new sequence in order.
+ *
+ * Each codec has a time resolution, the unit of the keystroke times it is
+ * given and returns. Templates stored at another resolution are converted as
+ * they are decoded; converting to a coarser unit truncates.
+ */
+public class BinaryTemplateCodec {
+
+	public static final int MAGIC = 0x424B5354;
+	public static final byte VERSION = 2;
+
+	private static final byte MILLISECOND_VERSION = 1;
+
+	private static final int HEADER_LENGTH = 5;
+
+	private static final TimeUnit[] UNITS = { TimeUnit.NANOSECONDS,
+			TimeUnit.MICROSECONDS, TimeUnit.MILLISECONDS, TimeUnit.SECONDS };
+
+	private final TimeUnit resolution;
+
+	/**
+	 * Encodes and decodes keystroke times in milliseconds.
+	 */
+	public BinaryTemplateCodec() {
+		this(TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param resolution
+	 *            the unit of the keystroke times encoded and decoded
+	 */
+	public BinaryTemplateCodec(TimeUnit resolution) {
+		super();
+		if (null == resolution) {
+			throw new IllegalArgumentException("resolution must be non-null");
+		}
+		this.resolution = resolution;
+	}
+
+	public TimeUnit getResolution() {
+		return resolution;
+	}
+
+	/**
+	 * @return true if the given buffer starts with this codec's header; the
+	 *         buffer position is not changed
+	 */
+	public boolean isEncoded(ByteBuffer data) {
+		return data.remaining() >= HEADER_LENGTH
+				&& MAGIC == data.getInt(data.position());
+	}
+
+	public byte[] encode(List<KeystrokeSequence> template) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream(
+				64 * (template.size() + 1));
+
+		output.write(MAGIC >>> 24);
+		output.write(MAGIC >>> 16);
+		output.write(MAGIC >>> 8);
+		output.write(MAGIC);
+		output.write(VERSION);
+		writeVarint(output, resolution.toNanos(1));
+
+		writeVarint(output, template.size());
+
+		for (KeystrokeSequence currentSequence : template) {
+			encodeSequence(output, currentSequence);
+		}
+
+		return output.toByteArray();
+	}
+
+	private void encodeSequence(ByteArrayOutputStream output,
+			KeystrokeSequence sequence) {
+		int length = sequence.size();
+		writeVarint(output, length);
+
+		for (int i = 0; i < length; i++) {
+			writeVarint(output, sequence.getKeystroke(i).getValue());
+		}
+
+		long priorStart = 0;
+		for (int i = 0; i < length; i++) {
+			Keystroke currentKeystroke = sequence.getKeystroke(i);
+
+			long start = currentKeystroke.getStartTime();
+			writeVarint(output, zigzag(start - priorStart));
+			priorStart = start;
+
+			if (currentKeystroke.isReleased()) {
+				writeVarint(output, currentKeystroke.getDwellTime() + 1);
+			} else {
+				writeVarint(output, 0);
+			}
+		}
+	}
+
+	/**
+	 * Decodes a template starting at the buffer's position, leaving the
+	 * position just past the encoded data.
+	 *
+	 * @throws IOException
+	 *             if the data is not in this format or is corrupt
+	 */
+	public List<KeystrokeSequence> decode(ByteBuffer data) throws IOException {
+		try {
+			if (MAGIC != data.getInt()) {
+				throw new IOException("not a binary template");
+			}
+
+			byte version = data.get();
+			TimeUnit storedResolution;
+			if (VERSION == version) {
+				storedResolution = toUnit(readVarint(data));
+			} else if (MILLISECOND_VERSION == version) {
+				storedResolution = TimeUnit.MILLISECONDS;
+			} else {
+				throw new IOException("unsupported template version ["
+						+ version + "]");
+			}
+
+			int count = readLength(data);
+			List<KeystrokeSequence> result = new ArrayList<KeystrokeSequence>(
+					count);
+
+			for (int i = 0; i < count; i++) {
+				result.add(decodeSequence(data, storedResolution));
+			}
+
+			return result;
+		} catch (BufferUnderflowException e) {
+			throw new IOException("template data is truncated");
+		} catch (KeystrokeException e) {
+			throw new IOException("template data is corrupt: "
+					+ e.getMessage());
+		} catch (IllegalArgumentException e) {
+			throw new IOException("template data is corrupt: "
+					+ e.getMessage());
+		}
+	}
+
+	private static TimeUnit toUnit(long nanosPerUnit) throws IOException {
+		for (TimeUnit unit : UNITS) {
+			if (unit.toNanos(1) == nanosPerUnit) {
+				return unit;
+			}
+		}
+		throw new IOException("unsupported time resolution [" + nanosPerUnit
+				+ "ns]");
+	}
+
+	private KeystrokeSequence decodeSequence(ByteBuffer data,
+			TimeUnit storedResolution) throws IOException {
+		int length = readLength(data);
+
+		char[] values = new char[length];
+		for (int i = 0; i < length; i++) {
+			values[i] = (char) readVarint(data);
+		}
+
+		KeystrokeSequence sequence = new KeystrokeSequence();
+		long start = 0;
+		for (int i = 0; i < length; i++) {
+			start += unzigzag(readVarint(data));
+			long dwellPlusOne = readVarint(data);
+
+			Keystroke keystroke = new Keystroke(values[i], resolution.convert(
+					start, storedResolution));
+			sequence.addKeystroke(keystroke);
+			if (0 != dwellPlusOne) {
+				keystroke.release(resolution.convert(start + dwellPlusOne - 1,
+						storedResolution));
+			}
+		}
+
+		return sequence;
+	}
+
+	/**
+	 * @return the template with its keystroke times converted from the given
+	 *         unit to this codec's resolution; the template itself if they
+	 *         are the same
+	 */
+	public List<KeystrokeSequence> convert(List<KeystrokeSequence> template,
+			TimeUnit unit) {
+		if (resolution == unit || null == template) {
+			return template;
+		}
+
+		List<KeystrokeSequence> result = new ArrayList<KeystrokeSequence>(
+				template.size());
+		for (KeystrokeSequence sequence : template) {
+			KeystrokeSequence converted = new KeystrokeSequence();
+			for (int i = 0; i < sequence.size(); i++) {
+				Keystroke original = sequence.getKeystroke(i);
+				Keystroke keystroke = new Keystroke(original.getValue(),
+						resolution.convert(original.getStartTime(), unit));
+				converted.addKeystroke(keystroke);
+				if (original.isReleased()) {
+					keystroke.release(resolution.convert(original.getEndTime(),
+							unit));
+				}
+			}
+			result.add(converted);
+		}
+		return result;
+	}
+
+	private int readLength(ByteBuffer data) throws IOException {
+		long length = readVarint(data);
+		if (length > data.remaining()) {
+			throw new IOException("length [" + length
+					+ "] exceeds remaining template data");
+		}
+		return (int) length;
+	}
+
+	static void writeVarint(ByteArrayOutputStream output, long value) {
+		while ((value & ~0x7FL) != 0) {
+			output.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		output.write((int) value);
+	}
+
+	static long readVarint(ByteBuffer data) throws IOException {
+		long result = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = data.get();
+			result |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new IOException("malformed varint");
+	}
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
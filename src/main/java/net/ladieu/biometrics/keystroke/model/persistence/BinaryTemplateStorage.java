@@ -0,0 +1,171 @@
+package net.ladieu.biometrics.keystroke.model.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.ladieu.biometrics.keystroke.metrics.LatencyHistogram;
+import net.ladieu.biometrics.keystroke.metrics.Metrics;
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+
+/**
+ * Stores each user's template in a <code>&lt;username&gt;.template</code> file
+ * using the {@link BinaryTemplateCodec} layout. Files written by
+ * {@link SerializingTemplateStorage} are still readable and are converted to
+ * the binary layout the next time the template is saved, or explicitly via
+ * {@link #migrateTemplate(String)}; their times are taken to be in
+ * milliseconds.
+ */
+public class BinaryTemplateStorage implements TemplateStorage {
+
+	private static final int SERIALIZATION_MAGIC = 0xACED;
+
+	private static final LatencyHistogram LOAD_LATENCY = Metrics
+			.getDefault().histogram("storage.binary.load");
+	private static final LatencyHistogram SAVE_LATENCY = Metrics
+			.getDefault().histogram("storage.binary.save");
+
+	private File directory;
+	private BinaryTemplateCodec codec;
+
+	public BinaryTemplateStorage() {
+		this(null);
+	}
+
+	/**
+	 * @param directory
+	 *            directory holding the template files, or null for the
+	 *            working directory
+	 */
+	public BinaryTemplateStorage(File directory) {
+		this(directory, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param directory
+	 *            directory holding the template files, or null for the
+	 *            working directory
+	 * @param resolution
+	 *            unit of the keystroke times saved and loaded; templates
+	 *            stored at another resolution are converted when loaded
+	 */
+	public BinaryTemplateStorage(File directory, TimeUnit resolution) {
+		super();
+		this.directory = directory;
+		this.codec = new BinaryTemplateCodec(resolution);
+	}
+
+	private File createFileHandle(String userName) {
+		return new File(directory, userName + ".template");
+	}
+
+	public List<KeystrokeSequence> getStoredTemplate(String userName)
+			throws IOException {
+		long start = System.nanoTime();
+		try {
+			File file = createFileHandle(userName);
+			byte[] contents = readContents(file);
+
+			if (isSerialized(contents)) {
+				return codec.convert(readSerialized(file, contents),
+						TimeUnit.MILLISECONDS);
+			}
+
+			return codec.decode(ByteBuffer.wrap(contents));
+		} finally {
+			LOAD_LATENCY.recordSince(start);
+		}
+	}
+
+	public void saveTemplate(String userName, List<KeystrokeSequence> template)
+			throws IOException {
+		long start = System.nanoTime();
+		try {
+			writeContents(createFileHandle(userName), codec.encode(template));
+		} finally {
+			SAVE_LATENCY.recordSince(start);
+		}
+	}
+
+	/**
+	 * Rewrites a template stored with Java serialization in the binary
+	 * layout.
+	 *
+	 * @return true if the template was converted, false if it was already
+	 *         binary
+	 * @throws IOException
+	 *             if the template can not be read or written
+	 */
+	public boolean migrateTemplate(String userName) throws IOException {
+		File file = createFileHandle(userName);
+		byte[] contents = readContents(file);
+
+		if (!isSerialized(contents)) {
+			return false;
+		}
+
+		writeContents(file, codec.encode(codec.convert(readSerialized(file,
+				contents), TimeUnit.MILLISECONDS)));
+		return true;
+	}
+
+	/**
+	 * @throws IOException
+	 *             if the template refers to classes that no longer exist
+	 */
+	private List<KeystrokeSequence> readSerialized(File file, byte[] contents)
+			throws IOException {
+		List<KeystrokeSequence> template = SerializingTemplateStorage
+				.readTemplate(new ByteArrayInputStream(contents));
+		if (null == template) {
+			throw new IOException("template [" + file
+					+ "] could not be deserialized");
+		}
+		return template;
+	}
+
+	private boolean isSerialized(byte[] contents) {
+		return contents.length >= 2
+				&& SERIALIZATION_MAGIC == (((contents[0] & 0xFF) << 8) | (contents[1] & 0xFF));
+	}
+
+	private byte[] readContents(File file) throws IOException {
+		DataInputStream input = new DataInputStream(new FileInputStream(file));
+		try {
+			byte[] contents = new byte[(int) file.length()];
+			input.readFully(contents);
+			return contents;
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Writes to a temporary file and renames it over the original, so that a
+	 * failed write never leaves a partially written template behind.
+	 */
+	private void writeContents(File file, byte[] contents) throws IOException {
+		File temporaryFile = new File(file.getPath() + ".tmp");
+
+		FileOutputStream output = new FileOutputStream(temporaryFile);
+		try {
+			output.write(contents);
+			output.getFD().sync();
+		} finally {
+			output.close();
+		}
+
+		if (!temporaryFile.renameTo(file)) {
+			// some platforms refuse to rename over an existing file
+			if (!file.delete() || !temporaryFile.renameTo(file)) {
+				throw new IOException("unable to replace [" + file + "]");
+			}
+		}
+	}
+}
@@ -0,0 +1,546 @@
+package net.ladieu.biometrics.keystroke.model.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import net.ladieu.biometrics.keystroke.metrics.LatencyHistogram;
+import net.ladieu.biometrics.keystroke.metrics.Metrics;
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+
+/**
+ * Stores each user's template as a snapshot plus an append-only journal of
+ * the changes made since, so that enrolling another sample appends one small
+ * record rather than rewriting the whole template, and a crash can never
+ * leave a template half written.
+ *
+ * Each save is compared against the template last stored for the user, by
+ * identity of its sequences, and journaled as one of:
+ * <ul>
+ * <li>APPEND: sequences added to the end, as StatisticalMatcher.addSequence()
+ * does</li>
+ * <li>REMOVE: sequences removed without reordering the rest, as
+ * StatisticalMatcher.filterOutliers() does</li>
+ * <li>REPLACE: the whole template, for any other change</li>
+ * </ul>
+ *
+ * Files, in the storage directory:
+ *
+ * <pre>
+ * &lt;username&gt;.snapshot: int magic ('BKSN'), int version, long generation,
+ *                       int CRC-32 of the template, int template length,
+ *                       template in BinaryTemplateCodec layout
+ * &lt;username&gt;.journal:  int magic ('BKJL'), int version, long generation,
+ *                       then records of
+ *                       int length, int CRC-32, byte type, payload
+ * </pre>
+ *
+ * Every record is synced before saveTemplate() returns. On loading, records
+ * are replayed until the first one that is incomplete or fails its checksum,
+ * which is where a crash interrupted a write; it and anything after it are
+ * truncated. Once the journal holds more records than the compaction
+ * threshold, the current template is written to a new snapshot and the
+ * journal restarted. Snapshot and journal are each replaced by renaming a
+ * fully written file over them, and only journal records of the snapshot's
+ * generation are replayed, so a crash part way through compaction recovers
+ * either the old or the new state, never a mix.
+ */
+public class JournalingTemplateStorage implements TemplateStorage {
+
+	private static final int SNAPSHOT_MAGIC = 0x424B534E;
+	private static final int JOURNAL_MAGIC = 0x424B4A4C;
+	private static final int VERSION = 1;
+
+	private static final int SNAPSHOT_HEADER_LENGTH = 24;
+	private static final int JOURNAL_HEADER_LENGTH = 16;
+	private static final int RECORD_HEADER_LENGTH = 8;
+
+	private static final byte APPEND = 1;
+	private static final byte REMOVE = 2;
+	private static final byte REPLACE = 3;
+
+	private static final int DEFAULT_COMPACTION_THRESHOLD = 64;
+
+	private static final LatencyHistogram LOAD_LATENCY = Metrics
+			.getDefault().histogram("storage.journaling.load");
+	private static final LatencyHistogram SAVE_LATENCY = Metrics
+			.getDefault().histogram("storage.journaling.save");
+	private static final LatencyHistogram COMPACT_LATENCY = Metrics
+			.getDefault().histogram("storage.journaling.compact");
+
+	/**
+	 * What is known of one user's files, as of the last load or write.
+	 */
+	private static class UserJournal {
+		private List<KeystrokeSequence> template;
+		private long generation;
+		private int recordCount;
+		// false when the journal is missing or belongs to an older snapshot,
+		// and must be started afresh before appending
+		private boolean journalCurrent;
+	}
+
+	private final File directory;
+	private final int compactionThreshold;
+	private final BinaryTemplateCodec codec;
+	private final Map<String, UserJournal> journals;
+
+	public JournalingTemplateStorage(File directory) {
+		this(directory, DEFAULT_COMPACTION_THRESHOLD);
+	}
+
+	/**
+	 * @param directory
+	 *            directory holding the snapshot and journal files, or null for
+	 *            the working directory
+	 * @param compactionThreshold
+	 *            number of journal records after which the template is
+	 *            written to a new snapshot
+	 */
+	public JournalingTemplateStorage(File directory, int compactionThreshold) {
+		this(directory, compactionThreshold, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param directory
+	 *            directory holding the snapshot and journal files, or null for
+	 *            the working directory
+	 * @param compactionThreshold
+	 *            number of journal records after which the template is
+	 *            written to a new snapshot
+	 * @param resolution
+	 *            unit of the keystroke times saved and loaded; templates
+	 *            stored at another resolution are converted when loaded
+	 */
+	public JournalingTemplateStorage(File directory, int compactionThreshold,
+			TimeUnit resolution) {
+		super();
+		if (compactionThreshold < 1) {
+			throw new IllegalArgumentException(
+					"compactionThreshold must be positive");
+		}
+		this.directory = directory;
+		this.compactionThreshold = compactionThreshold;
+		this.codec = new BinaryTemplateCodec(resolution);
+		this.journals = new HashMap<String, UserJournal>();
+	}
+
+	public synchronized List<KeystrokeSequence> getStoredTemplate(
+			String userName) throws IOException {
+		long start = System.nanoTime();
+		try {
+			UserJournal journal = getJournal(userName);
+			if (null == journal) {
+				throw new FileNotFoundException("no template stored for ["
+						+ userName + "]");
+			}
+			return new ArrayList<KeystrokeSequence>(journal.template);
+		} finally {
+			LOAD_LATENCY.recordSince(start);
+		}
+	}
+
+	public synchronized void saveTemplate(String userName,
+			List<KeystrokeSequence> template) throws IOException {
+		long start = System.nanoTime();
+		try {
+			journalTemplate(userName, template);
+		} finally {
+			SAVE_LATENCY.recordSince(start);
+		}
+	}
+
+	private void journalTemplate(String userName,
+			List<KeystrokeSequence> template) throws IOException {
+		UserJournal journal = getJournal(userName);
+		byte[] record;
+		if (null == journal) {
+			journal = new UserJournal();
+			journal.template = new ArrayList<KeystrokeSequence>();
+			record = encodeRecord(APPEND, codec.encode(template));
+		} else {
+			record = createRecord(journal.template, template);
+			if (null == record) {
+				return;
+			}
+		}
+
+		try {
+			if (!journal.journalCurrent) {
+				startJournal(userName, journal.generation);
+				journal.journalCurrent = true;
+				journal.recordCount = 0;
+			}
+			appendRecord(userName, record);
+		} catch (IOException e) {
+			// the journal may now end in a partial record; reloading will
+			// truncate it before anything else is appended
+			journals.remove(userName);
+			throw e;
+		}
+
+		journal.template = new ArrayList<KeystrokeSequence>(template);
+		journal.recordCount++;
+		journals.put(userName, journal);
+
+		if (journal.recordCount > compactionThreshold) {
+			compact(userName);
+		}
+	}
+
+	/**
+	 * Writes the user's current template to a new snapshot and starts an
+	 * empty journal.
+	 *
+	 * @throws IOException
+	 *             if the user has no stored template or it can not be written
+	 */
+	public synchronized void compact(String userName) throws IOException {
+		long start = System.nanoTime();
+		try {
+			UserJournal journal = getJournal(userName);
+			if (null == journal) {
+				throw new FileNotFoundException("no template stored for ["
+						+ userName + "]");
+			}
+
+			long generation = journal.generation + 1;
+			journals.remove(userName);
+
+			writeSnapshot(userName, generation, journal.template);
+			journal.generation = generation;
+			journal.journalCurrent = false;
+			journal.recordCount = 0;
+			journals.put(userName, journal);
+
+			startJournal(userName, generation);
+			journal.journalCurrent = true;
+		} finally {
+			COMPACT_LATENCY.recordSince(start);
+		}
+	}
+
+	/**
+	 * @return the number of records in the user's journal since the last
+	 *         snapshot
+	 */
+	public synchronized int getJournalLength(String userName)
+			throws IOException {
+		UserJournal journal = getJournal(userName);
+		return (null == journal ? 0 : journal.recordCount);
+	}
+
+	/**
+	 * @return the journal record taking the stored template to the new one,
+	 *         or null if they are the same
+	 */
+	private byte[] createRecord(List<KeystrokeSequence> stored,
+			List<KeystrokeSequence> template) throws IOException {
+		int common = 0;
+		while (common < stored.size() && common < template.size()
+				&& stored.get(common) == template.get(common)) {
+			common++;
+		}
+
+		if (common == stored.size()) {
+			if (common == template.size()) {
+				return null;
+			}
+			return encodeRecord(APPEND, codec.encode(template.subList(common,
+					template.size())));
+		}
+
+		int[] removed = findRemoved(stored, template, common);
+		if (null != removed) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+					4 + 4 * removed.length);
+			DataOutputStream output = new DataOutputStream(bytes);
+			output.writeInt(removed.length);
+			for (int index : removed) {
+				output.writeInt(index);
+			}
+			return encodeRecord(REMOVE, bytes.toByteArray());
+		}
+
+		return encodeRecord(REPLACE, codec.encode(template));
+	}
+
+	/**
+	 * @return the ascending indexes of the stored sequences missing from the
+	 *         template, or null if the template is not the stored one with
+	 *         some sequences removed
+	 */
+	private int[] findRemoved(List<KeystrokeSequence> stored,
+			List<KeystrokeSequence> template, int common) {
+		if (template.size() >= stored.size()) {
+			return null;
+		}
+		int[] removed = new int[stored.size() - template.size()];
+
+		int next = 0;
+		int matched = common;
+		for (int i = common; i < stored.size(); i++) {
+			if (matched < template.size()
+					&& stored.get(i) == template.get(matched)) {
+				matched++;
+			} else if (next < removed.length) {
+				removed[next++] = i;
+			} else {
+				return null;
+			}
+		}
+
+		return (matched == template.size() ? removed : null);
+	}
+
+	private byte[] encodeRecord(byte type, byte[] payload) {
+		CRC32 crc = new CRC32();
+		crc.update(type);
+		crc.update(payload);
+
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + 1
+				+ payload.length);
+		record.putInt(1 + payload.length);
+		record.putInt((int) crc.getValue());
+		record.put(type);
+		record.put(payload);
+		return record.array();
+	}
+
+	/**
+	 * @return the user's journal, recovering it from disk if it isn't already
+	 *         held, or null if nothing is stored for the user
+	 */
+	private UserJournal getJournal(String userName) throws IOException {
+		UserJournal journal = journals.get(userName);
+		if (null == journal) {
+			journal = recover(userName);
+			if (null != journal) {
+				journals.put(userName, journal);
+			}
+		}
+		return journal;
+	}
+
+	private UserJournal recover(String userName) throws IOException {
+		File snapshotFile = createFileHandle(userName, ".snapshot");
+		File journalFile = createFileHandle(userName, ".journal");
+
+		if (!snapshotFile.exists() && !journalFile.exists()) {
+			return null;
+		}
+
+		UserJournal journal = new UserJournal();
+		if (snapshotFile.exists()) {
+			readSnapshot(snapshotFile, journal);
+		} else {
+			journal.template = new ArrayList<KeystrokeSequence>();
+		}
+
+		if (journalFile.exists()) {
+			replayJournal(journalFile, journal);
+		}
+		return journal;
+	}
+
+	private void readSnapshot(File file, UserJournal journal)
+			throws IOException {
+		ByteBuffer data = ByteBuffer.wrap(readContents(file));
+		try {
+			if (SNAPSHOT_MAGIC != data.getInt()) {
+				throw new IOException("[" + file
+						+ "] is not a template snapshot");
+			}
+			int version = data.getInt();
+			if (VERSION != version) {
+				throw new IOException("unsupported template snapshot version ["
+						+ version + "]");
+			}
+			long generation = data.getLong();
+			int checksum = data.getInt();
+			int length = data.getInt();
+
+			if (length != data.remaining()
+					|| checksum != checksum(data.array(),
+							SNAPSHOT_HEADER_LENGTH, length)) {
+				throw new IOException("[" + file + "] is corrupt");
+			}
+
+			journal.generation = generation;
+			journal.template = codec.decode(data);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("[" + file + "] is truncated");
+		}
+	}
+
+	/**
+	 * Applies the journal's records to the snapshot's template, truncating any
+	 * incomplete or corrupt tail left by an interrupted write.
+	 */
+	private void replayJournal(File file, UserJournal journal)
+			throws IOException {
+		byte[] contents = readContents(file);
+		ByteBuffer data = ByteBuffer.wrap(contents);
+
+		if (contents.length < JOURNAL_HEADER_LENGTH
+				|| JOURNAL_MAGIC != data.getInt() || VERSION != data.getInt()
+				|| journal.generation != data.getLong()) {
+			// left over from before the snapshot, or never fully created
+			journal.journalCurrent = false;
+			return;
+		}
+
+		journal.journalCurrent = true;
+		int validEnd = data.position();
+
+		while (data.remaining() >= RECORD_HEADER_LENGTH) {
+			int length = data.getInt();
+			int checksum = data.getInt();
+			if (length < 1 || length > data.remaining()
+					|| checksum != checksum(contents, data.position(), length)) {
+				break;
+			}
+
+			byte type = data.get();
+			ByteBuffer payload = data.slice();
+			payload.limit(length - 1);
+			applyRecord(journal, type, payload);
+
+			data.position(data.position() + length - 1);
+			validEnd = data.position();
+			journal.recordCount++;
+		}
+
+		if (validEnd < contents.length) {
+			RandomAccessFile output = new RandomAccessFile(file, "rw");
+			try {
+				output.setLength(validEnd);
+				output.getFD().sync();
+			} finally {
+				output.close();
+			}
+		}
+	}
+
+	private void applyRecord(UserJournal journal, byte type, ByteBuffer payload)
+			throws IOException {
+		switch (type) {
+		case APPEND:
+			journal.template.addAll(codec.decode(payload));
+			break;
+		case REMOVE:
+			int count = payload.getInt();
+			int[] removed = new int[count];
+			for (int i = 0; i < count; i++) {
+				removed[i] = payload.getInt();
+			}
+			for (int i = count - 1; i >= 0; i--) {
+				journal.template.remove(removed[i]);
+			}
+			break;
+		case REPLACE:
+			journal.template = codec.decode(payload);
+			break;
+		default:
+			throw new IOException("unknown journal record type [" + type + "]");
+		}
+	}
+
+	private void writeSnapshot(String userName, long generation,
+			List<KeystrokeSequence> template) throws IOException {
+		byte[] encoded = codec.encode(template);
+
+		ByteBuffer snapshot = ByteBuffer.allocate(SNAPSHOT_HEADER_LENGTH
+				+ encoded.length);
+		snapshot.putInt(SNAPSHOT_MAGIC);
+		snapshot.putInt(VERSION);
+		snapshot.putLong(generation);
+		snapshot.putInt(checksum(encoded, 0, encoded.length));
+		snapshot.putInt(encoded.length);
+		snapshot.put(encoded);
+
+		replaceContents(createFileHandle(userName, ".snapshot"), snapshot
+				.array());
+	}
+
+	private void startJournal(String userName, long generation)
+			throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_LENGTH);
+		header.putInt(JOURNAL_MAGIC);
+		header.putInt(VERSION);
+		header.putLong(generation);
+
+		replaceContents(createFileHandle(userName, ".journal"), header.array());
+	}
+
+	private void appendRecord(String userName, byte[] record)
+			throws IOException {
+		FileOutputStream output = new FileOutputStream(createFileHandle(
+				userName, ".journal"), true);
+		try {
+			output.write(record);
+			output.getFD().sync();
+		} finally {
+			output.close();
+		}
+	}
+
+	private File createFileHandle(String userName, String extension) {
+		return new File(directory, userName + extension);
+	}
+
+	private static int checksum(byte[] data, int offset, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(data, offset, length);
+		return (int) crc.getValue();
+	}
+
+	private static byte[] readContents(File file) throws IOException {
+		DataInputStream input = new DataInputStream(new FileInputStream(file));
+		try {
+			byte[] contents = new byte[(int) file.length()];
+			input.readFully(contents);
+			return contents;
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Writes to a temporary file and renames it over the original, so that
+	 * the original is only ever replaced by a complete file.
+	 */
+	private static void replaceContents(File file, byte[] contents)
+			throws IOException {
+		File temporaryFile = new File(file.getPath() + ".tmp");
+
+		FileOutputStream output = new FileOutputStream(temporaryFile);
+		try {
+			output.write(contents);
+			output.getFD().sync();
+		} finally {
+			output.close();
+		}
+
+		if (!temporaryFile.renameTo(file)) {
+			// some platforms refuse to rename over an existing file
+			if (!file.delete() || !temporaryFile.renameTo(file)) {
+				throw new IOException("unable to replace [" + file + "]");
+			}
+		}
+	}
+}
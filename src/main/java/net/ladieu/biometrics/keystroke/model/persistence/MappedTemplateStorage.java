@@ -0,0 +1,414 @@
+package net.ladieu.biometrics.keystroke.model.persistence;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.ladieu.biometrics.keystroke.metrics.LatencyHistogram;
+import net.ladieu.biometrics.keystroke.metrics.Metrics;
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+
+/**
+ * Stores the templates of every user in a single memory-mapped file.
+ *
+ * The file starts with a header and an open addressing hash index of record
+ * offsets, followed by append-only records:
+ *
+ * <pre>
+ * header:  int magic ('BKMS'), int version, int index capacity,
+ *          int number of users, long end of data
+ * index:   index capacity x long record offset (0 for an empty slot)
+ * records: int username length, int template length,
+ *          UTF-8 username, template in BinaryTemplateCodec layout
+ * </pre>
+ *
+ * Looking up a template is a hash probe followed by decoding straight out of
+ * the mapping. Saving appends a new record and repoints the user's index
+ * slot, leaving the previous record as garbage until {@link #compact()} is
+ * called or the index has to grow.
+ *
+ * The mapping is limited to 2GB. Changes reach the disk when the operating
+ * system writes back the mapping, or on {@link #flush()}.
+ */
+public class MappedTemplateStorage implements TemplateStorage, Flushable,
+		Closeable {
+
+	private static final int MAGIC = 0x424B4D53;
+	private static final int VERSION = 1;
+
+	private static final int HEADER_LENGTH = 24;
+	private static final int SLOT_LENGTH = 8;
+	private static final int RECORD_HEADER_LENGTH = 8;
+
+	private static final int CAPACITY_POSITION = 8;
+	private static final int SIZE_POSITION = 12;
+	private static final int DATA_END_POSITION = 16;
+
+	private static final int DEFAULT_INDEX_CAPACITY = 1 << 12;
+	private static final int INITIAL_DATA_LENGTH = 1 << 16;
+
+	private static final LatencyHistogram LOAD_LATENCY = Metrics
+			.getDefault().histogram("storage.mapped.load");
+	private static final LatencyHistogram SAVE_LATENCY = Metrics
+			.getDefault().histogram("storage.mapped.save");
+
+	private final File file;
+	private final BinaryTemplateCodec codec;
+
+	private RandomAccessFile randomAccessFile;
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+
+	private int indexCapacity;
+	private int indexSize;
+	private long dataEnd;
+
+	public MappedTemplateStorage(File file) throws IOException {
+		this(file, DEFAULT_INDEX_CAPACITY);
+	}
+
+	/**
+	 * @param file
+	 *            the store to open, created if it does not exist
+	 * @param initialIndexCapacity
+	 *            number of index slots to allocate when creating a new store;
+	 *            rounded up to a power of two. Ignored for existing stores.
+	 */
+	public MappedTemplateStorage(File file, int initialIndexCapacity)
+			throws IOException {
+		this(file, initialIndexCapacity, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param file
+	 *            the store to open, created if it does not exist
+	 * @param initialIndexCapacity
+	 *            number of index slots to allocate when creating a new store;
+	 *            rounded up to a power of two. Ignored for existing stores.
+	 * @param resolution
+	 *            unit of the keystroke times saved and loaded; templates
+	 *            stored at another resolution are converted when loaded
+	 */
+	public MappedTemplateStorage(File file, int initialIndexCapacity,
+			TimeUnit resolution) throws IOException {
+		super();
+		if (initialIndexCapacity < 1) {
+			throw new IllegalArgumentException(
+					"initialIndexCapacity must be positive");
+		}
+		this.file = file;
+		this.codec = new BinaryTemplateCodec(resolution);
+		open(Integer.highestOneBit(initialIndexCapacity * 2 - 1));
+	}
+
+	private void open(int newIndexCapacity) throws IOException {
+		boolean exists = file.exists() && file.length() > 0;
+
+		randomAccessFile = new RandomAccessFile(file, "rw");
+		channel = randomAccessFile.getChannel();
+
+		try {
+			if (exists) {
+				buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+						channel.size());
+				readHeader();
+			} else {
+				indexCapacity = newIndexCapacity;
+				indexSize = 0;
+				dataEnd = HEADER_LENGTH + (long) indexCapacity * SLOT_LENGTH;
+				buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+						dataEnd + INITIAL_DATA_LENGTH);
+				buffer.putInt(0, MAGIC);
+				buffer.putInt(4, VERSION);
+				writeHeader();
+			}
+		} catch (IOException e) {
+			abandonOpen();
+			throw e;
+		} catch (RuntimeException e) {
+			abandonOpen();
+			throw e;
+		}
+	}
+
+	/**
+	 * Releases the file after open() failed part way, leaving the store
+	 * closed. Failures while closing are dropped in favour of the original.
+	 */
+	private void abandonOpen() {
+		buffer = null;
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// reporting why the open failed matters more
+		}
+		try {
+			randomAccessFile.close();
+		} catch (IOException e) {
+			// as above
+		}
+	}
+
+	private void readHeader() throws IOException {
+		if (buffer.capacity() < HEADER_LENGTH || MAGIC != buffer.getInt(0)) {
+			throw new IOException("[" + file + "] is not a template store");
+		}
+
+		int version = buffer.getInt(4);
+		if (VERSION != version) {
+			throw new IOException("unsupported template store version ["
+					+ version + "]");
+		}
+
+		indexCapacity = buffer.getInt(CAPACITY_POSITION);
+		indexSize = buffer.getInt(SIZE_POSITION);
+		dataEnd = buffer.getLong(DATA_END_POSITION);
+
+		if (Integer.bitCount(indexCapacity) != 1
+				|| dataEnd > buffer.capacity()) {
+			throw new IOException("[" + file + "] has a corrupt header");
+		}
+	}
+
+	private void writeHeader() {
+		buffer.putInt(CAPACITY_POSITION, indexCapacity);
+		buffer.putInt(SIZE_POSITION, indexSize);
+		buffer.putLong(DATA_END_POSITION, dataEnd);
+	}
+
+	public List<KeystrokeSequence> getStoredTemplate(String userName)
+			throws IOException {
+		long start = System.nanoTime();
+		try {
+			ByteBuffer payload;
+
+			synchronized (this) {
+				ensureOpen();
+				long offset = getSlotOffset(findSlot(encodeName(userName)));
+
+				if (0 == offset) {
+					throw new FileNotFoundException("no template stored for ["
+							+ userName + "]");
+				}
+
+				payload = getPayload((int) offset);
+			}
+
+			// records are never modified once written, so decoding can
+			// happen outside of the lock
+			return codec.decode(payload);
+		} finally {
+			LOAD_LATENCY.recordSince(start);
+		}
+	}
+
+	public synchronized void saveTemplate(String userName,
+			List<KeystrokeSequence> template) throws IOException {
+		long start = System.nanoTime();
+		try {
+			ensureOpen();
+			writeRecord(encodeName(userName), codec.encode(template));
+		} finally {
+			SAVE_LATENCY.recordSince(start);
+		}
+	}
+
+	/**
+	 * @return the number of users with a stored template
+	 */
+	public synchronized int size() {
+		return indexSize;
+	}
+
+	/**
+	 * Rewrites the store with only the current record of each user,
+	 * reclaiming the space held by superseded records.
+	 */
+	public synchronized void compact() throws IOException {
+		ensureOpen();
+		rebuild(indexCapacity);
+	}
+
+	public synchronized void flush() throws IOException {
+		ensureOpen();
+		buffer.force();
+	}
+
+	public synchronized void close() throws IOException {
+		if (null != buffer) {
+			buffer.force();
+			buffer = null;
+			channel.close();
+			randomAccessFile.close();
+		}
+	}
+
+	private void writeRecord(byte[] name, byte[] payload) throws IOException {
+		int slot = findSlot(name);
+		boolean newUser = (0 == getSlotOffset(slot));
+
+		if (newUser && (indexSize + 1) * 4L > indexCapacity * 3L) {
+			rebuild(indexCapacity * 2);
+			slot = findSlot(name);
+		}
+
+		long recordStart = dataEnd;
+		long recordEnd = recordStart + RECORD_HEADER_LENGTH + name.length
+				+ payload.length;
+		ensureMapped(recordEnd);
+
+		int position = (int) recordStart;
+		buffer.putInt(position, name.length);
+		buffer.putInt(position + 4, payload.length);
+
+		ByteBuffer target = buffer.duplicate();
+		target.position(position + RECORD_HEADER_LENGTH);
+		target.put(name);
+		target.put(payload);
+
+		buffer.putLong(getSlotPosition(slot), recordStart);
+
+		dataEnd = recordEnd;
+		if (newUser) {
+			indexSize++;
+		}
+		writeHeader();
+	}
+
+	/**
+	 * Copies the live records into a new store with the given index capacity
+	 * and swaps it in place of this one.
+	 */
+	private void rebuild(int newIndexCapacity) throws IOException {
+		File rebuiltFile = new File(file.getPath() + ".tmp");
+		rebuiltFile.delete();
+
+		MappedTemplateStorage rebuilt = new MappedTemplateStorage(rebuiltFile,
+				newIndexCapacity);
+		try {
+			for (int slot = 0; slot < indexCapacity; slot++) {
+				long offset = getSlotOffset(slot);
+				if (0 != offset) {
+					rebuilt.writeRecord(getName((int) offset),
+							toArray(getPayload((int) offset)));
+				}
+			}
+		} finally {
+			rebuilt.close();
+		}
+
+		close();
+		if (!rebuiltFile.renameTo(file)) {
+			if (!file.delete() || !rebuiltFile.renameTo(file)) {
+				throw new IOException("unable to replace [" + file + "]");
+			}
+		}
+		open(newIndexCapacity);
+	}
+
+	private void ensureMapped(long length) throws IOException {
+		if (length <= buffer.capacity()) {
+			return;
+		}
+
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("template store [" + file
+					+ "] exceeds the maximum mapped size");
+		}
+
+		long newLength = Math.min(Integer.MAX_VALUE, Math.max(length,
+				buffer.capacity() * 2L));
+		buffer.force();
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, newLength);
+	}
+
+	private void ensureOpen() throws IOException {
+		if (null == buffer) {
+			throw new IOException("template store [" + file + "] is closed");
+		}
+	}
+
+	/**
+	 * @return the slot holding the given name, or the empty slot where it
+	 *         would be inserted
+	 */
+	private int findSlot(byte[] name) {
+		int mask = indexCapacity - 1;
+		int slot = hash(name) & mask;
+
+		while (true) {
+			long offset = getSlotOffset(slot);
+			if (0 == offset || nameMatches((int) offset, name)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private int getSlotPosition(int slot) {
+		return HEADER_LENGTH + slot * SLOT_LENGTH;
+	}
+
+	private long getSlotOffset(int slot) {
+		return buffer.getLong(getSlotPosition(slot));
+	}
+
+	private boolean nameMatches(int offset, byte[] name) {
+		if (buffer.getInt(offset) != name.length) {
+			return false;
+		}
+
+		int namePosition = offset + RECORD_HEADER_LENGTH;
+		for (int i = 0; i < name.length; i++) {
+			if (buffer.get(namePosition + i) != name[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private byte[] getName(int offset) {
+		byte[] name = new byte[buffer.getInt(offset)];
+		ByteBuffer source = buffer.duplicate();
+		source.position(offset + RECORD_HEADER_LENGTH);
+		source.get(name);
+		return name;
+	}
+
+	private ByteBuffer getPayload(int offset) {
+		int payloadStart = offset + RECORD_HEADER_LENGTH
+				+ buffer.getInt(offset);
+		ByteBuffer payload = buffer.duplicate();
+		payload.limit(payloadStart + buffer.getInt(offset + 4));
+		payload.position(payloadStart);
+		return payload;
+	}
+
+	private static byte[] toArray(ByteBuffer data) {
+		byte[] result = new byte[data.remaining()];
+		data.get(result);
+		return result;
+	}
+
+	private static byte[] encodeName(String userName) throws IOException {
+		return userName.getBytes("UTF-8");
+	}
+
+	private static int hash(byte[] name) {
+		int h = 0;
+		for (byte b : name) {
+			h = 31 * h + b;
+		}
+		// spread the higher bits, as in java.util.HashMap
+		h ^= (h >>> 20) ^ (h >>> 12);
+		return h ^ (h >>> 7) ^ (h >>> 4);
+	}
+}
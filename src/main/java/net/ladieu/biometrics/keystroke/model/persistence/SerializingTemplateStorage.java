@@ -2,67 +2,92 @@ package net.ladieu.biometrics.keystroke.model.persistence;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.List;
 
+import net.ladieu.biometrics.keystroke.metrics.LatencyHistogram;
+import net.ladieu.biometrics.keystroke.metrics.Metrics;
 import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
 
 public class SerializingTemplateStorage implements TemplateStorage {
 
+	private static final LatencyHistogram LOAD_LATENCY = Metrics
+			.getDefault().histogram("storage.serializing.load");
+	private static final LatencyHistogram SAVE_LATENCY = Metrics
+			.getDefault().histogram("storage.serializing.save");
+
+	private File directory;
+
 	public SerializingTemplateStorage() {
+		this(null);
+	}
+
+	/**
+	 * @param directory
+	 *            directory holding the template files, or null for the
+	 *            working directory
+	 */
+	public SerializingTemplateStorage(File directory) {
 		super();
+		this.directory = directory;
 	}
 
 	private File createFileHandle(String userName) {
-		return new File(userName + ".template");
+		return new File(directory, userName + ".template");
 	}
 
-	@SuppressWarnings("unchecked")
 	public List<KeystrokeSequence> getStoredTemplate(String userName)
 			throws IOException {
+		long start = System.nanoTime();
+		try {
+			return readTemplate(new FileInputStream(
+					createFileHandle(userName)));
+		} finally {
+			LOAD_LATENCY.recordSince(start);
+		}
+	}
+
+	/**
+	 * Reads a serialized template from the given stream.
+	 * 
+	 * @return the template, or null if it refers to unknown classes
+	 */
+	@SuppressWarnings("unchecked")
+	static List<KeystrokeSequence> readTemplate(InputStream input)
+			throws IOException {
 		ObjectInputStream objectInput = null;
 		List<KeystrokeSequence> result = null;
 		try {
-			FileInputStream fileInputStream = new FileInputStream(
-					createFileHandle(userName));
-
-			objectInput = new ObjectInputStream(fileInputStream);
+			objectInput = new ObjectInputStream(input);
 
 			result = (List<KeystrokeSequence>) objectInput.readObject();
 		} catch (ClassNotFoundException e) {
 			e.printStackTrace();
+		} finally {
+			input.close();
 		}
 
 		return result;
 	}
 
-	public void saveTemplate(String userName, List<KeystrokeSequence> template) {
-		ObjectOutputStream objectOutput = null;
-
+	public void saveTemplate(String userName, List<KeystrokeSequence> template)
+			throws IOException {
+		long start = System.nanoTime();
 		try {
-			FileOutputStream fileOutputStream = new FileOutputStream(
-					createFileHandle(userName));
-
-			objectOutput = new ObjectOutputStream(fileOutputStream);
+			ObjectOutputStream objectOutput = new ObjectOutputStream(
+					new FileOutputStream(createFileHandle(userName)));
 
-			objectOutput.writeObject(template);
-
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
-		} finally {
-			if (null != objectOutput) {
-				try {
-					objectOutput.close();
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
+			try {
+				objectOutput.writeObject(template);
+			} finally {
+				objectOutput.close();
 			}
+		} finally {
+			SAVE_LATENCY.recordSince(start);
 		}
 	}
 
@@ -10,5 +10,12 @@ public interface TemplateStorage {
 	List<KeystrokeSequence> getStoredTemplate(String userName)
 			throws IOException;
 
-	void saveTemplate(String userName, List<KeystrokeSequence> template);
+	/**
+	 * Stores the template for the given user, replacing any earlier one.
+	 * 
+	 * @throws IOException
+	 *             if the template could not be written
+	 */
+	void saveTemplate(String userName, List<KeystrokeSequence> template)
+			throws IOException;
 }
@@ -0,0 +1,335 @@
+package net.ladieu.biometrics.keystroke.model.persistence;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import net.ladieu.biometrics.keystroke.metrics.Counter;
+import net.ladieu.biometrics.keystroke.metrics.LatencyHistogram;
+import net.ladieu.biometrics.keystroke.metrics.Metrics;
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+
+/**
+ * Queues template saves and writes them to another TemplateStorage in the
+ * background, so callers never wait on the disk.
+ *
+ * Pending saves are written in batches every flush interval. Saving a user
+ * again before their earlier save was written replaces the queued template,
+ * so only the latest one is written. After each batch the underlying storage
+ * is flushed, if it is Flushable, and only then are the batch's futures
+ * completed; a future that completes normally means the template is durable.
+ * A failed write fails only that user's future.
+ *
+ * Reads see queued templates before they are written.
+ */
+public class WriteBehindTemplateStorage implements TemplateStorage, Flushable,
+		Closeable {
+
+	/**
+	 * Future for a queued save, completed by the writer once the template is
+	 * durable.
+	 */
+	private static class PendingSave extends FutureTask<Void> {
+
+		private static final Callable<Void> NOTHING = new Callable<Void>() {
+			public Void call() {
+				return null;
+			}
+		};
+
+		private List<KeystrokeSequence> template;
+
+		private PendingSave(List<KeystrokeSequence> template) {
+			super(NOTHING);
+			this.template = template;
+		}
+
+		private void succeeded() {
+			set(null);
+		}
+
+		private void failed(Throwable cause) {
+			setException(cause);
+		}
+	}
+
+	private static final LatencyHistogram BATCH_LATENCY = Metrics
+			.getDefault().histogram("storage.writeBehind.batch");
+	private static final Counter COALESCED_SAVES = Metrics.getDefault()
+			.counter("storage.writeBehind.coalesced");
+
+	private final TemplateStorage storage;
+	private final ScheduledExecutorService executor;
+	private final boolean ownsExecutor;
+	private final ScheduledFuture<?> scheduledFlush;
+
+	// guarded by this; saves waiting for the next batch, and those in the
+	// batch being written
+	private final Map<String, PendingSave> pending;
+	private Map<String, PendingSave> writing;
+	private boolean closed;
+
+	// held while a batch is written, so batches never overlap
+	private final Object writeLock = new Object();
+
+	/**
+	 * Writes batches on a daemon thread of its own, which close() stops.
+	 *
+	 * @param storage
+	 *            where templates are eventually written
+	 * @param flushIntervalMillis
+	 *            how often to write queued saves
+	 */
+	public WriteBehindTemplateStorage(TemplateStorage storage,
+			long flushIntervalMillis) {
+		this(storage, Executors
+				.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable,
+								"template-write-behind");
+						thread.setDaemon(true);
+						return thread;
+					}
+				}), true, flushIntervalMillis);
+	}
+
+	/**
+	 * Writes batches on the given executor, which remains the caller's to shut
+	 * down after close().
+	 *
+	 * @param storage
+	 *            where templates are eventually written
+	 * @param executor
+	 *            executor on which batches are written
+	 * @param flushIntervalMillis
+	 *            how often to write queued saves
+	 */
+	public WriteBehindTemplateStorage(TemplateStorage storage,
+			ScheduledExecutorService executor, long flushIntervalMillis) {
+		this(storage, executor, false, flushIntervalMillis);
+	}
+
+	private WriteBehindTemplateStorage(TemplateStorage storage,
+			ScheduledExecutorService executor, boolean ownsExecutor,
+			long flushIntervalMillis) {
+		super();
+		if (null == storage) {
+			throw new IllegalArgumentException("storage must be non-null");
+		}
+		if (null == executor) {
+			throw new IllegalArgumentException("executor must be non-null");
+		}
+		if (flushIntervalMillis <= 0) {
+			throw new IllegalArgumentException(
+					"flushIntervalMillis must be positive");
+		}
+
+		this.storage = storage;
+		this.executor = executor;
+		this.ownsExecutor = ownsExecutor;
+		this.pending = new LinkedHashMap<String, PendingSave>();
+		this.writing = new LinkedHashMap<String, PendingSave>();
+
+		scheduledFlush = executor.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				writePending();
+			}
+		}, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return the queued template if one is waiting to be written, otherwise
+	 *         the stored one
+	 */
+	public List<KeystrokeSequence> getStoredTemplate(String userName)
+			throws IOException {
+		synchronized (this) {
+			PendingSave save = pending.get(userName);
+			if (null == save) {
+				save = writing.get(userName);
+			}
+			if (null != save) {
+				return new ArrayList<KeystrokeSequence>(save.template);
+			}
+		}
+		return storage.getStoredTemplate(userName);
+	}
+
+	/**
+	 * Queues the template to be written; returns without waiting. Use
+	 * saveTemplateAsync() to learn whether the write succeeded.
+	 *
+	 * @throws IOException
+	 *             if this storage has been closed
+	 */
+	public void saveTemplate(String userName, List<KeystrokeSequence> template)
+			throws IOException {
+		saveTemplateAsync(userName, template);
+	}
+
+	/**
+	 * Queues the template to be written.
+	 *
+	 * @return a future that completes once the template, or a later one saved
+	 *         for the same user before it was written, is durable; or fails
+	 *         with the IOException that prevented it
+	 * @throws IOException
+	 *             if this storage has been closed
+	 */
+	public synchronized Future<Void> saveTemplateAsync(String userName,
+			List<KeystrokeSequence> template) throws IOException {
+		if (closed) {
+			throw new IOException("storage has been closed");
+		}
+
+		List<KeystrokeSequence> copy = new ArrayList<KeystrokeSequence>(
+				template);
+
+		PendingSave save = pending.get(userName);
+		if (null == save) {
+			save = new PendingSave(copy);
+			pending.put(userName, save);
+		} else {
+			save.template = copy;
+			COALESCED_SAVES.increment();
+		}
+		return save;
+	}
+
+	/**
+	 * @return the number of users with a save waiting to be written
+	 */
+	public synchronized int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * Writes every queued save on the calling thread.
+	 *
+	 * @throws IOException
+	 *             if any of them could not be written; the others still are
+	 */
+	public void flush() throws IOException {
+		IOException failure = writePending();
+		if (null != failure) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Stops accepting saves, writes those already queued and, if this storage
+	 * created its own thread, stops it.
+	 *
+	 * @throws IOException
+	 *             if any queued save could not be written
+	 */
+	public void close() throws IOException {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		}
+
+		scheduledFlush.cancel(false);
+		try {
+			flush();
+		} finally {
+			if (ownsExecutor) {
+				executor.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Writes the current batch of queued saves.
+	 *
+	 * @return the first failure, or null if everything was written
+	 */
+	private IOException writePending() {
+		synchronized (writeLock) {
+			Map<String, PendingSave> batch;
+			synchronized (this) {
+				if (pending.isEmpty()) {
+					return null;
+				}
+				batch = new LinkedHashMap<String, PendingSave>(pending);
+				pending.clear();
+				writing = batch;
+			}
+
+			long start = System.nanoTime();
+			try {
+				return write(batch);
+			} finally {
+				BATCH_LATENCY.recordSince(start);
+				synchronized (this) {
+					writing = new LinkedHashMap<String, PendingSave>();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the given saves, then flushes the underlying storage before
+	 * completing their futures.
+	 */
+	private IOException write(Map<String, PendingSave> batch) {
+		IOException firstFailure = null;
+		List<PendingSave> written = new ArrayList<PendingSave>(batch.size());
+
+		for (Map.Entry<String, PendingSave> entry : batch.entrySet()) {
+			PendingSave save = entry.getValue();
+			try {
+				storage.saveTemplate(entry.getKey(), save.template);
+				written.add(save);
+			} catch (IOException e) {
+				firstFailure = (null == firstFailure ? e : firstFailure);
+				save.failed(e);
+			} catch (RuntimeException e) {
+				if (null == firstFailure) {
+					firstFailure = new IOException("unable to save ["
+							+ entry.getKey() + "]");
+					firstFailure.initCause(e);
+				}
+				save.failed(e);
+			}
+		}
+
+		try {
+			if (storage instanceof Flushable) {
+				((Flushable) storage).flush();
+			}
+		} catch (IOException e) {
+			for (PendingSave save : written) {
+				save.failed(e);
+			}
+			return (null == firstFailure ? e : firstFailure);
+		} catch (RuntimeException e) {
+			IOException failure = new IOException("unable to flush "
+					+ written.size() + " saves");
+			failure.initCause(e);
+			for (PendingSave save : written) {
+				save.failed(failure);
+			}
+			return (null == firstFailure ? failure : firstFailure);
+		}
+
+		for (PendingSave save : written) {
+			save.succeeded();
+		}
+		return firstFailure;
+	}
+}
@@ -0,0 +1,45 @@
+package net.ladieu.biometrics.keystroke.service;
+
+/**
+ * A key press or release as reported by a client.
+ */
+public final class RawKeyEvent {
+
+	private final char key;
+	private final long clientTime;
+	private final boolean down;
+
+	private RawKeyEvent(char key, long clientTime, boolean down) {
+		super();
+		this.key = key;
+		this.clientTime = clientTime;
+		this.down = down;
+	}
+
+	public static RawKeyEvent keyDown(char key, long clientTime) {
+		return new RawKeyEvent(key, clientTime, true);
+	}
+
+	public static RawKeyEvent keyUp(char key, long clientTime) {
+		return new RawKeyEvent(key, clientTime, false);
+	}
+
+	public char getKey() {
+		return key;
+	}
+
+	public long getClientTime() {
+		return clientTime;
+	}
+
+	/**
+	 * @return true for a press, false for a release
+	 */
+	public boolean isDown() {
+		return down;
+	}
+
+	public String toString() {
+		return (down ? "down " : "up ") + key + " @" + clientTime;
+	}
+}
@@ -0,0 +1,339 @@
+package net.ladieu.biometrics.keystroke.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.ladieu.biometrics.keystroke.model.StatisticalMatcherRegistry;
+import net.ladieu.biometrics.keystroke.model.persistence.BinaryTemplateStorage;
+
+/**
+ * Re-runs recorded login attempts through a VerificationService, to see how
+ * templates and thresholds would have judged them.
+ *
+ * The log holds one key event per line, fields separated by tabs:
+ *
+ * <pre>
+ * attempt  user  D  key  time     a key press
+ * attempt  user  U  key  time     a key release
+ * attempt  user  C                the end of the attempt
+ * </pre>
+ *
+ * The key is exactly one character, which may itself be a tab. Events of
+ * different attempts may be interleaved; an attempt is verified once its C
+ * line is read, or at the end of the log if it has none.
+ *
+ * For every attempt, in the order they ended, one line is written:
+ *
+ * <pre>
+ * attempt  user  distance  match  corrupted  rejectedEarly  keystrokes
+ * attempt  user  ERROR  message   if it could not be verified
+ * </pre>
+ *
+ * The log is read as a stream. Only the events of unfinished attempts, and a
+ * bounded number of attempts being verified, are held at once; reading
+ * pauses while the oldest of those is still being verified.
+ */
+public class ReplayEngine {
+
+	private static final int DEFAULT_MAX_OPEN_ATTEMPTS = 10000;
+
+	private final VerificationService service;
+	private final ExecutorService executor;
+	private final int maxInFlight;
+	private final int maxOpenAttempts;
+
+	/**
+	 * @param service
+	 *            verifies each attempt
+	 * @param executor
+	 *            where attempts are verified
+	 * @param maxInFlight
+	 *            the most attempts being verified at once
+	 */
+	public ReplayEngine(VerificationService service, ExecutorService executor,
+			int maxInFlight) {
+		this(service, executor, maxInFlight, DEFAULT_MAX_OPEN_ATTEMPTS);
+	}
+
+	/**
+	 * @param service
+	 *            verifies each attempt
+	 * @param executor
+	 *            where attempts are verified
+	 * @param maxInFlight
+	 *            the most attempts being verified at once
+	 * @param maxOpenAttempts
+	 *            the most attempts that may have started and not ended at
+	 *            any point in the log
+	 */
+	public ReplayEngine(VerificationService service, ExecutorService executor,
+			int maxInFlight, int maxOpenAttempts) {
+		super();
+		if (null == service) {
+			throw new IllegalArgumentException("service must be non-null");
+		}
+		if (null == executor) {
+			throw new IllegalArgumentException("executor must be non-null");
+		}
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("maxInFlight must be positive");
+		}
+		if (maxOpenAttempts < 1) {
+			throw new IllegalArgumentException(
+					"maxOpenAttempts must be positive");
+		}
+		this.service = service;
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+		this.maxOpenAttempts = maxOpenAttempts;
+	}
+
+	/**
+	 * Replays the log file into the output file, both UTF-8.
+	 *
+	 * @return the number of attempts replayed
+	 */
+	public int replay(File log, File output) throws IOException,
+			InterruptedException {
+		Reader reader = new InputStreamReader(new FileInputStream(log),
+				"UTF-8");
+		try {
+			Writer writer = new OutputStreamWriter(new FileOutputStream(
+					output), "UTF-8");
+			try {
+				return replay(reader, writer);
+			} finally {
+				writer.close();
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Replays the log, writing a line per attempt to the output.
+	 *
+	 * @return the number of attempts replayed
+	 * @throws IOException
+	 *             if the log can't be read or is malformed, or the output
+	 *             can't be written
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for an attempt to be verified
+	 */
+	public int replay(Reader log, Writer output) throws IOException,
+			InterruptedException {
+		BufferedReader input = new BufferedReader(log);
+		BufferedWriter results = new BufferedWriter(output);
+
+		// unfinished attempts, in the order they started
+		Map<String, Attempt> open = new LinkedHashMap<String, Attempt>();
+		LinkedList<Future<String>> inFlight = new LinkedList<Future<String>>();
+		int replayed = 0;
+
+		try {
+			String line;
+			int lineNumber = 0;
+			while (null != (line = input.readLine())) {
+				lineNumber++;
+				if (0 == line.length()) {
+					continue;
+				}
+
+				Attempt finished = read(line, lineNumber, open);
+				if (null != finished) {
+					submit(finished, inFlight, results);
+					replayed++;
+				}
+			}
+
+			for (Attempt unfinished : open.values()) {
+				submit(unfinished, inFlight, results);
+				replayed++;
+			}
+			open.clear();
+
+			while (!inFlight.isEmpty()) {
+				write(inFlight.removeFirst(), results);
+			}
+		} finally {
+			for (Future<String> abandoned : inFlight) {
+				abandoned.cancel(true);
+			}
+			results.flush();
+		}
+
+		return replayed;
+	}
+
+	/**
+	 * Adds the line's event to its attempt.
+	 *
+	 * @return the attempt, if the line ended it
+	 */
+	private Attempt read(String line, int lineNumber, Map<String, Attempt> open)
+			throws IOException {
+		int userStart = line.indexOf('\t') + 1;
+		int typeStart = line.indexOf('\t', userStart) + 1;
+		if (0 == userStart || 0 == typeStart || typeStart >= line.length()) {
+			throw malformed(lineNumber, line);
+		}
+
+		String id = line.substring(0, userStart - 1);
+		String user = line.substring(userStart, typeStart - 1);
+		char type = line.charAt(typeStart);
+
+		Attempt attempt = open.get(id);
+		if (null == attempt) {
+			if (open.size() >= maxOpenAttempts) {
+				throw new IOException("line " + lineNumber + ": more than "
+						+ maxOpenAttempts + " attempts open at once");
+			}
+			attempt = new Attempt(id, user);
+			open.put(id, attempt);
+		}
+
+		if ('C' == type && typeStart + 1 == line.length()) {
+			return open.remove(id);
+		}
+
+		// type, tab, key, tab, time
+		int keyIndex = typeStart + 2;
+		int timeStart = keyIndex + 2;
+		if (('D' != type && 'U' != type) || timeStart >= line.length()
+				|| '\t' != line.charAt(typeStart + 1)
+				|| '\t' != line.charAt(keyIndex + 1)) {
+			throw malformed(lineNumber, line);
+		}
+
+		long time;
+		try {
+			time = Long.parseLong(line.substring(timeStart));
+		} catch (NumberFormatException e) {
+			throw malformed(lineNumber, line);
+		}
+
+		char key = line.charAt(keyIndex);
+		attempt.events.add('D' == type ? RawKeyEvent.keyDown(key, time)
+				: RawKeyEvent.keyUp(key, time));
+		return null;
+	}
+
+	private static IOException malformed(int lineNumber, String line) {
+		return new IOException("line " + lineNumber + " is malformed: ["
+				+ line + "]");
+	}
+
+	/**
+	 * Starts verifying the attempt, first writing out the oldest result if
+	 * too many are outstanding.
+	 */
+	private void submit(final Attempt attempt,
+			LinkedList<Future<String>> inFlight, Writer results)
+			throws IOException, InterruptedException {
+		if (inFlight.size() >= maxInFlight) {
+			write(inFlight.removeFirst(), results);
+		}
+
+		inFlight.add(executor.submit(new Callable<String>() {
+			public String call() {
+				return verify(attempt);
+			}
+		}));
+	}
+
+	private String verify(Attempt attempt) {
+		StringBuilder result = new StringBuilder();
+		result.append(attempt.id).append('\t').append(attempt.user).append(
+				'\t');
+
+		try {
+			VerificationResult verification = service.verify(attempt.user,
+					attempt.events);
+			result.append(verification.getDistance()).append('\t').append(
+					verification.isMatch()).append('\t').append(
+					verification.isCorrupted()).append('\t').append(
+					verification.isRejectedEarly()).append('\t').append(
+					verification.getKeystrokeCount());
+		} catch (IOException e) {
+			result.append("ERROR\t").append(e.getMessage());
+		} catch (RuntimeException e) {
+			result.append("ERROR\t").append(e);
+		}
+
+		return result.toString();
+	}
+
+	private static void write(Future<String> result, Writer results)
+			throws IOException, InterruptedException {
+		try {
+			results.write(result.get());
+			results.write('\n');
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException("attempt failed", cause);
+		}
+	}
+
+	/**
+	 * The events of one attempt read so far.
+	 */
+	private static final class Attempt {
+		private final String id;
+		private final String user;
+		private final List<RawKeyEvent> events = new ArrayList<RawKeyEvent>();
+
+		private Attempt(String id, String user) {
+			this.id = id;
+			this.user = user;
+		}
+	}
+
+	/**
+	 * Replays a log against the binary templates in a directory:
+	 * <code>ReplayEngine &lt;log&gt; &lt;output&gt; &lt;template directory&gt;</code>
+	 */
+	public static void main(String[] args) throws Exception {
+		if (3 != args.length) {
+			System.err.println("usage: ReplayEngine <log> <output> "
+					+ "<template directory>");
+			System.exit(1);
+		}
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			VerificationService service = new VerificationService(
+					new StatisticalMatcherRegistry(new BinaryTemplateStorage(
+							new File(args[2])), 1000, Long.MAX_VALUE));
+			int replayed = new ReplayEngine(service, executor, threads * 64)
+					.replay(new File(args[0]), new File(args[1]));
+			System.out.println("replayed " + replayed + " attempts");
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
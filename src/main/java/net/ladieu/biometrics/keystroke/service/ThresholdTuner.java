@@ -0,0 +1,214 @@
+package net.ladieu.biometrics.keystroke.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import net.ladieu.biometrics.keystroke.model.KeystrokeTimings;
+import net.ladieu.biometrics.keystroke.model.StatisticalMatcher;
+import net.ladieu.biometrics.keystroke.stats.ErrorRateCurve;
+
+/**
+ * Finds the threshold at which each user's template best separates their own
+ * attempts from impostors'.
+ *
+ * Users are evaluated concurrently, each on one thread of the executor,
+ * scoring their attempts with StatisticalMatcher.getDistances(). The
+ * genuine attempts should not be among the template's samples, or the
+ * recommended thresholds will be too strict.
+ */
+public class ThresholdTuner {
+
+	/**
+	 * A template with the attempts to score against it.
+	 */
+	public static final class EvaluationSet {
+		private final String username;
+		private final StatisticalMatcher template;
+		private final List<? extends KeystrokeTimings> genuine;
+		private final List<? extends KeystrokeTimings> impostor;
+
+		/**
+		 * @param username
+		 *            whose template it is
+		 * @param template
+		 *            the template to score against
+		 * @param genuine
+		 *            attempts by the template's owner
+		 * @param impostor
+		 *            attempts at the same password by anyone else
+		 */
+		public EvaluationSet(String username, StatisticalMatcher template,
+				List<? extends KeystrokeTimings> genuine,
+				List<? extends KeystrokeTimings> impostor) {
+			super();
+			if (null == template) {
+				throw new IllegalArgumentException(
+						"template must be non-null");
+			}
+			if (genuine.isEmpty() || impostor.isEmpty()) {
+				throw new IllegalArgumentException(
+						"both genuine and impostor attempts are needed");
+			}
+			this.username = username;
+			this.template = template;
+			this.genuine = genuine;
+			this.impostor = impostor;
+		}
+	}
+
+	/**
+	 * The outcome of evaluating one user's template.
+	 */
+	public static final class Evaluation {
+		private final String username;
+		private final ErrorRateCurve curve;
+		private final float recommendedThreshold;
+
+		private Evaluation(String username, ErrorRateCurve curve,
+				float recommendedThreshold) {
+			super();
+			this.username = username;
+			this.curve = curve;
+			this.recommendedThreshold = recommendedThreshold;
+		}
+
+		public String getUsername() {
+			return username;
+		}
+
+		public ErrorRateCurve getCurve() {
+			return curve;
+		}
+
+		public float getRecommendedThreshold() {
+			return recommendedThreshold;
+		}
+
+		public double getFalseAcceptRate() {
+			return curve.getFalseAcceptRate(recommendedThreshold);
+		}
+
+		public double getFalseRejectRate() {
+			return curve.getFalseRejectRate(recommendedThreshold);
+		}
+
+		public String toString() {
+			return username + ": threshold " + recommendedThreshold
+					+ " (FAR " + getFalseAcceptRate() + ", FRR "
+					+ getFalseRejectRate() + ")";
+		}
+	}
+
+	private final ExecutorService executor;
+	private final boolean equalError;
+	// only used when not recommending the equal error threshold
+	private final double maxFalseAcceptRate;
+
+	/**
+	 * Recommends each user's equal error threshold.
+	 */
+	public ThresholdTuner(ExecutorService executor) {
+		this(executor, true, 0);
+	}
+
+	/**
+	 * Recommends for each user the lowest threshold that accepts no more
+	 * than the given fraction of impostor attempts.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if maxFalseAcceptRate is not between 0 and 1
+	 */
+	public ThresholdTuner(ExecutorService executor, double maxFalseAcceptRate) {
+		this(executor, false, maxFalseAcceptRate);
+		if (!(maxFalseAcceptRate >= 0 && maxFalseAcceptRate <= 1)) {
+			throw new IllegalArgumentException("maxFalseAcceptRate ["
+					+ maxFalseAcceptRate + "] must be between 0 and 1");
+		}
+	}
+
+	private ThresholdTuner(ExecutorService executor, boolean equalError,
+			double maxFalseAcceptRate) {
+		super();
+		if (null == executor) {
+			throw new IllegalArgumentException("executor must be non-null");
+		}
+		this.executor = executor;
+		this.equalError = equalError;
+		this.maxFalseAcceptRate = maxFalseAcceptRate;
+	}
+
+	/**
+	 * Evaluates one user, splitting their attempts across the executor.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the scores
+	 */
+	public Evaluation evaluate(EvaluationSet set) throws InterruptedException {
+		return createEvaluation(set, set.template.getDistances(set.genuine,
+				executor), set.template.getDistances(set.impostor, executor));
+	}
+
+	/**
+	 * Evaluates every user, each on a thread of the executor.
+	 * 
+	 * @return an evaluation per set, in the same order
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the evaluations
+	 */
+	public List<Evaluation> evaluateAll(List<EvaluationSet> sets)
+			throws InterruptedException {
+		List<Callable<Evaluation>> tasks = new ArrayList<Callable<Evaluation>>(
+				sets.size());
+		for (final EvaluationSet set : sets) {
+			tasks.add(new Callable<Evaluation>() {
+				public Evaluation call() {
+					return createEvaluation(set, set.template
+							.getDistances(set.genuine), set.template
+							.getDistances(set.impostor));
+				}
+			});
+		}
+
+		List<Evaluation> result = new ArrayList<Evaluation>(sets.size());
+		for (Future<Evaluation> task : executor.invokeAll(tasks)) {
+			try {
+				result.add(task.get());
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new IllegalStateException("evaluation failed", cause);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return one curve for the attempts of every given evaluation, showing
+	 *         how a single threshold for everyone would fare
+	 */
+	public static ErrorRateCurve pool(List<Evaluation> evaluations) {
+		List<ErrorRateCurve> curves = new ArrayList<ErrorRateCurve>(
+				evaluations.size());
+		for (Evaluation evaluation : evaluations) {
+			curves.add(evaluation.curve);
+		}
+		return ErrorRateCurve.pool(curves);
+	}
+
+	private Evaluation createEvaluation(EvaluationSet set, float[] genuine,
+			float[] impostor) {
+		ErrorRateCurve curve = new ErrorRateCurve(genuine, impostor);
+		float threshold = (equalError ? curve.getEqualErrorThreshold()
+				: curve.getThresholdForFalseAcceptRate(maxFalseAcceptRate));
+		return new Evaluation(set.username, curve, threshold);
+	}
+}
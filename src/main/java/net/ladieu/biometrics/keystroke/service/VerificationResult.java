@@ -0,0 +1,80 @@
+package net.ladieu.biometrics.keystroke.service;
+
+/**
+ * Outcome of verifying one attempt at a user's password.
+ */
+public final class VerificationResult {
+
+	private final String username;
+	private final boolean match;
+	private final float distance;
+	private final boolean corrupted;
+	private final boolean rejectedEarly;
+	private final int keystrokeCount;
+
+	public VerificationResult(String username, boolean match, float distance,
+			boolean corrupted, int keystrokeCount) {
+		this(username, match, distance, corrupted, false, keystrokeCount);
+	}
+
+	public VerificationResult(String username, boolean match, float distance,
+			boolean corrupted, boolean rejectedEarly, int keystrokeCount) {
+		super();
+		this.username = username;
+		this.match = match;
+		this.distance = distance;
+		this.corrupted = corrupted;
+		this.rejectedEarly = rejectedEarly;
+		this.keystrokeCount = keystrokeCount;
+	}
+
+	public String getUsername() {
+		return username;
+	}
+
+	/**
+	 * @return true if the attempt was accepted
+	 */
+	public boolean isMatch() {
+		return match;
+	}
+
+	/**
+	 * @return the matcher's distance, from KeystrokeMatcher.NO_MATCH to
+	 *         KeystrokeMatcher.EXACT_MATCH; NO_MATCH if the attempt was
+	 *         corrupted, and the best it could have reached if it was
+	 *         rejected early
+	 */
+	public float getDistance() {
+		return distance;
+	}
+
+	/**
+	 * @return true if the key events couldn't be recorded as a sequence, for
+	 *         example a disallowed key or events out of order
+	 */
+	public boolean isCorrupted() {
+		return corrupted;
+	}
+
+	/**
+	 * @return true if the attempt was rejected before it was finished,
+	 *         because it could no longer reach the threshold
+	 */
+	public boolean isRejectedEarly() {
+		return rejectedEarly;
+	}
+
+	/**
+	 * @return the number of keystrokes recorded, which for an attempt
+	 *         rejected early is those up to the rejection
+	 */
+	public int getKeystrokeCount() {
+		return keystrokeCount;
+	}
+
+	public String toString() {
+		return (match ? "Match!" : "No match!") + " (distance: " + distance
+				+ ")";
+	}
+}
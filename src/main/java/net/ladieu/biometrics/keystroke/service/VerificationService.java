@@ -0,0 +1,106 @@
+package net.ladieu.biometrics.keystroke.service;
+
+import java.io.IOException;
+import java.util.List;
+
+import net.ladieu.biometrics.keystroke.model.KeystrokeFactory;
+import net.ladieu.biometrics.keystroke.model.KeystrokeMatcher;
+import net.ladieu.biometrics.keystroke.model.KeystrokeMatcherSource;
+import net.ladieu.biometrics.keystroke.model.LowerCaseKeystrokeFactory;
+import net.ladieu.biometrics.keystroke.model.PrimitiveKeystrokeRecorder;
+
+/**
+ * Verifies password attempts submitted as raw key events, without Swing or a
+ * KeystrokeDirector. Timings come from the client rather than the server
+ * clock, so network delay doesn't distort them.
+ *
+ * The service itself is thread-safe and is meant to be shared; it hands out
+ * one VerificationSession per attempt in progress. Matchers are looked up
+ * through the KeystrokeMatcherSource on every new session, so a
+ * StatisticalMatcherRegistry should be used to keep hot templates loaded.
+ * Set an adaptive window on the registry to have matching attempts adapt, and
+ * be saved to, each user's template.
+ */
+public class VerificationService {
+
+	private final KeystrokeMatcherSource matchers;
+	private final KeystrokeFactory factory;
+	private final float threshold;
+
+	/**
+	 * Accepts only exact matches of lower-cased keystrokes, as the Swing
+	 * verification view does.
+	 */
+	public VerificationService(KeystrokeMatcherSource matchers) {
+		this(matchers, new LowerCaseKeystrokeFactory(),
+				KeystrokeMatcher.EXACT_MATCH);
+	}
+
+	/**
+	 * @param matchers
+	 *            where to find each user's matcher
+	 * @param factory
+	 *            decides which keys are allowed, and how they are normalized
+	 * @param threshold
+	 *            the lowest distance accepted as a match
+	 */
+	public VerificationService(KeystrokeMatcherSource matchers,
+			KeystrokeFactory factory, float threshold) {
+		super();
+		if (null == matchers) {
+			throw new IllegalArgumentException("matchers must be non-null");
+		}
+		if (null == factory) {
+			throw new IllegalArgumentException("factory must be non-null");
+		}
+		if (threshold < KeystrokeMatcher.NO_MATCH
+				|| threshold > KeystrokeMatcher.EXACT_MATCH) {
+			throw new IllegalArgumentException("threshold [" + threshold
+					+ "] must be between NO_MATCH and EXACT_MATCH");
+		}
+
+		this.matchers = matchers;
+		this.factory = factory;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Starts an attempt for the given user.
+	 *
+	 * @throws IOException
+	 *             if the user has no template
+	 */
+	public VerificationSession openSession(String username)
+			throws IOException {
+		KeystrokeMatcher matcher = matchers.getMatcher(username);
+		return new VerificationSession(username, matcher,
+				new PrimitiveKeystrokeRecorder(factory), threshold);
+	}
+
+	/**
+	 * Verifies a complete attempt submitted in one piece.
+	 *
+	 * @param events
+	 *            the attempt's key events, in the order they happened
+	 * @throws IOException
+	 *             if the user has no template
+	 */
+	public VerificationResult verify(String username, List<RawKeyEvent> events)
+			throws IOException {
+		VerificationSession session = openSession(username);
+
+		for (RawKeyEvent event : events) {
+			if (event.isDown()) {
+				session.keyDown(event.getKey(), event.getClientTime());
+			} else {
+				session.keyUp(event.getKey(), event.getClientTime());
+			}
+		}
+
+		return session.complete();
+	}
+
+	public float getThreshold() {
+		return threshold;
+	}
+}
@@ -0,0 +1,191 @@
+package net.ladieu.biometrics.keystroke.service;
+
+import net.ladieu.biometrics.keystroke.model.AdaptiveKeystrokeMatcher;
+import net.ladieu.biometrics.keystroke.model.IncrementalKeystrokeMatcher;
+import net.ladieu.biometrics.keystroke.model.IncrementalScorer;
+import net.ladieu.biometrics.keystroke.model.KeystrokeException;
+import net.ladieu.biometrics.keystroke.model.KeystrokeMatcher;
+import net.ladieu.biometrics.keystroke.model.KeystrokeRecorder;
+import net.ladieu.biometrics.keystroke.model.KeystrokeTimings;
+
+/**
+ * A single attempt at typing a user's password, fed raw key events as they
+ * arrive from the client. Timestamps are the client's own, in the unit the
+ * user's template was captured in (milliseconds unless it was captured at a
+ * finer resolution); only their differences matter.
+ *
+ * When the matcher is an IncrementalKeystrokeMatcher that supplies a scorer,
+ * the attempt is scored as keys are released, and rejected as soon as it can
+ * no longer reach the threshold; the keys that follow are then ignored.
+ * When the matcher is an AdaptiveKeystrokeMatcher, attempts that match are
+ * offered back to it as it completes them.
+ *
+ * Sessions are not thread-safe; each belongs to one client connection. They
+ * may be used again after complete() or reset().
+ */
+public class VerificationSession {
+
+	private final String username;
+	private final KeystrokeMatcher matcher;
+	private final KeystrokeRecorder recorder;
+	private final float threshold;
+	// created for each attempt, so it scores against the template as it was
+	// when the attempt started
+	private IncrementalScorer scorer;
+
+	private boolean corrupted;
+
+	VerificationSession(String username, KeystrokeMatcher matcher,
+			KeystrokeRecorder recorder, float threshold) {
+		super();
+		this.username = username;
+		this.matcher = matcher;
+		this.recorder = recorder;
+		this.threshold = threshold;
+		this.scorer = createScorer();
+	}
+
+	private IncrementalScorer createScorer() {
+		if (matcher instanceof IncrementalKeystrokeMatcher) {
+			return ((IncrementalKeystrokeMatcher) matcher)
+					.createScorer(threshold);
+		}
+		return null;
+	}
+
+	public String getUsername() {
+		return username;
+	}
+
+	/**
+	 * Registers a key press. Keys the recorder refuses, or presses earlier
+	 * than the one before, mark the attempt as corrupted. Presses after the
+	 * attempt was rejected are ignored.
+	 *
+	 * @param key
+	 *            the character pressed
+	 * @param clientTime
+	 *            when the client saw the press
+	 * @return true if the press was recorded
+	 * @throws IllegalArgumentException
+	 *             if clientTime is negative
+	 */
+	public boolean keyDown(char key, long clientTime) {
+		checkTime(clientTime);
+		if (corrupted || isRejected()) {
+			return false;
+		}
+
+		try {
+			return score(recorder.keyDown(key, clientTime));
+		} catch (KeystrokeException e) {
+			corrupted = true;
+			return false;
+		}
+	}
+
+	/**
+	 * Registers a key release. Releases earlier than the matching press mark
+	 * the attempt as corrupted. Releases after the attempt was rejected are
+	 * ignored.
+	 *
+	 * @param key
+	 *            the character released
+	 * @param clientTime
+	 *            when the client saw the release
+	 * @return true if the release was recorded
+	 * @throws IllegalArgumentException
+	 *             if clientTime is negative
+	 */
+	public boolean keyUp(char key, long clientTime) {
+		checkTime(clientTime);
+		if (corrupted || isRejected()) {
+			return false;
+		}
+
+		try {
+			return score(recorder.keyUp(key, clientTime));
+		} catch (KeystrokeException e) {
+			corrupted = true;
+			return false;
+		}
+	}
+
+	/**
+	 * Scores the attempt so far after a key was recorded.
+	 */
+	private boolean score(boolean recorded) {
+		if (recorded && null != scorer) {
+			scorer.update(recorder.getResultView());
+		}
+		return recorded;
+	}
+
+	public boolean isCorrupted() {
+		return corrupted;
+	}
+
+	/**
+	 * @return true if the keys received so far can no longer reach the
+	 *         threshold, whatever follows
+	 */
+	public boolean isRejected() {
+		return null != scorer && scorer.isRejected();
+	}
+
+	/**
+	 * @return the number of keys pressed and not yet released
+	 */
+	public int getActiveKeyCount() {
+		return recorder.getActiveKeyCount();
+	}
+
+	/**
+	 * Scores the keystrokes received so far and starts a new attempt. A
+	 * match is offered to an adaptive matcher before this returns.
+	 */
+	public VerificationResult complete() {
+		KeystrokeTimings attempt = recorder.getResultView();
+		int keystrokeCount = attempt.size();
+
+		boolean rejected = isRejected();
+
+		float distance = KeystrokeMatcher.NO_MATCH;
+		if (!corrupted) {
+			if (rejected || (null != scorer && scorer.isComplete())) {
+				distance = scorer.getBestPossibleDistance();
+			} else {
+				distance = matcher.getDistance(attempt);
+			}
+		}
+
+		VerificationResult result = new VerificationResult(username,
+				!corrupted && !rejected && distance >= threshold, distance,
+				corrupted, rejected, keystrokeCount);
+
+		if (result.isMatch() && matcher instanceof AdaptiveKeystrokeMatcher) {
+			((AdaptiveKeystrokeMatcher) matcher).adapt(recorder.getResult());
+		}
+
+		reset();
+		return result;
+	}
+
+	/**
+	 * Discards the keystrokes received so far. The next attempt is scored
+	 * against the template as it is now, including anything an adaptive
+	 * matcher has learned since the session was opened.
+	 */
+	public void reset() {
+		recorder.reset();
+		scorer = createScorer();
+		corrupted = false;
+	}
+
+	private void checkTime(long clientTime) {
+		if (clientTime < 0) {
+			throw new IllegalArgumentException("clientTime [" + clientTime
+					+ "] can not be negative");
+		}
+	}
+}
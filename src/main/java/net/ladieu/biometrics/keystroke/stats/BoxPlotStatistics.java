@@ -0,0 +1,110 @@
+package net.ladieu.biometrics.keystroke.stats;
+
+/**
+ * Immutable box and whisker summary of a sample of whole numbers, as produced
+ * by {@link RunningBoxAndWhiskerStatistics}.
+ *
+ * The quartiles of an odd sized sample include the median; values more than
+ * 1.5 IQR beyond the quartiles are outliers, and more than 2 IQR far outliers.
+ */
+public final class BoxPlotStatistics {
+
+	private final int count;
+	private final double mean;
+	private final double median;
+	private final double q1;
+	private final double q3;
+	private final long minRegularValue;
+	private final long maxRegularValue;
+	private final long minOutlier;
+	private final long maxOutlier;
+	private final long[] outliers;
+
+	BoxPlotStatistics(int count, double mean, double median, double q1,
+			double q3, long minRegularValue, long maxRegularValue,
+			long minOutlier, long maxOutlier, long[] outliers) {
+		super();
+		this.count = count;
+		this.mean = mean;
+		this.median = median;
+		this.q1 = q1;
+		this.q3 = q3;
+		this.minRegularValue = minRegularValue;
+		this.maxRegularValue = maxRegularValue;
+		this.minOutlier = minOutlier;
+		this.maxOutlier = maxOutlier;
+		this.outliers = outliers;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public double getMedian() {
+		return median;
+	}
+
+	public double getQ1() {
+		return q1;
+	}
+
+	public double getQ3() {
+		return q3;
+	}
+
+	/**
+	 * @return the smallest value not considered an outlier
+	 */
+	public long getMinRegularValue() {
+		return minRegularValue;
+	}
+
+	/**
+	 * @return the largest value not considered an outlier
+	 */
+	public long getMaxRegularValue() {
+		return maxRegularValue;
+	}
+
+	/**
+	 * @return the smallest value that is not a far outlier
+	 */
+	public long getMinOutlier() {
+		return minOutlier;
+	}
+
+	/**
+	 * @return the largest value that is not a far outlier
+	 */
+	public long getMaxOutlier() {
+		return maxOutlier;
+	}
+
+	/**
+	 * @return true if the given value lies outside of the regular range
+	 */
+	public boolean isOutlier(long value) {
+		return value < minRegularValue || value > maxRegularValue;
+	}
+
+	public int getOutlierCount() {
+		return outliers.length;
+	}
+
+	/**
+	 * @return every value outside of the regular range, in ascending order
+	 */
+	public long[] getOutliers() {
+		return outliers.clone();
+	}
+
+	public String toString() {
+		return "[n: " + count + ", median: " + median + ", q1: " + q1
+				+ ", q3: " + q3 + ", regular: " + minRegularValue + "-"
+				+ maxRegularValue + ", outliers: " + outliers.length + "]";
+	}
+}
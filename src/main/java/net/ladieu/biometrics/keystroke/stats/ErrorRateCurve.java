@@ -0,0 +1,187 @@
+package net.ladieu.biometrics.keystroke.stats;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The false accept and false reject rates of a matcher at every threshold,
+ * from the distances it gave genuine attempts and impostor attempts. An
+ * attempt is accepted when its distance is at least the threshold, as for
+ * KeystrokeMatcher.
+ *
+ * The candidate thresholds are the distinct distances seen, plus one above
+ * all of them at which everything is rejected. Immutable.
+ */
+public final class ErrorRateCurve {
+
+	private final float[] genuine;
+	private final float[] impostor;
+	private final float[] thresholds;
+
+	/**
+	 * @param genuine
+	 *            distances of attempts by the template's owner
+	 * @param impostor
+	 *            distances of attempts by anyone else
+	 */
+	public ErrorRateCurve(float[] genuine, float[] impostor) {
+		super();
+		if (0 == genuine.length || 0 == impostor.length) {
+			throw new IllegalArgumentException(
+					"both genuine and impostor distances are needed");
+		}
+
+		this.genuine = genuine.clone();
+		this.impostor = impostor.clone();
+		Arrays.sort(this.genuine);
+		Arrays.sort(this.impostor);
+		this.thresholds = mergeDistinct(this.genuine, this.impostor);
+	}
+
+	/**
+	 * @return one curve for all the distances of the given curves
+	 */
+	public static ErrorRateCurve pool(List<ErrorRateCurve> curves) {
+		int genuineCount = 0;
+		int impostorCount = 0;
+		for (ErrorRateCurve curve : curves) {
+			genuineCount += curve.genuine.length;
+			impostorCount += curve.impostor.length;
+		}
+
+		float[] genuine = new float[genuineCount];
+		float[] impostor = new float[impostorCount];
+		int g = 0;
+		int i = 0;
+		for (ErrorRateCurve curve : curves) {
+			System.arraycopy(curve.genuine, 0, genuine, g,
+					curve.genuine.length);
+			g += curve.genuine.length;
+			System.arraycopy(curve.impostor, 0, impostor, i,
+					curve.impostor.length);
+			i += curve.impostor.length;
+		}
+		return new ErrorRateCurve(genuine, impostor);
+	}
+
+	private static float[] mergeDistinct(float[] a, float[] b) {
+		float[] merged = new float[a.length + b.length + 1];
+		int count = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.length || j < b.length) {
+			float next;
+			if (j == b.length || (i < a.length && a[i] <= b[j])) {
+				next = a[i++];
+			} else {
+				next = b[j++];
+			}
+			if (0 == count || next != merged[count - 1]) {
+				merged[count++] = next;
+			}
+		}
+		// the next float up rejects everything; distances are never negative
+		merged[count] = Float.intBitsToFloat(Float
+				.floatToIntBits(merged[count - 1]) + 1);
+		count++;
+
+		float[] result = new float[count];
+		System.arraycopy(merged, 0, result, 0, count);
+		return result;
+	}
+
+	public int getGenuineCount() {
+		return genuine.length;
+	}
+
+	public int getImpostorCount() {
+		return impostor.length;
+	}
+
+	/**
+	 * @return the candidate thresholds, ascending; a copy
+	 */
+	public float[] getThresholds() {
+		return thresholds.clone();
+	}
+
+	/**
+	 * @return the fraction of impostor attempts accepted at the threshold
+	 */
+	public double getFalseAcceptRate(float threshold) {
+		return (impostor.length - countBelow(impostor, threshold))
+				/ (double) impostor.length;
+	}
+
+	/**
+	 * @return the fraction of genuine attempts rejected at the threshold
+	 */
+	public double getFalseRejectRate(float threshold) {
+		return countBelow(genuine, threshold) / (double) genuine.length;
+	}
+
+	/**
+	 * @return the number of sorted values less than the threshold
+	 */
+	private static int countBelow(float[] sorted, float threshold) {
+		int low = 0;
+		int high = sorted.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (sorted[middle] < threshold) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @return the candidate threshold at which the false accept and false
+	 *         reject rates are closest; of several, the lowest
+	 */
+	public float getEqualErrorThreshold() {
+		float best = thresholds[0];
+		double bestGap = Double.MAX_VALUE;
+		for (float threshold : thresholds) {
+			double gap = Math.abs(getFalseAcceptRate(threshold)
+					- getFalseRejectRate(threshold));
+			if (gap < bestGap) {
+				bestGap = gap;
+				best = threshold;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @return the mean of the false accept and false reject rates at the
+	 *         equal error threshold; with distances this coarse the two are
+	 *         seldom exactly equal
+	 */
+	public double getEqualErrorRate() {
+		float threshold = getEqualErrorThreshold();
+		return (getFalseAcceptRate(threshold) + getFalseRejectRate(threshold)) / 2;
+	}
+
+	/**
+	 * @return the lowest candidate threshold that accepts no more than the
+	 *         given fraction of impostor attempts, and so rejects the fewest
+	 *         genuine ones
+	 */
+	public float getThresholdForFalseAcceptRate(double maxFalseAcceptRate) {
+		for (float threshold : thresholds) {
+			if (getFalseAcceptRate(threshold) <= maxFalseAcceptRate) {
+				return threshold;
+			}
+		}
+		return thresholds[thresholds.length - 1];
+	}
+
+	public String toString() {
+		return "[genuine: " + genuine.length + ", impostor: "
+				+ impostor.length + ", EER: " + getEqualErrorRate() + " at "
+				+ getEqualErrorThreshold() + "]";
+	}
+}
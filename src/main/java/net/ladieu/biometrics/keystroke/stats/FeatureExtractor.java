@@ -0,0 +1,158 @@
+package net.ladieu.biometrics.keystroke.stats;
+
+import java.util.List;
+
+import net.ladieu.biometrics.keystroke.model.KeystrokeTimings;
+
+/**
+ * Turns sequences into primitive feature vectors, reading each keystroke's
+ * start and end once. For every position the chosen features are laid out
+ * next to each other, in the order given to the constructor, so the vector
+ * of a sequence of length n holds n times the number of features.
+ *
+ * Features follow the timing rules of {@link KeystrokeTimings}: the first
+ * keystroke has no flight, down-down or up-up time, and flight and up-up
+ * times are 0 when the keystroke before has not been released.
+ */
+public class FeatureExtractor {
+
+	public enum Feature {
+		/** time from press to release */
+		DWELL,
+		/** time from the prior release to this press */
+		FLIGHT,
+		/** time from the prior press to this press */
+		DOWN_DOWN,
+		/** time from the prior release to this release */
+		UP_UP
+	}
+
+	private final Feature[] features;
+
+	/**
+	 * Extracts every feature.
+	 */
+	public FeatureExtractor() {
+		this(Feature.values());
+	}
+
+	/**
+	 * @param features
+	 *            the features to extract for each position, in order
+	 */
+	public FeatureExtractor(Feature... features) {
+		super();
+		if (0 == features.length) {
+			throw new IllegalArgumentException(
+					"at least one feature must be extracted");
+		}
+		this.features = features.clone();
+	}
+
+	/**
+	 * @return the number of features extracted for each keystroke
+	 */
+	public int getFeaturesPerKeystroke() {
+		return features.length;
+	}
+
+	/**
+	 * @return the length of the feature vector of a sequence of the given
+	 *         length
+	 */
+	public int getFeatureCount(int length) {
+		return length * features.length;
+	}
+
+	/**
+	 * @return the index of the given feature of the given position within a
+	 *         feature vector
+	 * @throws IllegalArgumentException
+	 *             if this extractor does not extract the feature
+	 */
+	public int getIndex(int position, Feature feature) {
+		for (int i = 0; i < features.length; i++) {
+			if (feature == features[i]) {
+				return position * features.length + i;
+			}
+		}
+		throw new IllegalArgumentException("[" + feature
+				+ "] is not extracted");
+	}
+
+	public long[] extract(KeystrokeTimings sequence) {
+		long[] result = new long[getFeatureCount(sequence.size())];
+		extract(sequence, result, 0);
+		return result;
+	}
+
+	/**
+	 * Writes the feature vector of the sequence into the target array,
+	 * starting at the given offset.
+	 */
+	public void extract(KeystrokeTimings sequence, long[] target, int offset) {
+		int length = sequence.size();
+		int next = offset;
+
+		long priorStart = 0;
+		long priorEnd = 0;
+		boolean priorReleased = false;
+
+		for (int i = 0; i < length; i++) {
+			long start = sequence.getStartTime(i);
+			boolean released = sequence.isReleased(i);
+			long end = (released ? sequence.getEndTime(i) : 0);
+
+			for (Feature feature : features) {
+				long value;
+				switch (feature) {
+				case DWELL:
+					value = (released ? end - start : 0);
+					break;
+				case FLIGHT:
+					value = (priorReleased ? start - priorEnd : 0);
+					break;
+				case DOWN_DOWN:
+					value = (i > 0 ? start - priorStart : 0);
+					break;
+				case UP_UP:
+					value = (released && priorReleased ? end - priorEnd : 0);
+					break;
+				default:
+					throw new IllegalStateException("unknown feature ["
+							+ feature + "]");
+				}
+				target[next++] = value;
+			}
+
+			priorStart = start;
+			priorEnd = end;
+			priorReleased = released;
+		}
+	}
+
+	/**
+	 * Extracts every sample into one row of a matrix.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the samples differ in length
+	 */
+	public FeatureMatrix extract(List<? extends KeystrokeTimings> samples) {
+		int length = (samples.isEmpty() ? 0 : samples.get(0).size());
+		int columns = getFeatureCount(length);
+		long[] values = new long[samples.size() * columns];
+
+		int offset = 0;
+		for (KeystrokeTimings sample : samples) {
+			if (sample.size() != length) {
+				throw new IllegalArgumentException("sequence length ["
+						+ sample.size() + "] does not match template length ["
+						+ length + "]");
+			}
+			extract(sample, values, offset);
+			offset += columns;
+		}
+
+		return new FeatureMatrix(values, samples.size(), columns);
+	}
+}
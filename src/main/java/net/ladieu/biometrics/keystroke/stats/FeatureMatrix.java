@@ -0,0 +1,106 @@
+package net.ladieu.biometrics.keystroke.stats;
+
+/**
+ * The feature vectors of a template, one row per sample, held row after row
+ * in a single array. Immutable; built by {@link FeatureExtractor}.
+ */
+public final class FeatureMatrix {
+
+	private final long[] values;
+	private final int rows;
+	private final int columns;
+
+	FeatureMatrix(long[] values, int rows, int columns) {
+		super();
+		this.values = values;
+		this.rows = rows;
+		this.columns = columns;
+	}
+
+	public int getRowCount() {
+		return rows;
+	}
+
+	public int getColumnCount() {
+		return columns;
+	}
+
+	public long get(int row, int column) {
+		checkIndex(row, rows, "row");
+		checkIndex(column, columns, "column");
+		return values[row * columns + column];
+	}
+
+	/**
+	 * @return a copy of the feature vector of one sample
+	 */
+	public long[] getRow(int row) {
+		checkIndex(row, rows, "row");
+		long[] result = new long[columns];
+		System.arraycopy(values, row * columns, result, 0, columns);
+		return result;
+	}
+
+	/**
+	 * @return a copy of one feature of every sample
+	 */
+	public long[] getColumn(int column) {
+		long[] result = new long[rows];
+		copyColumn(column, result);
+		return result;
+	}
+
+	/**
+	 * Copies one feature of every sample into the start of the target, for
+	 * callers reusing their own scratch space.
+	 */
+	public void copyColumn(int column, long[] target) {
+		checkIndex(column, columns, "column");
+		for (int row = 0, i = column; row < rows; row++, i += columns) {
+			target[row] = values[i];
+		}
+	}
+
+	/**
+	 * @return the mean of every column, accumulated in a single pass over
+	 *         the rows
+	 */
+	public double[] getColumnMeans() {
+		double[] sums = new double[columns];
+		for (int i = 0; i < values.length; i += columns) {
+			for (int column = 0; column < columns; column++) {
+				sums[column] += values[i + column];
+			}
+		}
+		for (int column = 0; column < columns; column++) {
+			sums[column] /= rows;
+		}
+		return sums;
+	}
+
+	/**
+	 * @return the box and whisker statistics of one feature
+	 * @throws IllegalArgumentException
+	 *             if the matrix has no rows
+	 */
+	public BoxPlotStatistics getColumnStatistics(int column) {
+		checkIndex(column, columns, "column");
+		if (0 == rows) {
+			throw new IllegalArgumentException(
+					"statistics require at least one value");
+		}
+
+		RunningBoxAndWhiskerStatistics statistics = new RunningBoxAndWhiskerStatistics();
+		for (int i = column; i < values.length; i += columns) {
+			statistics.add(values[i]);
+		}
+		return statistics.createStatistics();
+	}
+
+	private static void checkIndex(int index, int limit, String name) {
+		if (index < 0 || index >= limit) {
+			throw new IndexOutOfBoundsException(name + " [" + index
+					+ "] is not below [" + limit + "]");
+		}
+	}
+}
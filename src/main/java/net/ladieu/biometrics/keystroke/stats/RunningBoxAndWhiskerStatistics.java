@@ -0,0 +1,182 @@
+package net.ladieu.biometrics.keystroke.stats;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Box and whisker statistics for a single sample that can be updated one value
+ * at a time. Values are kept in a {@link SortedLongMultiset}, so adding or
+ * removing a value is O(log n) and the quartiles, whiskers and outlier bounds
+ * are found by rank lookups rather than by sorting the sample.
+ *
+ * Results follow the same conventions as JFreeChart's
+ * BoxAndWhiskerCalculator: the quartiles of an odd sized sample include the
+ * median, values beyond 1.5 IQR of the quartiles are outliers and values
+ * beyond 2 IQR are far outliers.
+ */
+public class RunningBoxAndWhiskerStatistics {
+
+	private static final double OUTLIER_IQR_MULTIPLE = 1.5;
+	private static final double FAROUT_IQR_MULTIPLE = 2.0;
+
+	private final SortedLongMultiset values;
+	private long sum;
+
+	public RunningBoxAndWhiskerStatistics() {
+		super();
+		values = new SortedLongMultiset();
+	}
+
+	public void add(long value) {
+		values.add(value);
+		sum += value;
+	}
+
+	/**
+	 * Removes a single occurrence of the given value from the sample.
+	 *
+	 * @return true if the value was part of the sample
+	 */
+	public boolean remove(long value) {
+		if (values.remove(value)) {
+			sum -= value;
+			return true;
+		}
+		return false;
+	}
+
+	public void clear() {
+		values.clear();
+		sum = 0;
+	}
+
+	public int getCount() {
+		return values.size();
+	}
+
+	public double getMean() {
+		return (double) sum / values.size();
+	}
+
+	public double getMedian() {
+		return median(0, values.size() - 1);
+	}
+
+	public double getQ1() {
+		int count = values.size();
+		if (count % 2 == 1) {
+			return median(0, count / 2);
+		}
+		return median(0, count / 2 - 1);
+	}
+
+	public double getQ3() {
+		int count = values.size();
+		return median(count / 2, count - 1);
+	}
+
+	/**
+	 * @return the smallest value not considered an outlier
+	 */
+	public long getMinRegularValue() {
+		return values.get(getMinRegularIndex());
+	}
+
+	/**
+	 * @return the largest value not considered an outlier
+	 */
+	public long getMaxRegularValue() {
+		return values.get(getMaxRegularIndex());
+	}
+
+	/**
+	 * @return the smallest value that is not a far outlier
+	 */
+	public long getMinOutlier() {
+		double threshold = getQ1() - FAROUT_IQR_MULTIPLE * getInterquartileRange();
+		return values.get(values.countLessThan((long) Math.ceil(threshold)));
+	}
+
+	/**
+	 * @return the largest value that is not a far outlier
+	 */
+	public long getMaxOutlier() {
+		double threshold = getQ3() + FAROUT_IQR_MULTIPLE * getInterquartileRange();
+		return values.get(values.countAtMost((long) Math.floor(threshold)) - 1);
+	}
+
+	/**
+	 * @return every value outside of the regular range, in ascending order
+	 */
+	public List<Long> getOutliers() {
+		int minRegularIndex = getMinRegularIndex();
+		int maxRegularIndex = getMaxRegularIndex();
+
+		List<Long> result = new ArrayList<Long>();
+		for (int i = 0; i < minRegularIndex; i++) {
+			result.add(values.get(i));
+		}
+		for (int i = maxRegularIndex + 1; i < values.size(); i++) {
+			result.add(values.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * @return a snapshot of the current statistics
+	 * @throws IllegalStateException
+	 *             if no values have been added
+	 */
+	public BoxPlotStatistics createStatistics() {
+		if (values.isEmpty()) {
+			throw new IllegalStateException(
+					"statistics require at least one value");
+		}
+
+		int minRegularIndex = getMinRegularIndex();
+		int maxRegularIndex = getMaxRegularIndex();
+
+		long[] outliers = new long[values.size()
+				- (maxRegularIndex - minRegularIndex + 1)];
+		int next = 0;
+		for (int i = 0; i < minRegularIndex; i++) {
+			outliers[next++] = values.get(i);
+		}
+		for (int i = maxRegularIndex + 1; i < values.size(); i++) {
+			outliers[next++] = values.get(i);
+		}
+
+		return new BoxPlotStatistics(getCount(), getMean(), getMedian(),
+				getQ1(), getQ3(), values.get(minRegularIndex), values
+						.get(maxRegularIndex), getMinOutlier(),
+				getMaxOutlier(), outliers);
+	}
+
+	private double getInterquartileRange() {
+		return getQ3() - getQ1();
+	}
+
+	private int getMinRegularIndex() {
+		double threshold = getQ1() - OUTLIER_IQR_MULTIPLE
+				* getInterquartileRange();
+		return values.countLessThan((long) Math.ceil(threshold));
+	}
+
+	private int getMaxRegularIndex() {
+		double threshold = getQ3() + OUTLIER_IQR_MULTIPLE
+				* getInterquartileRange();
+		return values.countAtMost((long) Math.floor(threshold)) - 1;
+	}
+
+	/**
+	 * Median of the values between the given positions, inclusive.
+	 */
+	private double median(int start, int end) {
+		int count = end - start + 1;
+		if (count % 2 == 1) {
+			return values.get(start + (count - 1) / 2);
+		}
+		return (values.get(start + count / 2 - 1) + (double) values
+				.get(start + count / 2)) / 2.0;
+	}
+}
@@ -0,0 +1,225 @@
+package net.ladieu.biometrics.keystroke.stats;
+
+/**
+ * An order statistic tree of primitive long values, allowing duplicates.
+ * Insertion, removal, rank and positional lookups are all O(log n), which lets
+ * quartiles be maintained as samples are added rather than re-sorting the
+ * whole sample each time.
+ *
+ * Implemented as a treap with size-augmented nodes; equal values share a node.
+ */
+public class SortedLongMultiset {
+
+	private static final class Node {
+		private final long value;
+		private final int priority;
+		private int count;
+		private int size;
+		private Node left;
+		private Node right;
+
+		private Node(long value, int priority) {
+			this.value = value;
+			this.priority = priority;
+			this.count = 1;
+			this.size = 1;
+		}
+	}
+
+	private Node root;
+	private int seed = 0x2545F491;
+
+	public SortedLongMultiset() {
+		super();
+	}
+
+	/**
+	 * @return the number of values held, counting duplicates
+	 */
+	public int size() {
+		return sizeOf(root);
+	}
+
+	public boolean isEmpty() {
+		return null == root;
+	}
+
+	public void add(long value) {
+		root = insert(root, value);
+	}
+
+	/**
+	 * Removes a single occurrence of the given value.
+	 *
+	 * @return true if the value was present
+	 */
+	public boolean remove(long value) {
+		int sizeBefore = size();
+		root = delete(root, value);
+		return size() != sizeBefore;
+	}
+
+	public void clear() {
+		root = null;
+	}
+
+	/**
+	 * @param index
+	 *            zero based position in ascending order
+	 * @return the value at the given position
+	 * @throws IndexOutOfBoundsException
+	 *             if index is negative or not less than size()
+	 */
+	public long get(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("index [" + index
+					+ "] outside of [0, " + size() + ")");
+		}
+
+		Node node = root;
+		while (true) {
+			int leftSize = sizeOf(node.left);
+			if (index < leftSize) {
+				node = node.left;
+			} else if (index < leftSize + node.count) {
+				return node.value;
+			} else {
+				index -= leftSize + node.count;
+				node = node.right;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of held values strictly less than the given value
+	 */
+	public int countLessThan(long value) {
+		int result = 0;
+		Node node = root;
+		while (null != node) {
+			if (value <= node.value) {
+				node = node.left;
+			} else {
+				result += sizeOf(node.left) + node.count;
+				node = node.right;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the number of held values less than or equal to the given value
+	 */
+	public int countAtMost(long value) {
+		int result = 0;
+		Node node = root;
+		while (null != node) {
+			if (value < node.value) {
+				node = node.left;
+			} else {
+				result += sizeOf(node.left) + node.count;
+				node = node.right;
+			}
+		}
+		return result;
+	}
+
+	private Node insert(Node node, long value) {
+		if (null == node) {
+			return new Node(value, nextPriority());
+		}
+
+		if (value == node.value) {
+			node.count++;
+		} else if (value < node.value) {
+			node.left = insert(node.left, value);
+			if (node.left.priority > node.priority) {
+				node = rotateRight(node);
+			}
+		} else {
+			node.right = insert(node.right, value);
+			if (node.right.priority > node.priority) {
+				node = rotateLeft(node);
+			}
+		}
+
+		update(node);
+		return node;
+	}
+
+	private Node delete(Node node, long value) {
+		if (null == node) {
+			return null;
+		}
+
+		if (value < node.value) {
+			node.left = delete(node.left, value);
+		} else if (value > node.value) {
+			node.right = delete(node.right, value);
+		} else if (node.count > 1) {
+			node.count--;
+		} else {
+			return merge(node.left, node.right);
+		}
+
+		update(node);
+		return node;
+	}
+
+	/**
+	 * Joins two treaps where every value in lower precedes every value in
+	 * upper.
+	 */
+	private Node merge(Node lower, Node upper) {
+		if (null == lower) {
+			return upper;
+		}
+		if (null == upper) {
+			return lower;
+		}
+
+		if (lower.priority > upper.priority) {
+			lower.right = merge(lower.right, upper);
+			update(lower);
+			return lower;
+		}
+
+		upper.left = merge(lower, upper.left);
+		update(upper);
+		return upper;
+	}
+
+	private Node rotateRight(Node node) {
+		Node pivot = node.left;
+		node.left = pivot.right;
+		update(node);
+		pivot.right = node;
+		update(pivot);
+		return pivot;
+	}
+
+	private Node rotateLeft(Node node) {
+		Node pivot = node.right;
+		node.right = pivot.left;
+		update(node);
+		pivot.left = node;
+		update(pivot);
+		return pivot;
+	}
+
+	private static void update(Node node) {
+		node.size = sizeOf(node.left) + node.count + sizeOf(node.right);
+	}
+
+	private static int sizeOf(Node node) {
+		return (null == node ? 0 : node.size);
+	}
+
+	private int nextPriority() {
+		// xorshift; deterministic so that tree shape is reproducible
+		seed ^= seed << 13;
+		seed ^= seed >>> 17;
+		seed ^= seed << 5;
+		return seed;
+	}
+}
@@ -1,5 +1,6 @@
 package net.ladieu.biometrics.keystroke.stats;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import net.ladieu.biometrics.keystroke.model.StatisticalMatcher;
@@ -20,9 +21,9 @@ public class StatisticalDatasetBuilder {
 
 		data.clear();
 
-		List<BoxAndWhiskerItem> dwellStats = templateSource
+		List<BoxPlotStatistics> dwellStats = templateSource
 				.getDwellTimeStatistics();
-		List<BoxAndWhiskerItem> flightStats = templateSource
+		List<BoxPlotStatistics> flightStats = templateSource
 				.getFlightTimeStatistics();
 
 		if (dwellStats.size() != flightStats.size()) {
@@ -31,8 +32,8 @@ public class StatisticalDatasetBuilder {
 		}
 
 		for (int i = 0; i < dwellStats.size(); i++) {
-			data.add(dwellStats.get(i), "dwell", i + 1);
-			data.add(flightStats.get(i), "flight", i + 1);
+			data.add(toItem(dwellStats.get(i)), "dwell", i + 1);
+			data.add(toItem(flightStats.get(i)), "flight", i + 1);
 		}
 	}
 
@@ -43,4 +44,22 @@ public class StatisticalDatasetBuilder {
 
 		return result;
 	}
+
+	/**
+	 * Converts statistics into the form JFreeChart plots.
+	 */
+	public static BoxAndWhiskerItem toItem(BoxPlotStatistics statistics) {
+		long[] outliers = statistics.getOutliers();
+		List<Long> outlierList = new ArrayList<Long>(outliers.length);
+		for (long outlier : outliers) {
+			outlierList.add(outlier);
+		}
+
+		return new BoxAndWhiskerItem(statistics.getMean(), statistics
+				.getMedian(), statistics.getQ1(), statistics.getQ3(),
+				(double) statistics.getMinRegularValue(), (double) statistics
+						.getMaxRegularValue(), (double) statistics
+						.getMinOutlier(), (double) statistics.getMaxOutlier(),
+				outlierList);
+	}
 }
@@ -101,7 +101,8 @@ public class CaptureTemplateView extends JFrame implements
 		director.setRecorder(recorder);
 		director.addObserver(this);
 		enrollmentMatcher = new ExactPhraseMatcher(password);
-		template = new StatisticalMatcher(username, password);
+		template = new StatisticalMatcher(username, password, EntryView
+				.getTemplateRegistry().getStorage());
 
 		DynamicChartFactory chartFactory = new DynamicChartFactoryImpl(
 				director, template);
@@ -182,7 +183,12 @@ public class CaptureTemplateView extends JFrame implements
 		saveButton.setText("Save Template");
 		saveButton.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent event) {
-				template.save();
+				try {
+					template.save();
+				} catch (IOException e) {
+					status.setText("Unable to save template for [" + username
+							+ "]: " + e.getMessage());
+				}
 			}
 		});
 
@@ -1,16 +1,11 @@
 package net.ladieu.biometrics.keystroke.view;
 
-import java.util.HashSet;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-
+import net.ladieu.biometrics.keystroke.controller.AsyncKeystrokeDirectorObserver;
 import net.ladieu.biometrics.keystroke.controller.KeystrokeDirector;
 import net.ladieu.biometrics.keystroke.controller.KeystrokeDirectorObserver;
 import net.ladieu.biometrics.keystroke.controller.KeystrokeNotification;
 import net.ladieu.biometrics.keystroke.controller.KeystrokeNotification.KeystrokeNotificationType;
-import net.ladieu.biometrics.keystroke.model.Keystroke;
+import net.ladieu.biometrics.keystroke.model.KeystrokeTimings;
 import net.ladieu.biometrics.keystroke.model.StatisticalMatcher;
 import net.ladieu.biometrics.keystroke.stats.StatisticalDatasetBuilder;
 
@@ -45,7 +40,7 @@ public class DynamicChartFactoryImpl implements DynamicChartFactory {
 		XYDataset dynamicData = dataUpdater.getDynamicData();
 
 		JFreeChart chart = ChartFactory.createXYLineChart("Keystroke Dynamics",
-				"Keystroke", "Timing (ms)", dynamicData,
+				"Keystroke", "Timing (" + getUnitLabel() + ")", dynamicData,
 				PlotOrientation.VERTICAL, true, false, false);
 
 		return new ChartPanel(chart);
@@ -54,18 +49,34 @@ public class DynamicChartFactoryImpl implements DynamicChartFactory {
 	public ChartPanel createDynamicStatisticalChart() {
 		StatisticsUpdatingKeystrokeObserver statisticsUpdater = new StatisticsUpdatingKeystrokeObserver(
 				template);
-		changeSource.addObserver(statisticsUpdater);
+		// rebuilding the box plots is slow; do it after the key event
+		// instead of during it
+		changeSource.addObserver(statisticsUpdater,
+				AsyncKeystrokeDirectorObserver.EVENT_DISPATCH_THREAD);
 
 		DefaultBoxAndWhiskerCategoryDataset dynamicData = statisticsUpdater
 				.getDynamicData();
 
 		JFreeChart chart = ChartFactory.createBoxAndWhiskerChart(
-				"Keystroke Statistics", "Keystroke", "Stats (ms)", dynamicData,
-				true);
+				"Keystroke Statistics", "Keystroke", "Stats (" + getUnitLabel()
+						+ ")", dynamicData, true);
 
 		return new ChartPanel(chart);
 	}
 
+	private String getUnitLabel() {
+		switch (changeSource.getTimeResolution()) {
+		case NANOSECONDS:
+			return "ns";
+		case MICROSECONDS:
+			return "\u00b5s";
+		case SECONDS:
+			return "s";
+		default:
+			return "ms";
+		}
+	}
+
 	private class DataUpdatingKeystrokeObserver implements
 			KeystrokeDirectorObserver {
 		private XYSeriesCollection data;
@@ -73,7 +84,6 @@ public class DynamicChartFactoryImpl implements DynamicChartFactory {
 		private XYSeries currentFlightSeries;
 
 		private int currentIndex;
-		private Keystroke nextReadableKeystroke;
 		private static final int START_INDEX = 0;
 
 		private DataUpdatingKeystrokeObserver() {
@@ -100,13 +110,12 @@ public class DynamicChartFactoryImpl implements DynamicChartFactory {
 					currentFlightSeries.clear();
 				}
 
-				nextReadableKeystroke = event.getOrigin().getResult()
-						.getKeystroke(currentIndex);
+				// read the live recording rather than copying it on every key
+				KeystrokeTimings timings = event.getOrigin().getResultView();
 
-				while (null != nextReadableKeystroke
-						&& nextReadableKeystroke.isReleased()) {
-					reportReleasedKeystroke(nextReadableKeystroke);
-					nextReadableKeystroke = nextReadableKeystroke.getNext();
+				while (currentIndex < timings.size()
+						&& timings.isReleased(currentIndex)) {
+					reportReleasedKeystroke(timings);
 				}
 
 			} else if (KeystrokeNotificationType.COMPLETION == event.getType()) {
@@ -114,11 +123,11 @@ public class DynamicChartFactoryImpl implements DynamicChartFactory {
 			}
 		}
 
-		private void reportReleasedKeystroke(Keystroke releasedKeystroke) {
-			currentDwellSeries.add(new XYDataItem(currentIndex + 1,
-					releasedKeystroke.getDwellTime()));
-			currentFlightSeries.add(new XYDataItem(currentIndex + 1,
-					releasedKeystroke.getFlightTime()));
+		private void reportReleasedKeystroke(KeystrokeTimings timings) {
+			currentDwellSeries.add(new XYDataItem(currentIndex + 1, timings
+					.getDwellTime(currentIndex)));
+			currentFlightSeries.add(new XYDataItem(currentIndex + 1, timings
+					.getFlightTime(currentIndex)));
 			currentIndex++;
 		}
 
@@ -127,7 +136,6 @@ public class DynamicChartFactoryImpl implements DynamicChartFactory {
 		}
 
 		private void initializeSeries() {
-			nextReadableKeystroke = null;
 			currentIndex = 0;
 		}
 
@@ -157,8 +165,7 @@ public class DynamicChartFactoryImpl implements DynamicChartFactory {
 					.getType());
 
 			if (KeystrokeNotificationType.FILTER == event.getType()) {
-				templateSource.filterOutliers(getOutliers("flight"),
-						getOutliers("dwell"));
+				templateSource.filterOutliers();
 			}
 
 			if (refreshRequired) {
@@ -171,36 +178,6 @@ public class DynamicChartFactoryImpl implements DynamicChartFactory {
 		private DefaultBoxAndWhiskerCategoryDataset getDynamicData() {
 			return data;
 		}
-
-		/**
-		 * Creates a Map keyed by the keystroke index, with values containing
-		 * the Set of outliers for that index.
-		 * 
-		 * @param typeOfData -
-		 *            flight or dwell
-		 * @return a Map of Outlier sets keyed by index
-		 */
-		@SuppressWarnings("unchecked")
-		private Map<Integer, Set<Number>> getOutliers(String typeOfData) {
-			Map<Integer, Set<Number>> outlierMap = new LinkedHashMap<Integer, Set<Number>>();
-
-			List<Comparable> columnKeys = data.getColumnKeys();
-
-			for (Comparable columnKey : columnKeys) {
-
-				List<Number> outliers = data.getOutliers(typeOfData, columnKey);
-
-				Set<Number> outlierDataSet = new HashSet<Number>(outliers);
-
-				// they are keyed by array index + 1, so store them keyed by key
-				// value - 1
-				outlierMap.put(((Number) columnKey).intValue() - 1,
-						outlierDataSet);
-
-			}
-
-			return outlierMap;
-		}
 	}
 
 }
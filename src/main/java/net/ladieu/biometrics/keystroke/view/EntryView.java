@@ -13,11 +13,20 @@ import javax.swing.JLabel;
 import javax.swing.JTextField;
 
 import net.ladieu.biometrics.keystroke.model.StatisticalMatcher;
+import net.ladieu.biometrics.keystroke.model.StatisticalMatcherRegistry;
+import net.ladieu.biometrics.keystroke.model.persistence.BinaryTemplateStorage;
 
 public class EntryView extends JFrame {
 
 	private static final long serialVersionUID = -3997271663463873919L;
 	private static final int MIN_USERNAME_LENGTH = 3;
+	private static final int MAX_CACHED_TEMPLATES = 100;
+	private static final long TEMPLATE_EXPIRY_MILLIS = 10 * 60 * 1000;
+
+	private static final StatisticalMatcherRegistry TEMPLATE_REGISTRY = new StatisticalMatcherRegistry(
+			new BinaryTemplateStorage(), MAX_CACHED_TEMPLATES,
+			TEMPLATE_EXPIRY_MILLIS);
+
 	private JTextField usernameField;
 	private JLabel status;
 
@@ -53,6 +62,13 @@ public class EntryView extends JFrame {
 		// view.displayVerifyAgainstTemplateView();
 	}
 
+	/**
+	 * @return the registry through which all views load and save templates
+	 */
+	static StatisticalMatcherRegistry getTemplateRegistry() {
+		return TEMPLATE_REGISTRY;
+	}
+
 	private JComponent createUsernameInput() {
 		Box contentBox = new Box(BoxLayout.X_AXIS);
 		contentBox.add(new JLabel("Username:"));
@@ -96,7 +112,7 @@ public class EntryView extends JFrame {
 
 		StatisticalMatcher template;
 		try {
-			template = new StatisticalMatcher(username);
+			template = TEMPLATE_REGISTRY.getMatcher(username);
 			VerifyAgainstTemplateView newView = new VerifyAgainstTemplateView(
 					template);
 			this.setVisible(false);
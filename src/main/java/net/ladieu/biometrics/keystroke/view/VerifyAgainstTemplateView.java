@@ -16,6 +16,7 @@ import net.ladieu.biometrics.keystroke.controller.KeystrokeDirector;
 import net.ladieu.biometrics.keystroke.controller.KeystrokeDirectorObserver;
 import net.ladieu.biometrics.keystroke.controller.KeystrokeNotification;
 import net.ladieu.biometrics.keystroke.controller.KeystrokeNotification.KeystrokeNotificationType;
+import net.ladieu.biometrics.keystroke.model.IncrementalScorer;
 import net.ladieu.biometrics.keystroke.model.KeystrokeMatcher;
 import net.ladieu.biometrics.keystroke.model.KeystrokeRecorder;
 import net.ladieu.biometrics.keystroke.model.KeystrokeRecorderImpl;
@@ -34,6 +35,7 @@ public class VerifyAgainstTemplateView extends JFrame implements
 
 	private KeystrokeRecorder recorder;
 	private KeystrokeDirector director;
+	private IncrementalScorer scorer;
 
 	private boolean corruptionDetected;
 
@@ -84,6 +86,8 @@ public class VerifyAgainstTemplateView extends JFrame implements
 
 		inputField.addKeyListener(director);
 
+		scorer = template.createScorer(getThreshold());
+
 		Box echoBox = new Box(BoxLayout.Y_AXIS);
 
 		status = new JTextArea();
@@ -96,13 +100,28 @@ public class VerifyAgainstTemplateView extends JFrame implements
 
 	public void notificationReceived(KeystrokeNotification event) {
 
-		if (KeystrokeNotificationType.COMPLETION == event.getType()) {
+		if (KeystrokeNotificationType.UPDATE == event.getType()) {
+			scoreEntry();
+		} else if (KeystrokeNotificationType.COMPLETION == event.getType()) {
 			finishEntry();
 		} else if (KeystrokeNotificationType.CORRUPTION == event.getType()) {
 			corruptionDetected = true;
 		}
 	}
 
+	/**
+	 * Scores the keystrokes released so far, telling the user as soon as the
+	 * entry can no longer match. Entries are only scored once complete when
+	 * the template has no scorer.
+	 */
+	private void scoreEntry() {
+		if (null != scorer && !scorer.isRejected()
+				&& scorer.update(recorder.getResultView())) {
+			updateStatus("No match! (rejected after "
+					+ scorer.getScoredCount() + " keystrokes)");
+		}
+	}
+
 	private void finishEntry() {
 
 		inputField.setText("");
@@ -115,6 +134,9 @@ public class VerifyAgainstTemplateView extends JFrame implements
 
 		if (corruptionDetected) {
 			message = "No match!";
+		} else if (null != scorer && scorer.isRejected()) {
+			distance = scorer.getBestPossibleDistance();
+			message = "No match!";
 		} else {
 			distance = template.getDistance(sequence);
 
@@ -132,6 +154,8 @@ public class VerifyAgainstTemplateView extends JFrame implements
 		status.setText(message);
 
 		director.reset();
+		// null while the template scores with a DistanceModel
+		scorer = template.createScorer(getThreshold());
 		corruptionDetected = false;
 	}
 
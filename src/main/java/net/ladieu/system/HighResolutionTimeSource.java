@@ -0,0 +1,13 @@
+package net.ladieu.system;
+
+/**
+ * A TimeSource that can also tell the time to the nanosecond.
+ */
+public interface HighResolutionTimeSource extends TimeSource {
+
+	/**
+	 * @return the current time in nanoseconds, on the same timeline as
+	 *         millis(): nanos() / 1000000 never differs from millis()
+	 */
+	long nanos();
+}
@@ -0,0 +1,29 @@
+package net.ladieu.system;
+
+/**
+ * Tells the time from System.nanoTime(), starting from the wall clock time
+ * at which it was created. It never goes backwards and doesn't jump when the
+ * wall clock is adjusted, so the intervals between its readings are exact;
+ * in exchange it slowly drifts away from the wall clock.
+ */
+public class MonotonicTimeSource implements HighResolutionTimeSource {
+
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	private final long originNanos;
+	private final long originTime;
+
+	public MonotonicTimeSource() {
+		super();
+		this.originNanos = System.nanoTime();
+		this.originTime = System.currentTimeMillis() * NANOS_PER_MILLI;
+	}
+
+	public long nanos() {
+		return originTime + (System.nanoTime() - originNanos);
+	}
+
+	public long millis() {
+		return nanos() / NANOS_PER_MILLI;
+	}
+}
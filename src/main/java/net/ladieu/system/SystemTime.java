@@ -1,6 +1,7 @@
 package net.ladieu.system;
 
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 public class SystemTime {
 
@@ -16,6 +17,26 @@ public class SystemTime {
 		return getTimeSource().millis();
 	}
 
+	/**
+	 * @return the current time in nanoseconds; sources that only tell
+	 *         milliseconds are scaled up
+	 */
+	public static long asNanos() {
+		return as(TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return the current time in the given unit
+	 */
+	public static long as(TimeUnit unit) {
+		TimeSource current = getTimeSource();
+		if (current instanceof HighResolutionTimeSource) {
+			return unit.convert(((HighResolutionTimeSource) current).nanos(),
+					TimeUnit.NANOSECONDS);
+		}
+		return unit.convert(current.millis(), TimeUnit.MILLISECONDS);
+	}
+
 	public static Date asDate() {
 		return new Date(asMillis());
 	}
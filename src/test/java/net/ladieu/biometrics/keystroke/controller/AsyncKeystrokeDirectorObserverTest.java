@@ -0,0 +1,169 @@
+package net.ladieu.biometrics.keystroke.controller;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import net.ladieu.biometrics.keystroke.controller.KeystrokeNotification.KeystrokeNotificationType;
+import net.ladieu.biometrics.keystroke.model.KeystrokeRecorder;
+import net.ladieu.biometrics.keystroke.model.KeystrokeRecorderImpl;
+import net.ladieu.biometrics.keystroke.model.LowerCaseKeystrokeFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncKeystrokeDirectorObserverTest {
+
+	/**
+	 * Holds tasks until the test runs them.
+	 */
+	private static class ManualExecutor implements Executor {
+		private final LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+
+		public void execute(Runnable task) {
+			tasks.add(task);
+		}
+
+		private void runAll() {
+			while (!tasks.isEmpty()) {
+				tasks.removeFirst().run();
+			}
+		}
+	}
+
+	private static class RecordingObserver implements
+			KeystrokeDirectorObserver {
+		private final List<KeystrokeNotificationType> received = new ArrayList<KeystrokeNotificationType>();
+
+		public void notificationReceived(KeystrokeNotification event) {
+			received.add(event.getType());
+		}
+	}
+
+	private ManualExecutor executor;
+	private RecordingObserver delegate;
+	private KeystrokeRecorder origin;
+
+	@Before
+	public void setUp() {
+		executor = new ManualExecutor();
+		delegate = new RecordingObserver();
+		origin = new KeystrokeRecorderImpl(new LowerCaseKeystrokeFactory());
+	}
+
+	private KeystrokeNotification event(KeystrokeNotificationType type) {
+		return new KeystrokeNotification(type, origin);
+	}
+
+	@Test
+	public void notificationsAreDeliveredLaterInOrder() {
+		AsyncKeystrokeDirectorObserver observer = new AsyncKeystrokeDirectorObserver(
+				delegate, executor);
+
+		observer.notificationReceived(event(KeystrokeNotificationType.UPDATE));
+		observer.notificationReceived(event(KeystrokeNotificationType.COMPLETION));
+
+		assertTrue(delegate.received.isEmpty());
+		assertEquals(2, observer.getQueuedCount());
+		assertEquals(1, executor.tasks.size());
+
+		executor.runAll();
+
+		assertEquals(2, delegate.received.size());
+		assertEquals(KeystrokeNotificationType.UPDATE, delegate.received.get(0));
+		assertEquals(KeystrokeNotificationType.COMPLETION, delegate.received
+				.get(1));
+		assertEquals(0, observer.getQueuedCount());
+	}
+
+	@Test
+	public void consecutiveUpdatesAreCoalesced() {
+		AsyncKeystrokeDirectorObserver observer = new AsyncKeystrokeDirectorObserver(
+				delegate, executor);
+
+		observer.notificationReceived(event(KeystrokeNotificationType.UPDATE));
+		observer.notificationReceived(event(KeystrokeNotificationType.UPDATE));
+		observer.notificationReceived(event(KeystrokeNotificationType.COMPLETION));
+		observer.notificationReceived(event(KeystrokeNotificationType.UPDATE));
+		observer.notificationReceived(event(KeystrokeNotificationType.COMPLETION));
+		observer.notificationReceived(event(KeystrokeNotificationType.COMPLETION));
+
+		executor.runAll();
+
+		assertEquals(5, delegate.received.size());
+		assertEquals(KeystrokeNotificationType.UPDATE, delegate.received.get(0));
+		assertEquals(KeystrokeNotificationType.COMPLETION, delegate.received
+				.get(1));
+		assertEquals(KeystrokeNotificationType.UPDATE, delegate.received.get(2));
+	}
+
+	@Test
+	public void fullQueueDiscardsOldestCoalescableNotification() {
+		AsyncKeystrokeDirectorObserver observer = new AsyncKeystrokeDirectorObserver(
+				delegate, executor, 3);
+
+		observer.notificationReceived(event(KeystrokeNotificationType.FILTER));
+		observer.notificationReceived(event(KeystrokeNotificationType.UPDATE));
+		observer.notificationReceived(event(KeystrokeNotificationType.COMPLETION));
+		observer.notificationReceived(event(KeystrokeNotificationType.CORRUPTION));
+		assertEquals(3, observer.getQueuedCount());
+
+		// nothing left to discard but the oldest
+		observer.notificationReceived(event(KeystrokeNotificationType.REFRESH));
+
+		executor.runAll();
+
+		assertEquals(3, delegate.received.size());
+		assertEquals(KeystrokeNotificationType.COMPLETION, delegate.received
+				.get(0));
+		assertEquals(KeystrokeNotificationType.CORRUPTION, delegate.received
+				.get(1));
+		assertEquals(KeystrokeNotificationType.REFRESH, delegate.received
+				.get(2));
+	}
+
+	@Test
+	public void deliveryContinuesAfterObserverFails() {
+		final List<KeystrokeNotificationType> received = new ArrayList<KeystrokeNotificationType>();
+		AsyncKeystrokeDirectorObserver observer = new AsyncKeystrokeDirectorObserver(
+				new KeystrokeDirectorObserver() {
+					public void notificationReceived(KeystrokeNotification event) {
+						received.add(event.getType());
+						if (KeystrokeNotificationType.FILTER == event.getType()) {
+							throw new IllegalStateException("observer failed");
+						}
+					}
+				}, executor);
+
+		observer.notificationReceived(event(KeystrokeNotificationType.FILTER));
+		observer.notificationReceived(event(KeystrokeNotificationType.COMPLETION));
+
+		try {
+			executor.runAll();
+			fail("observer failure was swallowed");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		executor.runAll();
+
+		assertEquals(2, received.size());
+		assertEquals(KeystrokeNotificationType.COMPLETION, received.get(1));
+	}
+
+	@Test
+	public void directorRemovesAsyncObserverByDelegate() {
+		KeystrokeDirector director = new KeystrokeDirector();
+		director.setRecorder(origin);
+		director.addObserver(delegate, executor);
+
+		director.refreshViews();
+		director.removeObserver(delegate);
+		director.refreshViews();
+		executor.runAll();
+
+		assertEquals(1, delegate.received.size());
+	}
+}
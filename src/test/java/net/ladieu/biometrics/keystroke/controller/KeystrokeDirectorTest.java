@@ -8,12 +8,14 @@ import java.awt.event.KeyEvent;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import net.ladieu.biometrics.keystroke.controller.KeystrokeDirector;
 import net.ladieu.biometrics.keystroke.controller.KeystrokeDirectorObserver;
 import net.ladieu.biometrics.keystroke.controller.KeystrokeNotification;
 import net.ladieu.biometrics.keystroke.controller.KeystrokeNotification.KeystrokeNotificationType;
 import net.ladieu.biometrics.keystroke.model.KeystrokeRecorder;
+import net.ladieu.system.HighResolutionTimeSource;
 import net.ladieu.system.SystemTime;
 import net.ladieu.system.TimeSource;
 import net.ladieu.test.util.AbstractVerifyingMockObjectTest;
@@ -72,7 +74,7 @@ public class KeystrokeDirectorTest extends AbstractVerifyingMockObjectTest {
 
 	private void applyActiveKeyExpectations(KeystrokeRecorder mockRecorder,
 			Set<Character> activeKeys) {
-		expect(mockRecorder.getActiveKeys()).andReturn(activeKeys);
+		expect(mockRecorder.getActiveKeyCount()).andReturn(activeKeys.size());
 	}
 
 	private void applyKeystrokeExpectations(KeystrokeRecorder mockRecorder,
@@ -169,6 +171,106 @@ public class KeystrokeDirectorTest extends AbstractVerifyingMockObjectTest {
 		directorUnderTest.keyReleased(keyEventFor('d'));
 	}
 
+	private static class FakeClock implements HighResolutionTimeSource {
+		public long nanos;
+
+		public long nanos() {
+			return nanos;
+		}
+
+		public long millis() {
+			return nanos / 1000000;
+		}
+	}
+
+	private KeyEvent keyEventFor(char c, long when) {
+		KeyEvent result = createNiceMock(KeyEvent.class);
+		expect(result.getKeyChar()).andReturn(c).anyTimes();
+		expect(result.getWhen()).andReturn(when).anyTimes();
+		replayMock(result);
+		return result;
+	}
+
+	@Test
+	public void queuedKeyEventsKeepTheirTimestamps() {
+		KeystrokeRecorder mockRecorder = createMock(KeystrokeRecorder.class);
+		expect(mockRecorder.keyDown('c', 1000L)).andReturn(true).once();
+		expect(mockRecorder.keyUp('c', 1100L)).andReturn(true).once();
+		expect(mockRecorder.getActiveKeyCount()).andReturn(0).anyTimes();
+		replayMock(mockRecorder);
+		directorUnderTest.setRecorder(mockRecorder);
+		FakeClock clock = new FakeClock();
+		directorUnderTest.setTimeSource(clock);
+
+		clock.nanos = 1000 * 1000000L;
+		directorUnderTest.keyPressed(keyEventFor('c', 12345L));
+		// released 100ms later, but delivered after waiting 50ms in the queue
+		clock.nanos = 1150 * 1000000L;
+		directorUnderTest.keyReleased(keyEventFor('c', 12445L));
+	}
+
+	@Test
+	public void promptKeyEventsAreTimedByTheClock() {
+		KeystrokeRecorder mockRecorder = createMock(KeystrokeRecorder.class);
+		expect(mockRecorder.keyDown('c', 1000250L)).andReturn(true).once();
+		expect(mockRecorder.keyUp('c', 1001550L)).andReturn(true).once();
+		expect(mockRecorder.getActiveKeyCount()).andReturn(0).anyTimes();
+		replayMock(mockRecorder);
+		directorUnderTest.setRecorder(mockRecorder);
+		directorUnderTest.setTimeResolution(TimeUnit.MICROSECONDS);
+		FakeClock clock = new FakeClock();
+		directorUnderTest.setTimeSource(clock);
+
+		clock.nanos = 1000250 * 1000L;
+		directorUnderTest.keyPressed(keyEventFor('c', 12345L));
+		clock.nanos = 1001550 * 1000L;
+		directorUnderTest.keyReleased(keyEventFor('c', 12346L));
+	}
+
+	@Test
+	public void wallClockSetBackDoesNotReorderKeys() {
+		KeystrokeRecorder mockRecorder = createMock(KeystrokeRecorder.class);
+		expect(mockRecorder.keyDown('c', 1000L)).andReturn(true).once();
+		expect(mockRecorder.keyUp('c', 1120L)).andReturn(true).once();
+		expect(mockRecorder.getActiveKeyCount()).andReturn(0).anyTimes();
+		replayMock(mockRecorder);
+		directorUnderTest.setRecorder(mockRecorder);
+		FakeClock clock = new FakeClock();
+		directorUnderTest.setTimeSource(clock);
+
+		clock.nanos = 1000 * 1000000L;
+		directorUnderTest.keyPressed(keyEventFor('c', 3600000L));
+		clock.nanos = 1120 * 1000000L;
+		directorUnderTest.keyReleased(keyEventFor('c', 120L));
+	}
+
+	@Test
+	public void unstampedKeyEventsReadSystemTimeInTheResolution() {
+		KeystrokeRecorder mockRecorder = createMock(KeystrokeRecorder.class);
+		expect(mockRecorder.keyDown('c', fixedMomentInTime * 1000)).andReturn(
+				true).once();
+		replayMock(mockRecorder);
+		directorUnderTest.setRecorder(mockRecorder);
+		directorUnderTest.setTimeResolution(TimeUnit.MICROSECONDS);
+
+		directorUnderTest.keyPressed(keyEventFor('c'));
+	}
+
+	@Test
+	public void keysCanBeFedWithTheirOwnTimes() {
+		KeystrokeRecorder mockRecorder = createMock(KeystrokeRecorder.class);
+		expect(mockRecorder.keyDown('c', 1500L)).andReturn(true).once();
+		expect(mockRecorder.keyUp('c', 1750L)).andReturn(true).once();
+		expect(mockRecorder.getActiveKeyCount()).andReturn(0).anyTimes();
+		replayMock(mockRecorder);
+		directorUnderTest.setRecorder(mockRecorder);
+
+		directorUnderTest.keyPressed('C', 1500L);
+		directorUnderTest.keyReleased('C', 1750L);
+
+		assertFakeObserverState(1, KeystrokeNotificationType.UPDATE);
+	}
+
 	@Test
 	public void keyPressedDoesNotSendUpdateEvenIfRecorderReportsChanges() {
 		setRecorderExpectations(KeyState.DOWN, 'n', true);
@@ -0,0 +1,89 @@
+package net.ladieu.biometrics.keystroke.metrics;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void durationsFallInPowerOfTwoBuckets() {
+		assertEquals(0, LatencyHistogram.bucketOf(0));
+		assertEquals(1, LatencyHistogram.bucketOf(1));
+		assertEquals(2, LatencyHistogram.bucketOf(2));
+		assertEquals(2, LatencyHistogram.bucketOf(3));
+		assertEquals(11, LatencyHistogram.bucketOf(1024));
+		assertEquals(63, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+
+		assertEquals(2047L, LatencyHistogram.upperBoundOf(11));
+	}
+
+	@Test
+	public void snapshotSummarizesRecordedDurations() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 99; i++) {
+			histogram.record(1000);
+		}
+		histogram.record(1000000);
+		histogram.record(-5);
+
+		HistogramSnapshot snapshot = histogram.snapshot();
+
+		assertEquals(101L, snapshot.getCount());
+		assertEquals(1000000L, snapshot.getMax());
+		assertEquals(99 * 1000 + 1000000L, snapshot.getTotal());
+		assertEquals((99 * 1000 + 1000000) / 101.0, snapshot.getMean(), 0.001);
+
+		// within a factor of two of the true percentile
+		long p50 = snapshot.getPercentile(50);
+		assertTrue(p50 >= 1000 && p50 < 2000);
+		long p99 = snapshot.getPercentile(99);
+		assertTrue(p99 >= 1000 && p99 < 2000);
+		assertEquals(1000000L, snapshot.getPercentile(100));
+		assertEquals(0L, snapshot.getPercentile(0));
+	}
+
+	@Test
+	public void emptyHistogramReportsZero() {
+		HistogramSnapshot snapshot = new LatencyHistogram().snapshot();
+
+		assertEquals(0L, snapshot.getCount());
+		assertEquals(0.0, snapshot.getMean(), 0.0);
+		assertEquals(0L, snapshot.getPercentile(99));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void percentileAboveHundredIsRejected() {
+		new LatencyHistogram().snapshot().getPercentile(101);
+	}
+
+	@Test
+	public void concurrentRecordingLosesNothing() throws InterruptedException {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			final int offset = t;
+			threads.add(new Thread() {
+				public void run() {
+					for (int i = 0; i < 10000; i++) {
+						histogram.record(i + offset);
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		HistogramSnapshot snapshot = histogram.snapshot();
+		assertEquals(40000L, snapshot.getCount());
+		assertEquals(10002L, snapshot.getMax());
+		assertEquals(snapshot.getMax(), snapshot.getPercentile(100));
+	}
+}
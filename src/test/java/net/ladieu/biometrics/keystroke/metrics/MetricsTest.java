@@ -0,0 +1,99 @@
+package net.ladieu.biometrics.keystroke.metrics;
+
+import static org.junit.Assert.*;
+
+import javax.management.AttributeNotFoundException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import net.ladieu.biometrics.keystroke.model.Keystroke;
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+import net.ladieu.biometrics.keystroke.model.StatisticalMatcher;
+
+import org.junit.Test;
+
+public class MetricsTest {
+
+	@Test
+	public void namesResolveToTheSameInstruments() {
+		Metrics metrics = new Metrics();
+
+		assertSame(metrics.counter("a"), metrics.counter("a"));
+		assertSame(metrics.histogram("a"), metrics.histogram("a"));
+		assertNotSame(metrics.counter("a"), metrics.counter("b"));
+	}
+
+	@Test
+	public void snapshotReadsEveryInstrument() {
+		Metrics metrics = new Metrics();
+		metrics.counter("saves").add(3);
+		metrics.histogram("latency").record(500);
+
+		MetricsSnapshot snapshot = metrics.snapshot();
+		metrics.counter("saves").increment();
+
+		assertEquals(3L, snapshot.getCounter("saves"));
+		assertEquals(0L, snapshot.getCounter("missing"));
+		assertEquals(1L, snapshot.getHistogram("latency").getCount());
+		assertNull(snapshot.getHistogram("missing"));
+	}
+
+	@Test
+	public void exporterPublishesAttributesThroughJmx() throws Exception {
+		Metrics metrics = new Metrics();
+		metrics.counter("saves").add(2);
+		metrics.histogram("latency").record(3000);
+
+		MBeanServer server = MBeanServerFactory.newMBeanServer();
+		ObjectName name = new ObjectName(
+				JmxMetricsExporter.DEFAULT_OBJECT_NAME);
+		new JmxMetricsExporter(metrics).register(server, name);
+
+		assertEquals(2L, server.getAttribute(name, "saves"));
+		assertEquals(1L, server.getAttribute(name, "latency.count"));
+		assertEquals(3.0, (Double) server.getAttribute(name,
+				"latency.maxMicros"), 0.0);
+		assertEquals(3.0, (Double) server.getAttribute(name,
+				"latency.meanMicros"), 0.0);
+
+		// values are read when asked for
+		metrics.counter("saves").increment();
+		assertEquals(3L, server.getAttribute(name, "saves"));
+
+		MBeanAttributeInfo[] attributes = server.getMBeanInfo(name)
+				.getAttributes();
+		assertEquals(6, attributes.length);
+
+		try {
+			server.getAttribute(name, "latency.p42Micros");
+			fail("unknown attribute was read");
+		} catch (AttributeNotFoundException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void matcherRecordsDistanceLatency() {
+		StatisticalMatcher matcher = new StatisticalMatcher("tester", "ab");
+		KeystrokeSequence sequence = new KeystrokeSequence();
+		Keystroke a = new Keystroke('a', 0);
+		sequence.addKeystroke(a);
+		a.release(10);
+		Keystroke b = new Keystroke('b', 20);
+		sequence.addKeystroke(b);
+		b.release(30);
+		matcher.addSequence(sequence);
+
+		long before = Metrics.getDefault().snapshot().getHistogram(
+				"matcher.getDistance").getCount();
+		matcher.getDistance(sequence);
+		long after = Metrics.getDefault().snapshot().getHistogram(
+				"matcher.getDistance").getCount();
+
+		assertEquals(before + 1, after);
+		assertNotNull(Metrics.getDefault().snapshot().getHistogram(
+				"matcher.recalculateStats"));
+	}
+}
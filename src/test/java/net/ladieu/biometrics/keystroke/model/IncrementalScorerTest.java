@@ -0,0 +1,159 @@
+package net.ladieu.biometrics.keystroke.model;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class IncrementalScorerTest {
+
+	private static final String PASSWORD = "abc";
+
+	private StatisticalMatcher matcher;
+
+	@Before
+	public void setUp() {
+		matcher = new StatisticalMatcher("tester", PASSWORD);
+
+		long time = 1000;
+		for (int sample = 0; sample < 8; sample++) {
+			KeystrokeSequence sequence = new KeystrokeSequence();
+			for (int i = 0; i < PASSWORD.length(); i++) {
+				time += 100 + sample;
+				Keystroke keystroke = new Keystroke(PASSWORD.charAt(i), time);
+				sequence.addKeystroke(keystroke);
+				time += 80 + 2 * sample;
+				keystroke.release(time);
+			}
+			time += 1000;
+			matcher.addSequence(sequence);
+		}
+	}
+
+	/**
+	 * Types the value one key at a time, updating the scorer after every
+	 * press and release.
+	 */
+	private KeystrokeSequence type(IncrementalScorer scorer, String value,
+			long[] flights, long[] dwells) {
+		KeystrokeSequence attempt = new KeystrokeSequence();
+		long time = 50000;
+		for (int i = 0; i < value.length(); i++) {
+			time += flights[i];
+			Keystroke keystroke = new Keystroke(value.charAt(i), time);
+			attempt.addKeystroke(keystroke);
+			scorer.update(attempt);
+
+			time += dwells[i];
+			keystroke.release(time);
+			scorer.update(attempt);
+		}
+		return attempt;
+	}
+
+	@Test
+	public void completedScoreMatchesFullDistance() {
+		Random random = new Random(42);
+		IncrementalScorer scorer = matcher
+				.createScorer(KeystrokeMatcher.NO_MATCH);
+
+		for (int attempt = 0; attempt < 200; attempt++) {
+			long[] flights = new long[PASSWORD.length()];
+			long[] dwells = new long[PASSWORD.length()];
+			for (int i = 0; i < PASSWORD.length(); i++) {
+				flights[i] = 90 + random.nextInt(30);
+				dwells[i] = 70 + random.nextInt(40);
+			}
+
+			scorer.reset();
+			KeystrokeSequence sequence = type(scorer, PASSWORD, flights,
+					dwells);
+
+			assertTrue(scorer.isComplete());
+			assertFalse(scorer.isRejected());
+			assertEquals(matcher.getDistance(sequence), scorer
+					.getBestPossibleDistance(), 0.0f);
+		}
+	}
+
+	@Test
+	public void attemptIsRejectedOnceThresholdIsOutOfReach() {
+		IncrementalScorer scorer = matcher
+				.createScorer(KeystrokeMatcher.EXACT_MATCH);
+
+		KeystrokeSequence attempt = new KeystrokeSequence();
+		Keystroke first = new Keystroke('a', 1000);
+		attempt.addKeystroke(first);
+		assertFalse(scorer.update(attempt));
+
+		// held far too long
+		first.release(1500);
+		assertTrue(scorer.update(attempt));
+		assertTrue(scorer.isRejected());
+		assertEquals(1, scorer.getScoredCount());
+		assertEquals(1, scorer.getOutlierCount());
+	}
+
+	@Test
+	public void lowerThresholdToleratesSomeOutliers() {
+		// one of six times may be an outlier
+		IncrementalScorer scorer = matcher.createScorer(1.0f - 1.0f / 6.0f);
+
+		type(scorer, PASSWORD, new long[] { 100, 104, 104 }, new long[] {
+				500, 84, 84 });
+
+		assertFalse(scorer.isRejected());
+		assertTrue(scorer.isComplete());
+		assertEquals(1, scorer.getOutlierCount());
+	}
+
+	@Test
+	public void wrongKeyIsRejectedImmediately() {
+		IncrementalScorer scorer = matcher
+				.createScorer(KeystrokeMatcher.EXACT_MATCH);
+
+		KeystrokeSequence attempt = new KeystrokeSequence();
+		attempt.addKeystroke(new Keystroke('a', 1000));
+		attempt.addKeystroke(new Keystroke('x', 1050));
+
+		assertTrue(scorer.update(attempt));
+		assertEquals(KeystrokeMatcher.NO_MATCH, scorer
+				.getBestPossibleDistance(), 0.0f);
+	}
+
+	@Test
+	public void extraKeyIsAMismatch() {
+		IncrementalScorer scorer = matcher
+				.createScorer(KeystrokeMatcher.NO_MATCH);
+
+		type(scorer, "abca", new long[] { 100, 104, 104, 104 }, new long[] {
+				84, 84, 84, 84 });
+
+		assertFalse(scorer.isComplete());
+		assertEquals(KeystrokeMatcher.NO_MATCH, scorer
+				.getBestPossibleDistance(), 0.0f);
+	}
+
+	@Test
+	public void overlappingKeyWaitsForPriorRelease() {
+		IncrementalScorer scorer = matcher
+				.createScorer(KeystrokeMatcher.NO_MATCH);
+
+		KeystrokeSequence attempt = new KeystrokeSequence();
+		Keystroke first = new Keystroke('a', 1000);
+		Keystroke second = new Keystroke('b', 1050);
+		attempt.addKeystroke(first);
+		attempt.addKeystroke(second);
+
+		// the second key comes up first; its flight time isn't known yet
+		second.release(1100);
+		scorer.update(attempt);
+		assertEquals(0, scorer.getScoredCount());
+
+		first.release(1120);
+		scorer.update(attempt);
+		assertEquals(2, scorer.getScoredCount());
+	}
+}
@@ -154,4 +154,33 @@ public class KeystrokeRecorderImplTest extends
 		assertEquals("aaa", recorderUnderTest.getResult().getCapturedValue());
 	}
 
+	@Test
+	public void activeKeyCountTracksHeldKeys() {
+		assertEquals(0, recorderUnderTest.getActiveKeyCount());
+
+		recorderUnderTest.keyDown('a', tickingTime++);
+		recorderUnderTest.keyDown('b', tickingTime++);
+		assertEquals(2, recorderUnderTest.getActiveKeyCount());
+		assertTrue(recorderUnderTest.isKeyActive('a'));
+		assertTrue(recorderUnderTest.isKeyActive('b'));
+
+		recorderUnderTest.keyUp('a', tickingTime++);
+		assertEquals(1, recorderUnderTest.getActiveKeyCount());
+		assertFalse(recorderUnderTest.isKeyActive('a'));
+		assertTrue(recorderUnderTest.isKeyActive('b'));
+	}
+
+	@Test
+	public void resultViewReflectsLaterKeyEvents() {
+		KeystrokeTimings view = recorderUnderTest.getResultView();
+
+		typeCharacter('a');
+		recorderUnderTest.keyDown('b', tickingTime++);
+
+		assertEquals(2, view.size());
+		assertEquals("ab", view.getCapturedValue());
+		assertTrue(view.isReleased(0));
+		assertFalse(view.isReleased(1));
+	}
+
 }
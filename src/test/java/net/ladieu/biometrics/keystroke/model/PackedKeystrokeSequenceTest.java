@@ -0,0 +1,123 @@
+package net.ladieu.biometrics.keystroke.model;
+
+import static org.junit.Assert.*;
+
+import java.util.Iterator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PackedKeystrokeSequenceTest {
+
+	private KeystrokeSequence sequence;
+
+	@Before
+	public void setUp() {
+		sequence = new KeystrokeSequence();
+	}
+
+	/**
+	 * Adds a keystroke, leaving it unreleased if releaseTime is negative.
+	 */
+	private void addKeystroke(char c, long startTime, long releaseTime) {
+		Keystroke keystroke = new Keystroke(c, startTime);
+		sequence.addKeystroke(keystroke);
+		if (releaseTime >= 0) {
+			keystroke.release(releaseTime);
+		}
+	}
+
+	private void assertSameTimings(KeystrokeTimings expected,
+			KeystrokeTimings actual) {
+		assertEquals(expected.getCapturedValue(), actual.getCapturedValue());
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.getValue(i), actual.getValue(i));
+			assertEquals(expected.getStartTime(i), actual.getStartTime(i));
+			assertEquals(expected.getEndTime(i), actual.getEndTime(i));
+			assertEquals(expected.isReleased(i), actual.isReleased(i));
+			assertEquals(expected.getDwellTime(i), actual.getDwellTime(i));
+			assertEquals(expected.getFlightTime(i), actual.getFlightTime(i));
+		}
+	}
+
+	@Test
+	public void emptySequencePacksToEmptySequence() {
+		PackedKeystrokeSequence packed = PackedKeystrokeSequence.pack(sequence);
+
+		assertEquals(0, packed.size());
+		assertEquals("", packed.getCapturedValue());
+		assertFalse(packed.iterator().hasNext());
+	}
+
+	@Test
+	public void packedTimingsMatchOriginal() {
+		addKeystroke('f', 1, 3);
+		addKeystroke('o', 2, 3);
+		addKeystroke('o', 3, 5);
+		addKeystroke('b', 7, 8);
+		addKeystroke('a', 8, 10);
+		addKeystroke('r', 9, 15);
+
+		assertSameTimings(sequence, PackedKeystrokeSequence.pack(sequence));
+	}
+
+	@Test
+	public void unreleasedKeystrokesKeepKeystrokeSemantics() {
+		addKeystroke('a', 1, -1);
+		addKeystroke('b', 2, 4);
+		addKeystroke('c', 6, -1);
+		addKeystroke('d', 7, 9);
+
+		PackedKeystrokeSequence packed = PackedKeystrokeSequence.pack(sequence);
+
+		assertSameTimings(sequence, packed);
+		assertFalse(packed.isReleased(0));
+		assertEquals(0L, packed.getDwellTime(0));
+		assertEquals(0L, packed.getFlightTime(1));
+	}
+
+	@Test
+	public void iterationMaterializesLinkedKeystrokes() {
+		addKeystroke('a', 1, 3);
+		addKeystroke('b', 5, 6);
+
+		Iterator<Keystroke> iterator = PackedKeystrokeSequence.pack(sequence)
+				.iterator();
+
+		Keystroke first = iterator.next();
+		Keystroke second = iterator.next();
+		assertFalse(iterator.hasNext());
+
+		assertEquals('a', first.getValue());
+		assertSame(first, second.getPrior());
+		assertEquals(2L, second.getFlightTime());
+	}
+
+	@Test
+	public void unpackedSequenceMatchesOriginal() {
+		addKeystroke('x', 10, 20);
+		addKeystroke('y', 15, -1);
+
+		assertSameTimings(sequence, PackedKeystrokeSequence.pack(sequence)
+				.toKeystrokeSequence());
+	}
+
+	@Test
+	public void packedSequencesScoreLikeOriginals() {
+		StatisticalMatcher matcher = new StatisticalMatcher("packer", "ab");
+		for (int i = 0; i < 5; i++) {
+			sequence = new KeystrokeSequence();
+			addKeystroke('a', 100 * i, 100 * i + 10 + i);
+			addKeystroke('b', 100 * i + 20, 100 * i + 30 + i);
+			matcher.addSequence(sequence);
+		}
+
+		sequence = new KeystrokeSequence();
+		addKeystroke('a', 1000, 1050);
+		addKeystroke('b', 1060, 1072);
+
+		assertEquals(matcher.getDistance(sequence), matcher
+				.getDistance(PackedKeystrokeSequence.pack(sequence)), 0.0f);
+	}
+}
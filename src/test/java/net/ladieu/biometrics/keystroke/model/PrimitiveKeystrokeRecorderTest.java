@@ -0,0 +1,124 @@
+package net.ladieu.biometrics.keystroke.model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrimitiveKeystrokeRecorderTest {
+
+	private PrimitiveKeystrokeRecorder recorderUnderTest;
+	private KeystrokeRecorder referenceRecorder;
+
+	@Before
+	public void setUp() {
+		recorderUnderTest = new PrimitiveKeystrokeRecorder(
+				new LowerCaseKeystrokeFactory());
+		referenceRecorder = new KeystrokeRecorderImpl(
+				new LowerCaseKeystrokeFactory());
+	}
+
+	private void keyDown(char c, long time) {
+		assertEquals(referenceRecorder.keyDown(c, time), recorderUnderTest
+				.keyDown(c, time));
+	}
+
+	private void keyUp(char c, long time) {
+		assertEquals(referenceRecorder.keyUp(c, time), recorderUnderTest
+				.keyUp(c, time));
+	}
+
+	private void assertSameTimings(KeystrokeTimings expected,
+			KeystrokeTimings actual) {
+		assertEquals(expected.size(), actual.size());
+		assertEquals(expected.getCapturedValue(), actual.getCapturedValue());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.getValue(i), actual.getValue(i));
+			assertEquals(expected.getStartTime(i), actual.getStartTime(i));
+			assertEquals(expected.getEndTime(i), actual.getEndTime(i));
+			assertEquals(expected.isReleased(i), actual.isReleased(i));
+			assertEquals(expected.getDwellTime(i), actual.getDwellTime(i));
+			assertEquals(expected.getFlightTime(i), actual.getFlightTime(i));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void constructorRequiresNonNullFactory() {
+		new PrimitiveKeystrokeRecorder(null);
+	}
+
+	@Test
+	public void recordsTheSameTimingsAsKeystrokeRecorderImpl() {
+		keyDown('s', 10);
+		keyUp('s', 40);
+		keyDown('e', 70);
+		keyDown('c', 90);
+		keyDown('e', 95);
+		keyUp('e', 100);
+		keyUp('c', 130);
+		keyUp('q', 135);
+		keyDown('r', 170);
+
+		assertSameTimings(referenceRecorder.getResultView(), recorderUnderTest
+				.getResultView());
+		assertSameTimings(referenceRecorder.getResult(), recorderUnderTest
+				.getResult());
+		assertEquals(referenceRecorder.getActiveKeys(), recorderUnderTest
+				.getActiveKeys());
+	}
+
+	@Test
+	public void charactersAreNormalizedByFactory() {
+		recorderUnderTest.keyDown('A', 10);
+		assertTrue(recorderUnderTest.isKeyActive('a'));
+		assertFalse(recorderUnderTest.keyDown('a', 20));
+
+		assertTrue(recorderUnderTest.keyUp('a', 30));
+		assertEquals("a", recorderUnderTest.getResultView().getCapturedValue());
+	}
+
+	@Test
+	public void recordingGrowsPastInitialCapacity() {
+		long time = 1;
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			char c = (char) ('a' + (i % 26));
+			expected.append(c);
+			recorderUnderTest.keyDown(c, time++);
+			recorderUnderTest.keyUp(c, time++);
+		}
+
+		KeystrokeTimings view = recorderUnderTest.getResultView();
+		assertEquals(100, view.size());
+		assertEquals(expected.toString(), view.getCapturedValue());
+		assertEquals(1L, view.getDwellTime(99));
+		assertEquals(1L, view.getFlightTime(99));
+	}
+
+	@Test
+	public void resetForgetsSequenceAndActiveKeys() {
+		recorderUnderTest.keyDown('a', 10);
+		recorderUnderTest.reset();
+
+		assertEquals(0, recorderUnderTest.getResultView().size());
+		assertEquals(0, recorderUnderTest.getActiveKeyCount());
+		assertFalse(recorderUnderTest.keyUp('a', 20));
+	}
+
+	@Test(expected = KeystrokeException.class)
+	public void disallowedCharacterIsRejected() {
+		recorderUnderTest.keyDown('!', 10);
+	}
+
+	@Test(expected = KeystrokeException.class)
+	public void releaseBeforePressIsRejected() {
+		recorderUnderTest.keyDown('a', 10);
+		recorderUnderTest.keyUp('a', 5);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void viewRejectsPositionsPastTheRecordedLength() {
+		recorderUnderTest.keyDown('a', 10);
+		recorderUnderTest.getResultView().getStartTime(1);
+	}
+}
@@ -0,0 +1,185 @@
+package net.ladieu.biometrics.keystroke.model;
+
+import static org.junit.Assert.*;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.ladieu.biometrics.keystroke.model.persistence.TemplateStorage;
+import net.ladieu.system.SystemTime;
+import net.ladieu.system.TimeSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StatisticalMatcherRegistryTest {
+
+	private static class CountingTemplateStorage implements TemplateStorage {
+		private Map<String, List<KeystrokeSequence>> templates = new HashMap<String, List<KeystrokeSequence>>();
+		private int loadCount;
+
+		public List<KeystrokeSequence> getStoredTemplate(String userName)
+				throws IOException {
+			loadCount++;
+			List<KeystrokeSequence> template = templates.get(userName);
+			if (null == template) {
+				throw new FileNotFoundException(userName);
+			}
+			return new ArrayList<KeystrokeSequence>(template);
+		}
+
+		public void saveTemplate(String userName,
+				List<KeystrokeSequence> template) {
+			templates.put(userName, new ArrayList<KeystrokeSequence>(template));
+		}
+	}
+
+	private CountingTemplateStorage storage;
+	private StatisticalMatcherRegistry registryUnderTest;
+	private long currentTime;
+
+	@Before
+	public void setUp() {
+		currentTime = 1000;
+		SystemTime.setTimeSource(new TimeSource() {
+			public long millis() {
+				return currentTime;
+			}
+		});
+
+		storage = new CountingTemplateStorage();
+		storage.saveTemplate("alice", createTemplate("secret"));
+		storage.saveTemplate("bob", createTemplate("hunter"));
+		storage.saveTemplate("carol", createTemplate("sesame"));
+
+		registryUnderTest = new StatisticalMatcherRegistry(storage, 2, 500);
+	}
+
+	@After
+	public void tearDown() {
+		SystemTime.reset();
+	}
+
+	private List<KeystrokeSequence> createTemplate(String password) {
+		List<KeystrokeSequence> template = new ArrayList<KeystrokeSequence>();
+		KeystrokeSequence sequence = new KeystrokeSequence();
+		long time = 1;
+		for (char c : password.toCharArray()) {
+			Keystroke keystroke = new Keystroke(c, time);
+			sequence.addKeystroke(keystroke);
+			keystroke.release(time + 5);
+			time += 10;
+		}
+		template.add(sequence);
+		return template;
+	}
+
+	@Test
+	public void repeatedLookupsAreServedFromMemory() throws IOException {
+		StatisticalMatcher first = registryUnderTest.getMatcher("alice");
+		StatisticalMatcher second = registryUnderTest.getMatcher("alice");
+
+		assertSame(first, second);
+		assertEquals(1, storage.loadCount);
+		assertEquals(1L, registryUnderTest.getHitCount());
+		assertEquals(1L, registryUnderTest.getMissCount());
+	}
+
+	@Test
+	public void leastRecentlyUsedMatcherIsEvictedWhenFull()
+			throws IOException {
+		registryUnderTest.getMatcher("alice");
+		registryUnderTest.getMatcher("bob");
+		registryUnderTest.getMatcher("alice");
+		registryUnderTest.getMatcher("carol");
+
+		assertEquals(2, registryUnderTest.size());
+		assertEquals(1L, registryUnderTest.getEvictionCount());
+
+		// alice was used more recently than bob, so bob went first
+		registryUnderTest.getMatcher("alice");
+		assertEquals(3, storage.loadCount);
+		registryUnderTest.getMatcher("bob");
+		assertEquals(4, storage.loadCount);
+	}
+
+	@Test
+	public void matchersExpireAfterConfiguredTime() throws IOException {
+		StatisticalMatcher first = registryUnderTest.getMatcher("alice");
+
+		currentTime += 499;
+		assertSame(first, registryUnderTest.getMatcher("alice"));
+
+		currentTime += 1;
+		assertNotSame(first, registryUnderTest.getMatcher("alice"));
+		assertEquals(2, storage.loadCount);
+	}
+
+	@Test
+	public void savingThroughRegistryInvalidatesEntry() throws IOException {
+		StatisticalMatcher first = registryUnderTest.getMatcher("alice");
+		first.save();
+
+		StatisticalMatcher second = registryUnderTest.getMatcher("alice");
+		assertNotSame(first, second);
+		assertEquals(2, storage.loadCount);
+	}
+
+	@Test
+	public void adaptiveWindowIsAppliedToLoadedMatchers() throws IOException {
+		StatisticalMatcher first = registryUnderTest.getMatcher("alice");
+		assertEquals(0, first.getAdaptiveWindow());
+
+		registryUnderTest.setAdaptiveWindow(5);
+		StatisticalMatcher second = registryUnderTest.getMatcher("alice");
+		assertNotSame(first, second);
+		assertEquals(5, second.getAdaptiveWindow());
+	}
+
+	@Test
+	public void adaptedTemplateIsSavedWithoutInvalidatingEntry()
+			throws IOException {
+		registryUnderTest.setAdaptiveWindow(5);
+		StatisticalMatcher matcher = registryUnderTest.getMatcher("alice");
+
+		assertTrue(matcher.adapt(createTemplate("secret").get(0)));
+
+		assertEquals(2, storage.templates.get("alice").size());
+		assertSame(matcher, registryUnderTest.getMatcher("alice"));
+		assertEquals(1, storage.loadCount);
+	}
+
+	@Test
+	public void adaptingEvictedMatcherInvalidatesNewerEntry()
+			throws IOException {
+		registryUnderTest.setAdaptiveWindow(5);
+		StatisticalMatcher evicted = registryUnderTest.getMatcher("alice");
+		registryUnderTest.invalidate("alice");
+		StatisticalMatcher current = registryUnderTest.getMatcher("alice");
+
+		assertTrue(evicted.adapt(createTemplate("secret").get(0)));
+
+		StatisticalMatcher reloaded = registryUnderTest.getMatcher("alice");
+		assertNotSame(current, reloaded);
+		assertEquals(2, reloaded.getNumberOfTemplatesCaptured());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeAdaptiveWindowIsRejected() {
+		registryUnderTest.setAdaptiveWindow(-1);
+	}
+
+	@Test(expected = IOException.class)
+	public void unknownUserIsNotCached() throws IOException {
+		try {
+			registryUnderTest.getMatcher("dave");
+		} finally {
+			assertEquals(0, registryUnderTest.size());
+		}
+	}
+}
@@ -0,0 +1,437 @@
+package net.ladieu.biometrics.keystroke.model;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.ladieu.biometrics.keystroke.model.distance.ZScoreDistanceModel;
+import net.ladieu.biometrics.keystroke.stats.BoxPlotStatistics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class StatisticalMatcherTest {
+
+	private static final String PASSWORD = "abc";
+
+	private StatisticalMatcher matcherUnderTest;
+	private long tickingTime;
+
+	@Before
+	public void setUp() {
+		tickingTime = 1000;
+		matcherUnderTest = new StatisticalMatcher("tester", PASSWORD);
+
+		addSample(new long[] { 10, 20, 30 }, new long[] { 5, 15, 25 });
+		addSample(new long[] { 12, 22, 32 }, new long[] { 6, 16, 26 });
+		addSample(new long[] { 14, 24, 34 }, new long[] { 7, 17, 27 });
+		addSample(new long[] { 16, 26, 36 }, new long[] { 8, 18, 28 });
+	}
+
+	/**
+	 * Builds a sequence typing the password where each keystroke is held for
+	 * the given dwell and pressed the given gap after the prior release.
+	 */
+	private KeystrokeSequence createSequence(String value, long[] dwells,
+			long[] gaps) {
+		KeystrokeSequence sequence = new KeystrokeSequence();
+		for (int i = 0; i < value.length(); i++) {
+			tickingTime += gaps[i];
+			Keystroke keystroke = new Keystroke(value.charAt(i), tickingTime);
+			sequence.addKeystroke(keystroke);
+			tickingTime += dwells[i];
+			keystroke.release(tickingTime);
+		}
+		tickingTime += 1000;
+		return sequence;
+	}
+
+	private void addSample(long[] dwells, long[] gaps) {
+		matcherUnderTest.addSequence(createSequence(PASSWORD, dwells, gaps));
+	}
+
+	@Test
+	public void compiledTemplateMatchesBoxAndWhiskerStatistics() {
+		CompiledTemplate compiled = matcherUnderTest.getCompiledTemplate();
+
+		List<BoxPlotStatistics> dwellStats = matcherUnderTest
+				.getDwellTimeStatistics();
+		List<BoxPlotStatistics> flightStats = matcherUnderTest
+				.getFlightTimeStatistics();
+
+		assertEquals(PASSWORD.length(), compiled.getLength());
+
+		for (int i = 0; i < compiled.getLength(); i++) {
+			assertEquals(dwellStats.get(i).getMinRegularValue(),
+					compiled.getMinDwell(i));
+			assertEquals(dwellStats.get(i).getMaxRegularValue(),
+					compiled.getMaxDwell(i));
+			assertEquals(flightStats.get(i).getMinRegularValue(),
+					compiled.getMinFlight(i));
+			assertEquals(flightStats.get(i).getMaxRegularValue(),
+					compiled.getMaxFlight(i));
+		}
+	}
+
+	@Test
+	public void sequenceWithinRegularRangesIsExactMatch() {
+		KeystrokeSequence attempt = createSequence(PASSWORD, new long[] { 13,
+				23, 33 }, new long[] { 5, 16, 26 });
+
+		assertEquals(KeystrokeMatcher.EXACT_MATCH, matcherUnderTest
+				.getDistance(attempt));
+	}
+
+	@Test
+	public void eachOutlyingTimeReducesDistance() {
+		// dwell of the second keystroke is out of range
+		KeystrokeSequence attempt = createSequence(PASSWORD, new long[] { 13,
+				99, 33 }, new long[] { 5, 16, 26 });
+
+		assertEquals(1.0f - 1.0f / 6.0f, matcherUnderTest.getDistance(attempt),
+				0.0001f);
+
+		// as is the flight time of the third
+		attempt = createSequence(PASSWORD, new long[] { 13, 99, 33 },
+				new long[] { 5, 16, 1 });
+
+		assertEquals(1.0f - 2.0f / 6.0f, matcherUnderTest.getDistance(attempt),
+				0.0001f);
+	}
+
+	@Test
+	public void wrongPhraseIsNoMatch() {
+		KeystrokeSequence attempt = createSequence("abd", new long[] { 13, 23,
+				33 }, new long[] { 5, 16, 26 });
+
+		assertEquals(KeystrokeMatcher.NO_MATCH, matcherUnderTest
+				.getDistance(attempt));
+	}
+
+	@Test
+	public void compiledTemplateRebuiltWhenSequenceAdded() {
+		CompiledTemplate before = matcherUnderTest.getCompiledTemplate();
+		assertSame(before, matcherUnderTest.getCompiledTemplate());
+
+		addSample(new long[] { 18, 28, 38 }, new long[] { 9, 19, 29 });
+
+		CompiledTemplate after = matcherUnderTest.getCompiledTemplate();
+		assertNotSame(before, after);
+		assertEquals(18L, after.getMaxDwell(0));
+	}
+
+	@Test
+	public void distanceModelReplacesOutlierCount() {
+		// dwell of the second keystroke is out of range
+		KeystrokeSequence attempt = createSequence(PASSWORD, new long[] { 13,
+				99, 33 }, new long[] { 5, 16, 26 });
+		float boxPlotDistance = matcherUnderTest.getDistance(attempt);
+
+		matcherUnderTest.setDistanceModel(new ZScoreDistanceModel(100));
+
+		assertEquals(KeystrokeMatcher.EXACT_MATCH, matcherUnderTest
+				.getDistance(attempt), 0.0f);
+		assertNull(matcherUnderTest
+				.createScorer(KeystrokeMatcher.EXACT_MATCH));
+
+		matcherUnderTest.setDistanceModel(null);
+
+		assertEquals(boxPlotDistance, matcherUnderTest.getDistance(attempt),
+				0.0f);
+	}
+
+	@Test
+	public void adaptiveWindowReplacesOldestSample() {
+		matcherUnderTest.setAdaptiveWindow(4);
+
+		KeystrokeSequence attempt = createSequence(PASSWORD, new long[] { 18,
+				28, 38 }, new long[] { 9, 19, 29 });
+		assertTrue(matcherUnderTest.adapt(attempt));
+
+		assertEquals(4, matcherUnderTest.getNumberOfTemplatesCaptured());
+		CompiledTemplate compiled = matcherUnderTest.getCompiledTemplate();
+		assertEquals(12L, compiled.getMinDwell(0));
+		assertEquals(18L, compiled.getMaxDwell(0));
+
+		// the same as a template built from the samples left in the window
+		StatisticalMatcher expected = new StatisticalMatcher("tester",
+				PASSWORD);
+		expected.addSequence(createSequence(PASSWORD, new long[] { 12, 22, 32 },
+				new long[] { 6, 16, 26 }));
+		expected.addSequence(createSequence(PASSWORD, new long[] { 14, 24, 34 },
+				new long[] { 7, 17, 27 }));
+		expected.addSequence(createSequence(PASSWORD, new long[] { 16, 26, 36 },
+				new long[] { 8, 18, 28 }));
+		expected.addSequence(attempt);
+
+		assertSameStatistics(expected.getDwellTimeStatistics(),
+				matcherUnderTest.getDwellTimeStatistics());
+		assertSameStatistics(expected.getFlightTimeStatistics(),
+				matcherUnderTest.getFlightTimeStatistics());
+	}
+
+	@Test
+	public void shrinkingAdaptiveWindowDropsOldestSamples() {
+		matcherUnderTest.setAdaptiveWindow(2);
+
+		assertEquals(2, matcherUnderTest.getNumberOfTemplatesCaptured());
+		assertEquals(14L, matcherUnderTest.getCompiledTemplate().getMinDwell(0));
+
+		addSample(new long[] { 18, 28, 38 }, new long[] { 9, 19, 29 });
+		assertEquals(2, matcherUnderTest.getNumberOfTemplatesCaptured());
+		assertEquals(16L, matcherUnderTest.getCompiledTemplate().getMinDwell(0));
+	}
+
+	@Test
+	public void adaptIgnoredWithoutWindowOrForWrongPhrase() {
+		KeystrokeSequence attempt = createSequence(PASSWORD, new long[] { 13,
+				23, 33 }, new long[] { 5, 16, 26 });
+		assertFalse(matcherUnderTest.adapt(attempt));
+
+		matcherUnderTest.setAdaptiveWindow(10);
+		assertFalse(matcherUnderTest.adapt(createSequence("abd", new long[] {
+				13, 23, 33 }, new long[] { 5, 16, 26 })));
+		assertEquals(4, matcherUnderTest.getNumberOfTemplatesCaptured());
+
+		assertTrue(matcherUnderTest.adapt(attempt));
+		assertEquals(5, matcherUnderTest.getNumberOfTemplatesCaptured());
+	}
+
+	private List<KeystrokeSequence> createBatch() {
+		List<KeystrokeSequence> batch = new ArrayList<KeystrokeSequence>();
+		for (int i = 0; i < 5000; i++) {
+			String value = (i % 7 == 0 ? "abd" : PASSWORD);
+			batch.add(createSequence(value, new long[] { 10 + i % 9,
+					20 + i % 5, 30 + i % 11 }, new long[] { 5 + i % 4,
+					15 + i % 3, 25 }));
+		}
+		return batch;
+	}
+
+	@Test
+	public void batchDistancesMatchIndividualDistances() {
+		List<KeystrokeSequence> batch = createBatch();
+
+		float[] distances = matcherUnderTest.getDistances(batch);
+
+		assertEquals(batch.size(), distances.length);
+		for (int i = 0; i < distances.length; i++) {
+			assertEquals(matcherUnderTest.getDistance(batch.get(i)),
+					distances[i], 0.0f);
+		}
+	}
+
+	@Test
+	public void parallelBatchDistancesMatchSequentialDistances()
+			throws InterruptedException {
+		List<KeystrokeSequence> batch = createBatch();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+
+		try {
+			float[] sequential = matcherUnderTest.getDistances(batch);
+			float[] parallel = matcherUnderTest.getDistances(batch, executor);
+
+			assertTrue(Arrays.equals(sequential, parallel));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private void assertSameStatistics(List<BoxPlotStatistics> expected,
+			List<BoxPlotStatistics> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).toString(), actual.get(i).toString());
+			assertEquals(expected.get(i).getMean(), actual.get(i).getMean(),
+					0.0);
+			assertTrue(Arrays.equals(expected.get(i).getOutliers(), actual
+					.get(i).getOutliers()));
+		}
+	}
+
+	@Test
+	public void parallelStatisticsMatchSequentialStatistics() {
+		String passphrase = "the quick brown fox jumps over the lazy dog";
+		StatisticalMatcher sequential = new StatisticalMatcher("tester",
+				passphrase);
+		StatisticalMatcher parallel = new StatisticalMatcher("tester",
+				passphrase);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		parallel.setStatisticsExecutor(executor, 0);
+
+		try {
+			List<KeystrokeSequence> samples = new ArrayList<KeystrokeSequence>();
+			long[] dwells = new long[passphrase.length()];
+			long[] gaps = new long[passphrase.length()];
+			for (int s = 0; s < 200; s++) {
+				for (int i = 0; i < dwells.length; i++) {
+					dwells[i] = 60 + (s * 7 + i * 13) % 41;
+					gaps[i] = 40 + (s * 11 + i * 5) % 97;
+				}
+				samples.add(createSequence(passphrase, dwells, gaps));
+			}
+			sequential.addSequences(samples);
+			parallel.addSequences(samples);
+
+			assertSameStatistics(sequential.getDwellTimeStatistics(),
+					parallel.getDwellTimeStatistics());
+			assertSameStatistics(sequential.getFlightTimeStatistics(),
+					parallel.getFlightTimeStatistics());
+
+			// removing samples rebuilds the statistics from scratch
+			Map<Integer, Set<Number>> dwellOutliers = new HashMap<Integer, Set<Number>>();
+			Map<Integer, Set<Number>> flightOutliers = new HashMap<Integer, Set<Number>>();
+			for (int i = 0; i < passphrase.length(); i++) {
+				dwellOutliers.put(i, Collections.<Number> singleton(100L));
+				flightOutliers.put(i, Collections.<Number> emptySet());
+			}
+			sequential.filterOutliers(flightOutliers, dwellOutliers);
+			parallel.filterOutliers(flightOutliers, dwellOutliers);
+
+			assertTrue(parallel.getNumberOfTemplatesCaptured() < 200);
+			assertSameStatistics(sequential.getDwellTimeStatistics(),
+					parallel.getDwellTimeStatistics());
+			assertSameStatistics(sequential.getFlightTimeStatistics(),
+					parallel.getFlightTimeStatistics());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void filterOutliersRemovesSamplesOutsideRegularRanges() {
+		addSample(new long[] { 13, 99, 33 }, new long[] { 6, 16, 26 });
+		assertEquals(1, matcherUnderTest.getDwellTimeStatistics().get(1)
+				.getOutlierCount());
+
+		assertEquals(1, matcherUnderTest.filterOutliers());
+
+		assertEquals(4, matcherUnderTest.getNumberOfTemplatesCaptured());
+		assertEquals(1, matcherUnderTest.getNumberOfFilteredTemplates());
+		assertEquals(26L, matcherUnderTest.getCompiledTemplate().getMaxDwell(1));
+		assertEquals(0, matcherUnderTest.filterOutliers());
+	}
+
+	@Test
+	public void filterOutliersMatchesFilteringByOutlierSets() {
+		StatisticalMatcher expected = new StatisticalMatcher("tester",
+				PASSWORD);
+		StatisticalMatcher actual = new StatisticalMatcher("tester", PASSWORD);
+		List<KeystrokeSequence> batch = createBatch();
+		expected.addSequences(batch.subList(0, 600));
+		actual.addSequences(batch.subList(0, 600));
+		for (int i = 1; i <= 20; i++) {
+			KeystrokeSequence outlier = createSequence(PASSWORD, new long[] {
+					10, 20 + 50 * (i % 2), 30 }, new long[] { 5, 15, 25 + 40 * i });
+			expected.addSequence(outlier);
+			actual.addSequence(outlier);
+		}
+
+		Map<Integer, Set<Number>> dwellOutliers = new HashMap<Integer, Set<Number>>();
+		Map<Integer, Set<Number>> flightOutliers = new HashMap<Integer, Set<Number>>();
+		for (int i = 0; i < PASSWORD.length(); i++) {
+			dwellOutliers.put(i, toSet(expected.getDwellTimeStatistics().get(i)
+					.getOutliers()));
+			flightOutliers.put(i, toSet(expected.getFlightTimeStatistics()
+					.get(i).getOutliers()));
+		}
+		expected.filterOutliers(flightOutliers, dwellOutliers);
+
+		assertEquals(expected.getNumberOfFilteredTemplates(), actual
+				.filterOutliers());
+		assertTrue(actual.getNumberOfFilteredTemplates() >= 20);
+		assertEquals(expected.getNumberOfTemplatesCaptured(), actual
+				.getNumberOfTemplatesCaptured());
+		assertSameStatistics(expected.getDwellTimeStatistics(), actual
+				.getDwellTimeStatistics());
+		assertSameStatistics(expected.getFlightTimeStatistics(), actual
+				.getFlightTimeStatistics());
+	}
+
+	private Set<Number> toSet(long[] values) {
+		Set<Number> result = new HashSet<Number>();
+		for (long value : values) {
+			result.add(value);
+		}
+		return result;
+	}
+
+	@Test
+	public void readersSeeConsistentTemplateWhileWriterAddsSamples()
+			throws Exception {
+		final KeystrokeSequence attempt = createSequence(PASSWORD, new long[] {
+				13, 23, 33 }, new long[] { 6, 16, 26 });
+		final List<KeystrokeSequence> samples = new ArrayList<KeystrokeSequence>();
+		for (int i = 0; i < 300; i++) {
+			samples.add(createSequence(PASSWORD, new long[] { 10 + i % 7,
+					20 + i % 9, 30 + i % 5 }, new long[] { 5 + i % 3,
+					15 + i % 4, 25 + i % 6 }));
+		}
+
+		final List<Throwable> failures = new ArrayList<Throwable>();
+		final boolean[] writing = { true };
+
+		Thread writer = new Thread() {
+			public void run() {
+				for (KeystrokeSequence sample : samples) {
+					matcherUnderTest.addSequence(sample);
+				}
+				synchronized (writing) {
+					writing[0] = false;
+				}
+			}
+		};
+
+		List<Thread> readers = new ArrayList<Thread>();
+		for (int r = 0; r < 4; r++) {
+			readers.add(new Thread() {
+				public void run() {
+					try {
+						int lastCount = 0;
+						while (true) {
+							synchronized (writing) {
+								if (!writing[0]) {
+									return;
+								}
+							}
+							float distance = matcherUnderTest
+									.getDistance(attempt);
+							assertTrue(distance >= KeystrokeMatcher.NO_MATCH
+									&& distance <= KeystrokeMatcher.EXACT_MATCH);
+
+							int count = matcherUnderTest
+									.getNumberOfTemplatesCaptured();
+							assertTrue(count >= lastCount);
+							lastCount = count;
+						}
+					} catch (Throwable t) {
+						synchronized (failures) {
+							failures.add(t);
+						}
+					}
+				}
+			});
+		}
+
+		for (Thread reader : readers) {
+			reader.start();
+		}
+		writer.start();
+		writer.join();
+		for (Thread reader : readers) {
+			reader.join();
+		}
+
+		assertTrue(failures.toString(), failures.isEmpty());
+		assertEquals(304, matcherUnderTest.getNumberOfTemplatesCaptured());
+	}
+}
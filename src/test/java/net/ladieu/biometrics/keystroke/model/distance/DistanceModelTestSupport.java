@@ -0,0 +1,87 @@
+package net.ladieu.biometrics.keystroke.model.distance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.ladieu.biometrics.keystroke.model.Keystroke;
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+
+/**
+ * Samples from a typist with a steady rhythm, and attempts from one with a
+ * different rhythm, shared by the distance model tests.
+ */
+class DistanceModelTestSupport {
+
+	static final String PASSWORD = "secret";
+
+	private static final long[] DWELL = { 80, 95, 70, 110, 85, 90 };
+	private static final long[] FLIGHT = { 0, 120, 140, 90, 160, 130 };
+
+	private final Random random = new Random(7);
+
+	List<KeystrokeSequence> createSamples(int count) {
+		List<KeystrokeSequence> samples = new ArrayList<KeystrokeSequence>();
+		for (int i = 0; i < count; i++) {
+			samples.add(createAttempt(1.0, 6));
+		}
+		return samples;
+	}
+
+	/**
+	 * @param scale
+	 *            how much slower than the enrolled typist to type
+	 * @param jitter
+	 *            the most any time may randomly vary by
+	 */
+	KeystrokeSequence createAttempt(double scale, int jitter) {
+		return createAttempt(scale, jitter, 0);
+	}
+
+	/**
+	 * @param lastKeyDelay
+	 *            how much longer than usual to hold the last key
+	 */
+	KeystrokeSequence createAttempt(double scale, int jitter,
+			long lastKeyDelay) {
+		KeystrokeSequence result = new KeystrokeSequence();
+		long time = 1000;
+		for (int i = 0; i < PASSWORD.length(); i++) {
+			time += Math.round(FLIGHT[i] * scale)
+					+ random.nextInt(2 * jitter + 1) - jitter;
+			Keystroke keystroke = new Keystroke(PASSWORD.charAt(i), time);
+			result.addKeystroke(keystroke);
+			time += Math.round(DWELL[i] * scale)
+					+ random.nextInt(2 * jitter + 1) - jitter;
+			if (i == PASSWORD.length() - 1) {
+				time += lastKeyDelay;
+			}
+			keystroke.release(time);
+		}
+		return result;
+	}
+
+	/**
+	 * @return a copy of the sequence with every time in microseconds rather
+	 *         than milliseconds
+	 */
+	static KeystrokeSequence toMicroseconds(KeystrokeSequence sequence) {
+		KeystrokeSequence result = new KeystrokeSequence();
+		for (int i = 0; i < sequence.size(); i++) {
+			Keystroke keystroke = new Keystroke(sequence.getValue(i), sequence
+					.getStartTime(i) * 1000);
+			result.addKeystroke(keystroke);
+			keystroke.release(sequence.getEndTime(i) * 1000);
+		}
+		return result;
+	}
+
+	static List<KeystrokeSequence> toMicroseconds(
+			List<KeystrokeSequence> sequences) {
+		List<KeystrokeSequence> result = new ArrayList<KeystrokeSequence>();
+		for (KeystrokeSequence sequence : sequences) {
+			result.add(toMicroseconds(sequence));
+		}
+		return result;
+	}
+}
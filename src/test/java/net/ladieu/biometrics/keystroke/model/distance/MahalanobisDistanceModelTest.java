@@ -0,0 +1,85 @@
+package net.ladieu.biometrics.keystroke.model.distance;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.ladieu.biometrics.keystroke.model.KeystrokeMatcher;
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MahalanobisDistanceModelTest {
+
+	private DistanceModelTestSupport typist;
+	private CompiledDistanceModel modelUnderTest;
+
+	@Before
+	public void setUp() {
+		typist = new DistanceModelTestSupport();
+		modelUnderTest = new MahalanobisDistanceModel().compile(typist
+				.createSamples(20));
+	}
+
+	@Test
+	public void genuineAttemptsOutscoreImpostors() {
+		for (int i = 0; i < 50; i++) {
+			float genuine = modelUnderTest.getDistance(typist.createAttempt(
+					1.0, 6));
+			float impostor = modelUnderTest.getDistance(typist.createAttempt(
+					1.6, 6));
+
+			assertTrue(genuine + " <= " + impostor, genuine > impostor);
+			assertTrue(genuine <= KeystrokeMatcher.EXACT_MATCH);
+			assertTrue(impostor >= KeystrokeMatcher.NO_MATCH);
+		}
+	}
+
+	@Test
+	public void inverseTimesMatrixIsIdentity() {
+		double[] matrix = { 4, 2, 0.6, 2, 5, 1, 0.6, 1, 3 };
+
+		double[] inverse = MahalanobisDistanceModel.invert(matrix, 3);
+
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < 3; j++) {
+				double product = 0;
+				for (int k = 0; k < 3; k++) {
+					product += matrix[i * 3 + k] * inverse[k * 3 + j];
+				}
+				assertEquals(i == j ? 1.0 : 0.0, product, 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void regularizationFollowsResolution() {
+		// no variation at all, so only the regularization is left to scale by
+		List<KeystrokeSequence> samples = new ArrayList<KeystrokeSequence>();
+		for (int i = 0; i < 5; i++) {
+			samples.add(typist.createAttempt(1.0, 0));
+		}
+		KeystrokeSequence attempt = typist.createAttempt(1.0, 3);
+
+		float millis = new MahalanobisDistanceModel().compile(samples)
+				.getDistance(attempt);
+		float micros = new MahalanobisDistanceModel(TimeUnit.MICROSECONDS)
+				.compile(DistanceModelTestSupport.toMicroseconds(samples))
+				.getDistance(DistanceModelTestSupport.toMicroseconds(attempt));
+
+		assertTrue(millis < KeystrokeMatcher.EXACT_MATCH);
+		assertEquals(millis, micros, 0.0001f);
+	}
+
+	@Test
+	public void singleSampleTemplateCanBeCompiled() {
+		CompiledDistanceModel model = new MahalanobisDistanceModel()
+				.compile(typist.createSamples(1));
+
+		assertEquals(DistanceModelTestSupport.PASSWORD.length(), model
+				.getLength());
+	}
+}
@@ -0,0 +1,53 @@
+package net.ladieu.biometrics.keystroke.model.distance;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import net.ladieu.biometrics.keystroke.model.KeystrokeMatcher;
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ScaledManhattanDistanceModelTest {
+
+	private DistanceModelTestSupport typist;
+	private CompiledDistanceModel modelUnderTest;
+
+	@Before
+	public void setUp() {
+		typist = new DistanceModelTestSupport();
+		modelUnderTest = new ScaledManhattanDistanceModel().compile(typist
+				.createSamples(20));
+	}
+
+	@Test
+	public void genuineAttemptsOutscoreImpostors() {
+		for (int i = 0; i < 50; i++) {
+			float genuine = modelUnderTest.getDistance(typist.createAttempt(
+					1.0, 6));
+			float impostor = modelUnderTest.getDistance(typist.createAttempt(
+					1.6, 6));
+
+			assertTrue(genuine + " <= " + impostor, genuine > impostor);
+			assertTrue(genuine <= KeystrokeMatcher.EXACT_MATCH);
+			assertTrue(impostor >= KeystrokeMatcher.NO_MATCH);
+		}
+	}
+
+	@Test
+	public void compiledModelCoversEveryPosition() {
+		assertEquals(DistanceModelTestSupport.PASSWORD.length(),
+				modelUnderTest.getLength());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void sequenceOfWrongLengthIsRejected() {
+		List<KeystrokeSequence> samples = typist.createSamples(1);
+		KeystrokeSequence shorter = new KeystrokeSequence();
+		shorter.addKeystroke(samples.get(0).getKeystroke(0));
+
+		modelUnderTest.getDistance(shorter);
+	}
+}
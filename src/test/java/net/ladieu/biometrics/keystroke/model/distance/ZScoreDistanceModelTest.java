@@ -0,0 +1,76 @@
+package net.ladieu.biometrics.keystroke.model.distance;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.ladieu.biometrics.keystroke.model.KeystrokeMatcher;
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ZScoreDistanceModelTest {
+
+	private DistanceModelTestSupport typist;
+	private CompiledDistanceModel modelUnderTest;
+
+	@Before
+	public void setUp() {
+		typist = new DistanceModelTestSupport();
+		modelUnderTest = new ZScoreDistanceModel().compile(typist
+				.createSamples(20));
+	}
+
+	@Test
+	public void genuineAttemptsOutscoreImpostors() {
+		for (int i = 0; i < 50; i++) {
+			float genuine = modelUnderTest.getDistance(typist.createAttempt(
+					1.0, 6));
+			float impostor = modelUnderTest.getDistance(typist.createAttempt(
+					1.6, 6));
+
+			assertTrue(genuine + " <= " + impostor, genuine > impostor);
+			assertTrue(genuine <= KeystrokeMatcher.EXACT_MATCH);
+			assertTrue(impostor >= KeystrokeMatcher.NO_MATCH);
+		}
+	}
+
+	@Test
+	public void eachFeatureOutOfRangeCountsOnce() {
+		CompiledDistanceModel model = new ZScoreDistanceModel(3.0)
+				.compile(typist.createSamples(20));
+
+		KeystrokeSequence attempt = typist.createAttempt(1.0, 0);
+		assertEquals(KeystrokeMatcher.EXACT_MATCH, model.getDistance(attempt),
+				0.0f);
+
+		// hold the last key far too long
+		attempt = typist.createAttempt(1.0, 0, 200);
+		assertEquals(1.0f - 1.0f / 12.0f, model.getDistance(attempt), 0.0001f);
+	}
+
+	@Test
+	public void deviationFloorFollowsResolution() {
+		List<KeystrokeSequence> samples = new ArrayList<KeystrokeSequence>();
+		for (int i = 0; i < 5; i++) {
+			samples.add(typist.createAttempt(1.0, 0));
+		}
+		CompiledDistanceModel model = new ZScoreDistanceModel(3.0,
+				TimeUnit.MICROSECONDS).compile(DistanceModelTestSupport
+				.toMicroseconds(samples));
+
+		// within the three milliseconds allowed to a time that never varied
+		KeystrokeSequence attempt = typist.createAttempt(1.0, 0, 2);
+		assertEquals(KeystrokeMatcher.EXACT_MATCH, model
+				.getDistance(DistanceModelTestSupport.toMicroseconds(attempt)),
+				0.0f);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void limitMustBePositive() {
+		new ZScoreDistanceModel(0);
+	}
+}
@@ -0,0 +1,239 @@
+package net.ladieu.biometrics.keystroke.model.persistence;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.ladieu.biometrics.keystroke.model.Keystroke;
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BinaryTemplateStorageTest {
+
+	/**
+	 * Stands in for a class that has since been removed; its name is the
+	 * same length as RemovedType so the serialized bytes can be patched.
+	 */
+	private static class LegacyClass implements Serializable {
+		private static final long serialVersionUID = 1L;
+	}
+
+	private File directory;
+	private BinaryTemplateStorage storageUnderTest;
+	private List<KeystrokeSequence> template;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = File.createTempFile("templates", "");
+		directory.delete();
+		directory.mkdir();
+
+		storageUnderTest = new BinaryTemplateStorage(directory);
+
+		template = new ArrayList<KeystrokeSequence>();
+		template.add(createSequence("foo", new long[] { 1234567890123L,
+				1234567890150L, 1234567890155L }, new long[] {
+				1234567890200L, 1234567890160L, 1234567890156L }));
+		template.add(createSequence("bar", new long[] { 5, 6, 7 },
+				new long[] { 8, 0, 7 }));
+	}
+
+	@After
+	public void tearDown() {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	/**
+	 * Creates a sequence from start and end times; an end time of zero leaves
+	 * the keystroke unreleased.
+	 */
+	private KeystrokeSequence createSequence(String value, long[] starts,
+			long[] ends) {
+		KeystrokeSequence sequence = new KeystrokeSequence();
+		for (int i = 0; i < value.length(); i++) {
+			Keystroke keystroke = new Keystroke(value.charAt(i), starts[i]);
+			sequence.addKeystroke(keystroke);
+			if (0 != ends[i]) {
+				keystroke.release(ends[i]);
+			}
+		}
+		return sequence;
+	}
+
+	private void assertSameTemplate(List<KeystrokeSequence> expected,
+			List<KeystrokeSequence> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			KeystrokeSequence expectedSequence = expected.get(i);
+			KeystrokeSequence actualSequence = actual.get(i);
+
+			assertEquals(expectedSequence.getCapturedValue(), actualSequence
+					.getCapturedValue());
+			assertEquals(expectedSequence.size(), actualSequence.size());
+
+			for (int j = 0; j < expectedSequence.size(); j++) {
+				Keystroke expectedKeystroke = expectedSequence.getKeystroke(j);
+				Keystroke actualKeystroke = actualSequence.getKeystroke(j);
+
+				assertEquals(expectedKeystroke.getStartTime(), actualKeystroke
+						.getStartTime());
+				assertEquals(expectedKeystroke.getEndTime(), actualKeystroke
+						.getEndTime());
+				assertEquals(expectedKeystroke.isReleased(), actualKeystroke
+						.isReleased());
+				assertEquals(expectedKeystroke.getFlightTime(),
+						actualKeystroke.getFlightTime());
+			}
+		}
+	}
+
+	@Test
+	public void savedTemplateCanBeRestored() throws IOException {
+		storageUnderTest.saveTemplate("josh", template);
+		assertSameTemplate(template, storageUnderTest.getStoredTemplate("josh"));
+	}
+
+	@Test
+	public void binaryTemplateIsSmallerThanSerializedTemplate()
+			throws IOException {
+		storageUnderTest.saveTemplate("binary", template);
+		new SerializingTemplateStorage(directory).saveTemplate("serialized",
+				template);
+
+		assertTrue(new File(directory, "binary.template").length() < new File(
+				directory, "serialized.template").length());
+	}
+
+	@Test(expected = IOException.class)
+	public void missingTemplateThrowsIOException() throws IOException {
+		storageUnderTest.getStoredTemplate("nobody");
+	}
+
+	@Test(expected = IOException.class)
+	public void truncatedTemplateThrowsIOException() throws IOException {
+		byte[] contents = new BinaryTemplateCodec().encode(template);
+
+		FileOutputStream output = new FileOutputStream(new File(directory,
+				"truncated.template"));
+		output.write(contents, 0, contents.length - 3);
+		output.close();
+
+		storageUnderTest.getStoredTemplate("truncated");
+	}
+
+	@Test
+	public void subMillisecondTimesSurviveMicrosecondStorage()
+			throws IOException {
+		BinaryTemplateStorage microsecondStorage = new BinaryTemplateStorage(
+				directory, TimeUnit.MICROSECONDS);
+		List<KeystrokeSequence> fineTemplate = new ArrayList<KeystrokeSequence>();
+		fineTemplate.add(createSequence("ab", new long[] { 1000250, 1080999 },
+				new long[] { 1075001, 1160123 }));
+
+		microsecondStorage.saveTemplate("fine", fineTemplate);
+		assertSameTemplate(fineTemplate, microsecondStorage
+				.getStoredTemplate("fine"));
+
+		// truncated when read back in milliseconds
+		KeystrokeSequence coarse = storageUnderTest.getStoredTemplate("fine")
+				.get(0);
+		assertEquals(1000L, coarse.getKeystroke(0).getStartTime());
+		assertEquals(1075L, coarse.getKeystroke(0).getEndTime());
+		assertEquals(1080L, coarse.getKeystroke(1).getStartTime());
+	}
+
+	@Test
+	public void millisecondTemplatesAreConvertedToMicroseconds()
+			throws IOException {
+		BinaryTemplateStorage microsecondStorage = new BinaryTemplateStorage(
+				directory, TimeUnit.MICROSECONDS);
+		storageUnderTest.saveTemplate("coarse", template);
+		new SerializingTemplateStorage(directory).saveTemplate("legacy",
+				template);
+
+		for (String userName : new String[] { "coarse", "legacy" }) {
+			KeystrokeSequence fine = microsecondStorage.getStoredTemplate(
+					userName).get(0);
+			assertEquals(1234567890123000L, fine.getKeystroke(0)
+					.getStartTime());
+			assertEquals(77000L, fine.getKeystroke(0).getDwellTime());
+		}
+	}
+
+	@Test
+	public void versionOneTemplateIsReadAsMilliseconds() throws IOException {
+		byte[] current = new BinaryTemplateCodec().encode(template);
+
+		// version 1 has no resolution; a millisecond is 3 varint bytes
+		FileOutputStream output = new FileOutputStream(new File(directory,
+				"old.template"));
+		output.write(current, 0, 4);
+		output.write(1);
+		output.write(current, 8, current.length - 8);
+		output.close();
+
+		assertSameTemplate(template, storageUnderTest.getStoredTemplate("old"));
+	}
+
+	@Test
+	public void serializedTemplateOfRemovedClassThrowsIOException()
+			throws IOException {
+		List<Object> legacy = new ArrayList<Object>();
+		legacy.add(new LegacyClass());
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream objectOutput = new ObjectOutputStream(bytes);
+		objectOutput.writeObject(legacy);
+		objectOutput.close();
+
+		byte[] contents = new String(bytes.toByteArray(), "ISO-8859-1")
+				.replace("LegacyClass", "RemovedType").getBytes("ISO-8859-1");
+		FileOutputStream output = new FileOutputStream(new File(directory,
+				"removed.template"));
+		output.write(contents);
+		output.close();
+
+		try {
+			storageUnderTest.getStoredTemplate("removed");
+			fail("a template of removed classes can not be loaded");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().indexOf(
+					"removed.template") >= 0);
+		}
+		try {
+			storageUnderTest.migrateTemplate("removed");
+			fail("a template of removed classes can not be migrated");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().indexOf(
+					"removed.template") >= 0);
+		}
+	}
+
+	@Test
+	public void serializedTemplateIsReadAndMigrated() throws IOException {
+		new SerializingTemplateStorage(directory).saveTemplate("legacy",
+				template);
+
+		assertSameTemplate(template, storageUnderTest
+				.getStoredTemplate("legacy"));
+
+		assertTrue(storageUnderTest.migrateTemplate("legacy"));
+		assertFalse(storageUnderTest.migrateTemplate("legacy"));
+
+		assertSameTemplate(template, storageUnderTest
+				.getStoredTemplate("legacy"));
+	}
+}
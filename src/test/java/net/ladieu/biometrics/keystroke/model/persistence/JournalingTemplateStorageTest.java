@@ -0,0 +1,234 @@
+package net.ladieu.biometrics.keystroke.model.persistence;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.ladieu.biometrics.keystroke.model.Keystroke;
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JournalingTemplateStorageTest {
+
+	private File directory;
+	private JournalingTemplateStorage storageUnderTest;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = File.createTempFile("templates", ".journal");
+		directory.delete();
+		directory.mkdir();
+		storageUnderTest = new JournalingTemplateStorage(directory, 4);
+	}
+
+	@After
+	public void tearDown() {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	private KeystrokeSequence createSequence(int sample) {
+		KeystrokeSequence sequence = new KeystrokeSequence();
+		long time = 1000 + 1000 * sample;
+		for (char c : "secret".toCharArray()) {
+			Keystroke keystroke = new Keystroke(c, time);
+			sequence.addKeystroke(keystroke);
+			keystroke.release(time + 10 + sample);
+			time += 50;
+		}
+		return sequence;
+	}
+
+	/**
+	 * Asserts the stored template holds the samples created with the given
+	 * numbers, in order.
+	 */
+	private void assertStored(JournalingTemplateStorage storage, int... samples)
+			throws IOException {
+		List<KeystrokeSequence> stored = storage.getStoredTemplate("alice");
+		assertEquals(samples.length, stored.size());
+		for (int i = 0; i < samples.length; i++) {
+			assertEquals("secret", stored.get(i).getCapturedValue());
+			assertEquals(10L + samples[i], stored.get(i).getFirstKeystroke()
+					.getDwellTime());
+		}
+	}
+
+	private JournalingTemplateStorage reopen() {
+		return new JournalingTemplateStorage(directory, 4);
+	}
+
+	private File getJournalFile() {
+		return new File(directory, "alice.journal");
+	}
+
+	@Test
+	public void addedSequencesAreAppended() throws IOException {
+		List<KeystrokeSequence> template = new ArrayList<KeystrokeSequence>();
+		template.add(createSequence(0));
+		storageUnderTest.saveTemplate("alice", template);
+		long lengthAfterFirst = getJournalFile().length();
+
+		template.add(createSequence(1));
+		storageUnderTest.saveTemplate("alice", template);
+		long appended = getJournalFile().length() - lengthAfterFirst;
+
+		template.add(createSequence(2));
+		storageUnderTest.saveTemplate("alice", template);
+
+		// each save appends only the new sample
+		assertEquals(appended, getJournalFile().length() - lengthAfterFirst
+				- appended);
+		assertEquals(3, storageUnderTest.getJournalLength("alice"));
+		assertStored(reopen(), 0, 1, 2);
+	}
+
+	@Test
+	public void removedSequencesAreRecovered() throws IOException {
+		List<KeystrokeSequence> template = new ArrayList<KeystrokeSequence>();
+		for (int i = 0; i < 4; i++) {
+			template.add(createSequence(i));
+		}
+		storageUnderTest.saveTemplate("alice", template);
+
+		template.remove(3);
+		template.remove(1);
+		storageUnderTest.saveTemplate("alice", template);
+
+		assertStored(storageUnderTest, 0, 2);
+		assertStored(reopen(), 0, 2);
+	}
+
+	@Test
+	public void unrelatedTemplateReplacesStoredOne() throws IOException {
+		List<KeystrokeSequence> template = new ArrayList<KeystrokeSequence>();
+		template.add(createSequence(0));
+		storageUnderTest.saveTemplate("alice", template);
+
+		List<KeystrokeSequence> replacement = new ArrayList<KeystrokeSequence>();
+		replacement.add(createSequence(5));
+		replacement.add(createSequence(6));
+		storageUnderTest.saveTemplate("alice", replacement);
+
+		assertStored(reopen(), 5, 6);
+	}
+
+	@Test(expected = IOException.class)
+	public void missingTemplateThrowsIOException() throws IOException {
+		storageUnderTest.getStoredTemplate("carol");
+	}
+
+	@Test
+	public void tornRecordIsTruncatedOnRecovery() throws IOException {
+		List<KeystrokeSequence> template = new ArrayList<KeystrokeSequence>();
+		template.add(createSequence(0));
+		storageUnderTest.saveTemplate("alice", template);
+		long intactLength = getJournalFile().length();
+
+		template.add(createSequence(1));
+		storageUnderTest.saveTemplate("alice", template);
+
+		// lose the end of the second record, as a crash mid-write would
+		RandomAccessFile journal = new RandomAccessFile(getJournalFile(), "rw");
+		journal.setLength(journal.length() - 3);
+		journal.close();
+
+		JournalingTemplateStorage recovered = reopen();
+		assertStored(recovered, 0);
+		assertEquals(intactLength, getJournalFile().length());
+
+		// and appending carries on from the last intact record
+		List<KeystrokeSequence> recoveredTemplate = recovered
+				.getStoredTemplate("alice");
+		recoveredTemplate.add(createSequence(2));
+		recovered.saveTemplate("alice", recoveredTemplate);
+
+		assertStored(reopen(), 0, 2);
+	}
+
+	@Test
+	public void corruptRecordIsDiscarded() throws IOException {
+		List<KeystrokeSequence> template = new ArrayList<KeystrokeSequence>();
+		template.add(createSequence(0));
+		storageUnderTest.saveTemplate("alice", template);
+		long intactLength = getJournalFile().length();
+
+		template.add(createSequence(1));
+		storageUnderTest.saveTemplate("alice", template);
+
+		RandomAccessFile journal = new RandomAccessFile(getJournalFile(), "rw");
+		journal.seek(journal.length() - 1);
+		int last = journal.read();
+		journal.seek(journal.length() - 1);
+		journal.write(last ^ 0xFF);
+		journal.close();
+
+		assertStored(reopen(), 0);
+		assertEquals(intactLength, getJournalFile().length());
+	}
+
+	@Test
+	public void journalIsCompactedIntoSnapshot() throws IOException {
+		List<KeystrokeSequence> template = new ArrayList<KeystrokeSequence>();
+		for (int i = 0; i < 5; i++) {
+			template.add(createSequence(i));
+			storageUnderTest.saveTemplate("alice", template);
+		}
+
+		assertEquals(0, storageUnderTest.getJournalLength("alice"));
+		assertTrue(new File(directory, "alice.snapshot").exists());
+
+		template.add(createSequence(5));
+		storageUnderTest.saveTemplate("alice", template);
+
+		assertEquals(1, storageUnderTest.getJournalLength("alice"));
+		assertStored(reopen(), 0, 1, 2, 3, 4, 5);
+	}
+
+	@Test
+	public void journalFromBeforeSnapshotIsNotReplayed() throws IOException {
+		List<KeystrokeSequence> template = new ArrayList<KeystrokeSequence>();
+		template.add(createSequence(0));
+		template.add(createSequence(1));
+		storageUnderTest.saveTemplate("alice", template);
+		byte[] oldJournal = readFile(getJournalFile());
+
+		storageUnderTest.compact("alice");
+
+		// as if the crash came after the snapshot but before the new journal
+		FileOutputStream output = new FileOutputStream(getJournalFile());
+		output.write(oldJournal);
+		output.close();
+
+		JournalingTemplateStorage recovered = reopen();
+		assertStored(recovered, 0, 1);
+
+		List<KeystrokeSequence> recoveredTemplate = recovered
+				.getStoredTemplate("alice");
+		recoveredTemplate.add(createSequence(2));
+		recovered.saveTemplate("alice", recoveredTemplate);
+
+		assertStored(reopen(), 0, 1, 2);
+	}
+
+	private byte[] readFile(File file) throws IOException {
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		try {
+			byte[] contents = new byte[(int) input.length()];
+			input.readFully(contents);
+			return contents;
+		} finally {
+			input.close();
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package net.ladieu.biometrics.keystroke.model.persistence;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.ladieu.biometrics.keystroke.model.Keystroke;
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedTemplateStorageTest {
+
+	private File file;
+	private MappedTemplateStorage storageUnderTest;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("templates", ".store");
+		file.delete();
+		storageUnderTest = new MappedTemplateStorage(file, 4);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		storageUnderTest.close();
+		file.delete();
+	}
+
+	private List<KeystrokeSequence> createTemplate(String value, int samples) {
+		List<KeystrokeSequence> template = new ArrayList<KeystrokeSequence>();
+		long time = 1000;
+		for (int i = 0; i < samples; i++) {
+			KeystrokeSequence sequence = new KeystrokeSequence();
+			for (char c : value.toCharArray()) {
+				Keystroke keystroke = new Keystroke(c, time);
+				sequence.addKeystroke(keystroke);
+				keystroke.release(time + 10 + i);
+				time += 50;
+			}
+			template.add(sequence);
+		}
+		return template;
+	}
+
+	private void assertStored(String userName, String value, int samples)
+			throws IOException {
+		List<KeystrokeSequence> stored = storageUnderTest
+				.getStoredTemplate(userName);
+		assertEquals(samples, stored.size());
+		for (int i = 0; i < samples; i++) {
+			assertEquals(value, stored.get(i).getCapturedValue());
+			assertEquals(10L + i, stored.get(i).getFirstKeystroke()
+					.getDwellTime());
+		}
+	}
+
+	@Test
+	public void savedTemplatesCanBeRestored() throws IOException {
+		storageUnderTest.saveTemplate("alice", createTemplate("secret", 3));
+		storageUnderTest.saveTemplate("bob", createTemplate("hunter2", 5));
+
+		assertStored("alice", "secret", 3);
+		assertStored("bob", "hunter2", 5);
+		assertEquals(2, storageUnderTest.size());
+	}
+
+	@Test
+	public void savingAgainReplacesTemplate() throws IOException {
+		storageUnderTest.saveTemplate("alice", createTemplate("secret", 3));
+		storageUnderTest.saveTemplate("alice", createTemplate("secret", 4));
+
+		assertStored("alice", "secret", 4);
+		assertEquals(1, storageUnderTest.size());
+	}
+
+	@Test(expected = IOException.class)
+	public void missingTemplateThrowsIOException() throws IOException {
+		storageUnderTest.saveTemplate("alice", createTemplate("secret", 3));
+		storageUnderTest.getStoredTemplate("carol");
+	}
+
+	@Test
+	public void indexGrowsBeyondInitialCapacity() throws IOException {
+		for (int i = 0; i < 100; i++) {
+			storageUnderTest.saveTemplate("user" + i, createTemplate("pw" + i,
+					1 + i % 5));
+		}
+
+		assertEquals(100, storageUnderTest.size());
+		for (int i = 0; i < 100; i++) {
+			assertStored("user" + i, "pw" + i, 1 + i % 5);
+		}
+	}
+
+	@Test
+	public void templatesSurviveReopening() throws IOException {
+		storageUnderTest.saveTemplate("alice", createTemplate("secret", 3));
+		storageUnderTest.saveTemplate("bob", createTemplate("hunter2", 5));
+		storageUnderTest.close();
+
+		storageUnderTest = new MappedTemplateStorage(file);
+
+		assertStored("alice", "secret", 3);
+		assertStored("bob", "hunter2", 5);
+	}
+
+	@Test
+	public void compactionKeepsOnlyCurrentTemplates() throws IOException {
+		for (int i = 1; i <= 50; i++) {
+			storageUnderTest.saveTemplate("alice", createTemplate("secret", i));
+		}
+		storageUnderTest.saveTemplate("bob", createTemplate("hunter2", 2));
+		storageUnderTest.flush();
+		long lengthBefore = file.length();
+
+		storageUnderTest.compact();
+
+		assertTrue(file.length() <= lengthBefore);
+		assertStored("alice", "secret", 50);
+		assertStored("bob", "hunter2", 2);
+	}
+
+	@Test
+	public void failedOpenReleasesTheFile() throws IOException {
+		storageUnderTest.close();
+		FileOutputStream output = new FileOutputStream(file);
+		output.write(new byte[64]);
+		output.close();
+
+		int openFiles = countOpenFiles();
+		for (int i = 0; i < 10; i++) {
+			try {
+				new MappedTemplateStorage(file);
+				fail("a file of zeros is not a template store");
+			} catch (IOException e) {
+				assertTrue(e.getMessage(), e.getMessage().indexOf(
+						"is not a template store") >= 0);
+			}
+		}
+
+		// only checked where the process's descriptors can be listed
+		if (openFiles >= 0) {
+			assertEquals(openFiles, countOpenFiles());
+		}
+	}
+
+	/**
+	 * @return the number of file descriptors this process has open, or -1 if
+	 *         that can't be told on this platform
+	 */
+	private int countOpenFiles() {
+		String[] descriptors = new File("/proc/self/fd").list();
+		return (null == descriptors ? -1 : descriptors.length);
+	}
+}
@@ -0,0 +1,210 @@
+package net.ladieu.biometrics.keystroke.model.persistence;
+
+import static org.junit.Assert.*;
+
+import java.io.FileNotFoundException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import net.ladieu.biometrics.keystroke.model.Keystroke;
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WriteBehindTemplateStorageTest {
+
+	/**
+	 * In-memory storage recording each write and flush, and failing writes
+	 * for a chosen user or, on request, every flush.
+	 */
+	private static class RecordingTemplateStorage implements TemplateStorage,
+			Flushable {
+		private final Map<String, List<KeystrokeSequence>> templates = new HashMap<String, List<KeystrokeSequence>>();
+		private final List<String> events = new ArrayList<String>();
+		private String failingUser;
+		private volatile boolean failingFlush;
+
+		public synchronized List<KeystrokeSequence> getStoredTemplate(
+				String userName) throws IOException {
+			List<KeystrokeSequence> template = templates.get(userName);
+			if (null == template) {
+				throw new FileNotFoundException(userName);
+			}
+			return template;
+		}
+
+		public synchronized void saveTemplate(String userName,
+				List<KeystrokeSequence> template) throws IOException {
+			if (userName.equals(failingUser)) {
+				throw new IOException("disk full");
+			}
+			events.add("save " + userName + " " + template.size());
+			templates.put(userName, template);
+		}
+
+		public synchronized void flush() {
+			if (failingFlush) {
+				throw new IllegalStateException("storage closed");
+			}
+			events.add("flush");
+		}
+
+		private synchronized List<String> getEvents() {
+			return new ArrayList<String>(events);
+		}
+	}
+
+	private RecordingTemplateStorage storage;
+	private WriteBehindTemplateStorage storageUnderTest;
+
+	@Before
+	public void setUp() {
+		storage = new RecordingTemplateStorage();
+		// long enough that only the tests flush, unless they say otherwise
+		storageUnderTest = new WriteBehindTemplateStorage(storage,
+				TimeUnit.HOURS.toMillis(1));
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		storage.failingUser = null;
+		storage.failingFlush = false;
+		storageUnderTest.close();
+	}
+
+	private List<KeystrokeSequence> createTemplate(int samples) {
+		List<KeystrokeSequence> template = new ArrayList<KeystrokeSequence>();
+		for (int i = 0; i < samples; i++) {
+			KeystrokeSequence sequence = new KeystrokeSequence();
+			Keystroke keystroke = new Keystroke('a', 10);
+			sequence.addKeystroke(keystroke);
+			keystroke.release(20 + i);
+			template.add(sequence);
+		}
+		return template;
+	}
+
+	@Test
+	public void saveReturnsBeforeWriting() throws IOException {
+		Future<Void> result = storageUnderTest.saveTemplateAsync("alice",
+				createTemplate(2));
+
+		assertFalse(result.isDone());
+		assertTrue(storage.getEvents().isEmpty());
+		assertEquals(1, storageUnderTest.getPendingCount());
+	}
+
+	@Test
+	public void repeatedSavesAreCoalesced() throws Exception {
+		Future<Void> first = storageUnderTest.saveTemplateAsync("alice",
+				createTemplate(2));
+		Future<Void> second = storageUnderTest.saveTemplateAsync("alice",
+				createTemplate(3));
+
+		assertSame(first, second);
+
+		storageUnderTest.flush();
+
+		assertNull(first.get());
+		assertEquals("[save alice 3, flush]", storage.getEvents().toString());
+	}
+
+	@Test
+	public void queuedTemplatesAreReadBeforeTheyAreWritten()
+			throws IOException {
+		storageUnderTest.saveTemplate("alice", createTemplate(4));
+
+		assertEquals(4, storageUnderTest.getStoredTemplate("alice").size());
+		assertTrue(storage.getEvents().isEmpty());
+	}
+
+	@Test
+	public void failedWriteFailsOnlyThatUsersFuture() throws Exception {
+		storage.failingUser = "bob";
+
+		Future<Void> alice = storageUnderTest.saveTemplateAsync("alice",
+				createTemplate(1));
+		Future<Void> bob = storageUnderTest.saveTemplateAsync("bob",
+				createTemplate(1));
+
+		try {
+			storageUnderTest.flush();
+			fail("flush should report the failed write");
+		} catch (IOException e) {
+			assertEquals("disk full", e.getMessage());
+		}
+
+		assertNull(alice.get());
+		try {
+			bob.get();
+			fail("bob's save should have failed");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+	}
+
+	@Test
+	public void uncheckedFlushFailureFailsBatchAndKeepsWriting()
+			throws Exception {
+		storageUnderTest.close();
+		storageUnderTest = new WriteBehindTemplateStorage(storage, 10);
+		storage.failingFlush = true;
+
+		Future<Void> failed = storageUnderTest.saveTemplateAsync("alice",
+				createTemplate(2));
+		try {
+			failed.get(10, TimeUnit.SECONDS);
+			fail("alice's save should have failed");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+			assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+		}
+
+		// the background writer survived the failure
+		storage.failingFlush = false;
+		Future<Void> written = storageUnderTest.saveTemplateAsync("alice",
+				createTemplate(3));
+		assertNull(written.get(10, TimeUnit.SECONDS));
+		assertEquals(3, storage.getStoredTemplate("alice").size());
+	}
+
+	@Test
+	public void savesAreWrittenInTheBackground() throws Exception {
+		storageUnderTest.close();
+		storageUnderTest = new WriteBehindTemplateStorage(storage, 10);
+
+		Future<Void> result = storageUnderTest.saveTemplateAsync("alice",
+				createTemplate(2));
+
+		assertNull(result.get(10, TimeUnit.SECONDS));
+		assertEquals(2, storage.getStoredTemplate("alice").size());
+		assertEquals(0, storageUnderTest.getPendingCount());
+	}
+
+	@Test
+	public void closeWritesQueuedSavesAndRejectsNewOnes() throws IOException {
+		Future<Void> result = storageUnderTest.saveTemplateAsync("alice",
+				createTemplate(2));
+
+		storageUnderTest.close();
+
+		assertTrue(result.isDone());
+		assertEquals("[save alice 2, flush]", storage.getEvents().toString());
+
+		try {
+			storageUnderTest.saveTemplate("alice", createTemplate(1));
+			fail("closed storage should reject saves");
+		} catch (IOException e) {
+			// pass
+		}
+	}
+}
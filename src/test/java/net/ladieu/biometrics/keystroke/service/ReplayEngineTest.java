@@ -0,0 +1,175 @@
+package net.ladieu.biometrics.keystroke.service;
+
+import static org.junit.Assert.*;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.ladieu.biometrics.keystroke.model.Keystroke;
+import net.ladieu.biometrics.keystroke.model.KeystrokeMatcher;
+import net.ladieu.biometrics.keystroke.model.KeystrokeMatcherSource;
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+import net.ladieu.biometrics.keystroke.model.StatisticalMatcher;
+import net.ladieu.biometrics.keystroke.model.persistence.TemplateStorage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReplayEngineTest {
+
+	private static final String PASSWORD = "secret";
+
+	private static final long[] DWELL = { 80, 95, 70, 110, 85, 90 };
+	private static final long[] FLIGHT = { 0, 120, 140, 90, 160, 130 };
+
+	private ExecutorService executor;
+	private VerificationService service;
+	private ReplayEngine engineUnderTest;
+
+	@Before
+	public void setUp() {
+		final StatisticalMatcher matcher = new StatisticalMatcher("alice",
+				PASSWORD, new TemplateStorage() {
+					public List<KeystrokeSequence> getStoredTemplate(
+							String userName) throws IOException {
+						throw new FileNotFoundException(userName);
+					}
+
+					public void saveTemplate(String userName,
+							List<KeystrokeSequence> template) {
+					}
+				});
+
+		for (int jitter = -4; jitter <= 4; jitter++) {
+			KeystrokeSequence sample = new KeystrokeSequence();
+			long time = 1000;
+			for (int i = 0; i < PASSWORD.length(); i++) {
+				time += FLIGHT[i] + jitter;
+				Keystroke keystroke = new Keystroke(PASSWORD.charAt(i), time);
+				sample.addKeystroke(keystroke);
+				time += DWELL[i] + jitter;
+				keystroke.release(time);
+			}
+			matcher.addSequence(sample);
+		}
+
+		service = new VerificationService(new KeystrokeMatcherSource() {
+			public KeystrokeMatcher getMatcher(String username)
+					throws IOException {
+				if ("alice".equals(username)) {
+					return matcher;
+				}
+				throw new FileNotFoundException(username);
+			}
+		});
+
+		executor = Executors.newFixedThreadPool(2);
+		engineUnderTest = new ReplayEngine(service, executor, 2);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Appends the log lines of typing the text, with dwell times scaled.
+	 */
+	private void appendAttempt(StringBuilder log, String id, String user,
+			String text, long dwellScale, boolean ended) {
+		long time = 50000;
+		for (int i = 0; i < text.length(); i++) {
+			time += FLIGHT[i % FLIGHT.length];
+			log.append(id).append('\t').append(user).append("\tD\t").append(
+					text.charAt(i)).append('\t').append(time).append('\n');
+			time += DWELL[i % DWELL.length] * dwellScale;
+			log.append(id).append('\t').append(user).append("\tU\t").append(
+					text.charAt(i)).append('\t').append(time).append('\n');
+		}
+		if (ended) {
+			log.append(id).append('\t').append(user).append("\tC\n");
+		}
+	}
+
+	private String[] replay(String log) throws Exception {
+		StringWriter output = new StringWriter();
+		engineUnderTest.replay(new StringReader(log), output);
+		return output.toString().split("\n");
+	}
+
+	@Test
+	public void eachAttemptIsVerifiedInTheOrderItEnded() throws Exception {
+		StringBuilder log = new StringBuilder();
+		appendAttempt(log, "1", "alice", PASSWORD, 1, true);
+		appendAttempt(log, "2", "alice", PASSWORD, 3, true);
+		appendAttempt(log, "3", "alice", "secrat", 1, true);
+		appendAttempt(log, "4", "bob", PASSWORD, 1, true);
+		// no end line; verified at the end of the log
+		appendAttempt(log, "5", "alice", PASSWORD, 1, false);
+
+		String[] lines = replay(log.toString());
+
+		assertEquals(5, lines.length);
+		assertEquals("1\talice\t1.0\ttrue\tfalse\tfalse\t6", lines[0]);
+		assertTrue(lines[1], lines[1].startsWith("2\talice\t"));
+		assertTrue(lines[1], lines[1].contains("\tfalse\tfalse\t"));
+		// rejected as soon as the wrong key is released
+		assertEquals("3\talice\t0.0\tfalse\tfalse\ttrue\t5", lines[2]);
+		assertTrue(lines[3], lines[3].startsWith("4\tbob\tERROR\t"));
+		assertEquals("5\talice\t1.0\ttrue\tfalse\tfalse\t6", lines[4]);
+	}
+
+	@Test
+	public void interleavedAttemptsAreSeparated() throws Exception {
+		StringBuilder first = new StringBuilder();
+		appendAttempt(first, "a", "alice", PASSWORD, 1, true);
+		StringBuilder second = new StringBuilder();
+		appendAttempt(second, "b", "alice", PASSWORD, 1, true);
+
+		String[] firstLines = first.toString().split("\n");
+		String[] secondLines = second.toString().split("\n");
+		StringBuilder log = new StringBuilder();
+		for (int i = 0; i < firstLines.length; i++) {
+			log.append(secondLines[i]).append('\n');
+			log.append(firstLines[i]).append('\n');
+		}
+
+		String[] lines = replay(log.toString());
+
+		assertEquals(2, lines.length);
+		assertEquals("b\talice\t1.0\ttrue\tfalse\tfalse\t6", lines[0]);
+		assertEquals("a\talice\t1.0\ttrue\tfalse\tfalse\t6", lines[1]);
+	}
+
+	@Test
+	public void tabIsReadAsAKey() throws Exception {
+		String[] lines = replay("1\talice\tD\t\t\t100\n"
+				+ "1\talice\tU\t\t\t180\n1\talice\tC\n");
+
+		// tab is not a password key, so the attempt is corrupt
+		assertEquals("1\talice\t0.0\tfalse\ttrue\tfalse\t0", lines[0]);
+	}
+
+	@Test(expected = IOException.class)
+	public void malformedLineFailsReplay() throws Exception {
+		replay("1\talice\tD\ts\tnot a time\n");
+	}
+
+	@Test(expected = IOException.class)
+	public void tooManyOpenAttemptsFailsReplay() throws Exception {
+		engineUnderTest = new ReplayEngine(service, executor, 2, 2);
+
+		StringBuilder log = new StringBuilder();
+		appendAttempt(log, "1", "alice", PASSWORD, 1, false);
+		appendAttempt(log, "2", "alice", PASSWORD, 1, false);
+		appendAttempt(log, "3", "alice", PASSWORD, 1, false);
+
+		replay(log.toString());
+	}
+}
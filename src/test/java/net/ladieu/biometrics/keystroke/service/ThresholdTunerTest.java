@@ -0,0 +1,133 @@
+package net.ladieu.biometrics.keystroke.service;
+
+import static org.junit.Assert.*;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.ladieu.biometrics.keystroke.model.Keystroke;
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+import net.ladieu.biometrics.keystroke.model.StatisticalMatcher;
+import net.ladieu.biometrics.keystroke.model.persistence.TemplateStorage;
+import net.ladieu.biometrics.keystroke.service.ThresholdTuner.Evaluation;
+import net.ladieu.biometrics.keystroke.service.ThresholdTuner.EvaluationSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThresholdTunerTest {
+
+	private static final String PASSWORD = "secret";
+
+	private static final long[] DWELL = { 80, 95, 70, 110, 85, 90 };
+	private static final long[] FLIGHT = { 0, 120, 140, 90, 160, 130 };
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(2);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Types the password with every dwell time scaled and shifted.
+	 */
+	private KeystrokeSequence createAttempt(double dwellScale, long jitter) {
+		KeystrokeSequence result = new KeystrokeSequence();
+		long time = 1000;
+		for (int i = 0; i < PASSWORD.length(); i++) {
+			time += FLIGHT[i] + jitter;
+			Keystroke keystroke = new Keystroke(PASSWORD.charAt(i), time);
+			result.addKeystroke(keystroke);
+			time += (long) (DWELL[i] * dwellScale) + jitter;
+			keystroke.release(time);
+		}
+		return result;
+	}
+
+	private EvaluationSet createSet(String username) {
+		StatisticalMatcher template = new StatisticalMatcher(username,
+				PASSWORD, new TemplateStorage() {
+					public List<KeystrokeSequence> getStoredTemplate(
+							String userName) throws IOException {
+						throw new FileNotFoundException(userName);
+					}
+
+					public void saveTemplate(String userName,
+							List<KeystrokeSequence> template) {
+					}
+				});
+		for (int jitter = -4; jitter <= 4; jitter++) {
+			template.addSequence(createAttempt(1.0, jitter));
+		}
+
+		List<KeystrokeSequence> genuine = new ArrayList<KeystrokeSequence>();
+		List<KeystrokeSequence> impostor = new ArrayList<KeystrokeSequence>();
+		for (int i = 0; i < 20; i++) {
+			// mostly within the template, sometimes a little outside it
+			genuine.add(createAttempt(1.0 + (i % 3) * 0.025, 0));
+			impostor.add(createAttempt(1.3 + i * 0.05, i % 5));
+		}
+
+		return new EvaluationSet(username, template, genuine, impostor);
+	}
+
+	@Test
+	public void recommendedThresholdSeparatesGenuineFromImpostors()
+			throws InterruptedException {
+		Evaluation evaluation = new ThresholdTuner(executor)
+				.evaluate(createSet("alice"));
+
+		assertEquals("alice", evaluation.getUsername());
+		assertTrue(evaluation.getRecommendedThreshold() < 1.0f);
+		assertEquals(0.0, evaluation.getFalseAcceptRate(), 0.0);
+		assertEquals(0.0, evaluation.getFalseRejectRate(), 0.0);
+		assertEquals(0.0, evaluation.getCurve().getEqualErrorRate(), 0.0);
+	}
+
+	@Test
+	public void everyUserIsEvaluatedInOrder() throws InterruptedException {
+		List<EvaluationSet> sets = new ArrayList<EvaluationSet>();
+		for (int i = 0; i < 10; i++) {
+			sets.add(createSet("user" + i));
+		}
+		ThresholdTuner tuner = new ThresholdTuner(executor, 0.0);
+
+		List<Evaluation> evaluations = tuner.evaluateAll(sets);
+
+		assertEquals(10, evaluations.size());
+		for (int i = 0; i < 10; i++) {
+			assertEquals("user" + i, evaluations.get(i).getUsername());
+			assertEquals(0.0, evaluations.get(i).getFalseAcceptRate(), 0.0);
+			assertEquals(tuner.evaluate(sets.get(i))
+					.getRecommendedThreshold(), evaluations.get(i)
+					.getRecommendedThreshold(), 0.0f);
+		}
+		assertEquals(200, ThresholdTuner.pool(evaluations).getGenuineCount());
+	}
+
+	@Test
+	public void falseAcceptRateOutsideZeroToOneIsRejected() {
+		double[] invalid = { -1, -0.01, 1.01, Double.NaN };
+		for (double rate : invalid) {
+			try {
+				new ThresholdTuner(executor, rate);
+				fail("accepted a false accept rate of " + rate);
+			} catch (IllegalArgumentException expected) {
+				// every rate is checked
+			}
+		}
+		new ThresholdTuner(executor, 0);
+		new ThresholdTuner(executor, 1);
+	}
+}
@@ -0,0 +1,282 @@
+package net.ladieu.biometrics.keystroke.service;
+
+import static org.junit.Assert.*;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.ladieu.biometrics.keystroke.model.Keystroke;
+import net.ladieu.biometrics.keystroke.model.KeystrokeMatcher;
+import net.ladieu.biometrics.keystroke.model.KeystrokeMatcherSource;
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+import net.ladieu.biometrics.keystroke.model.StatisticalMatcher;
+import net.ladieu.biometrics.keystroke.model.StatisticalMatcherRegistry;
+import net.ladieu.biometrics.keystroke.model.persistence.TemplateStorage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class VerificationServiceTest {
+
+	private static final String PASSWORD = "secret";
+
+	private static final long[] DWELL = { 80, 95, 70, 110, 85, 90 };
+	private static final long[] FLIGHT = { 0, 120, 140, 90, 160, 130 };
+
+	private StatisticalMatcher matcher;
+	private VerificationService serviceUnderTest;
+
+	@Before
+	public void setUp() {
+		matcher = new StatisticalMatcher("alice", PASSWORD,
+				new TemplateStorage() {
+					public List<KeystrokeSequence> getStoredTemplate(
+							String userName) throws IOException {
+						throw new FileNotFoundException(userName);
+					}
+
+					public void saveTemplate(String userName,
+							List<KeystrokeSequence> template) {
+					}
+				});
+
+		for (int jitter = -4; jitter <= 4; jitter++) {
+			matcher.addSequence(createSample(jitter));
+		}
+
+		serviceUnderTest = new VerificationService(
+				new KeystrokeMatcherSource() {
+					public KeystrokeMatcher getMatcher(String username)
+							throws IOException {
+						if ("alice".equals(username)) {
+							return matcher;
+						}
+						throw new FileNotFoundException(username);
+					}
+				});
+	}
+
+	private KeystrokeSequence createSample(long jitter) {
+		KeystrokeSequence result = new KeystrokeSequence();
+		long time = 1000;
+		for (int i = 0; i < PASSWORD.length(); i++) {
+			time += FLIGHT[i] + jitter;
+			Keystroke keystroke = new Keystroke(PASSWORD.charAt(i), time);
+			result.addKeystroke(keystroke);
+			time += DWELL[i] + jitter;
+			keystroke.release(time);
+		}
+		return result;
+	}
+
+	private List<RawKeyEvent> createAttempt(String text, long dwellScale) {
+		List<RawKeyEvent> result = new ArrayList<RawKeyEvent>();
+		long time = 50000;
+		for (int i = 0; i < text.length(); i++) {
+			time += FLIGHT[i % FLIGHT.length];
+			result.add(RawKeyEvent.keyDown(text.charAt(i), time));
+			time += DWELL[i % DWELL.length] * dwellScale;
+			result.add(RawKeyEvent.keyUp(text.charAt(i), time));
+		}
+		return result;
+	}
+
+	@Test
+	public void typicalAttemptMatches() throws IOException {
+		VerificationResult result = serviceUnderTest.verify("alice",
+				createAttempt(PASSWORD, 1));
+
+		assertTrue(result.isMatch());
+		assertFalse(result.isCorrupted());
+		assertEquals(KeystrokeMatcher.EXACT_MATCH, result.getDistance(), 0.0f);
+		assertEquals(PASSWORD.length(), result.getKeystrokeCount());
+	}
+
+	@Test
+	public void attemptWithDifferentRhythmDoesNotMatch() throws IOException {
+		VerificationResult result = serviceUnderTest.verify("alice",
+				createAttempt(PASSWORD, 3));
+
+		assertFalse(result.isMatch());
+		assertTrue(result.getDistance() < KeystrokeMatcher.EXACT_MATCH);
+	}
+
+	@Test
+	public void wrongPasswordDoesNotMatch() throws IOException {
+		VerificationResult result = serviceUnderTest.verify("alice",
+				createAttempt("secrat", 1));
+
+		assertFalse(result.isMatch());
+		assertEquals(KeystrokeMatcher.NO_MATCH, result.getDistance(), 0.0f);
+	}
+
+	@Test
+	public void attemptIsRejectedAsSoonAsItCanNoLongerMatch()
+			throws IOException {
+		VerificationSession session = serviceUnderTest.openSession("alice");
+
+		assertTrue(session.keyDown('s', 100));
+		assertTrue(session.keyUp('s', 100 + DWELL[0] * 3));
+		assertTrue(session.isRejected());
+
+		// the rest of the attempt is not even recorded
+		assertFalse(session.keyDown('e', 1000));
+
+		VerificationResult result = session.complete();
+		assertFalse(result.isMatch());
+		assertTrue(result.isRejectedEarly());
+		assertFalse(result.isCorrupted());
+		assertEquals(1, result.getKeystrokeCount());
+		assertFalse(session.isRejected());
+	}
+
+	@Test
+	public void disallowedKeyCorruptsAttempt() throws IOException {
+		VerificationSession session = serviceUnderTest.openSession("alice");
+
+		session.keyDown('s', 100);
+		session.keyUp('s', 180);
+		assertFalse(session.keyDown('!', 300));
+		assertTrue(session.isCorrupted());
+
+		VerificationResult result = session.complete();
+		assertFalse(result.isMatch());
+		assertTrue(result.isCorrupted());
+	}
+
+	@Test
+	public void sessionCanBeReusedAfterCompletion() throws IOException {
+		VerificationSession session = serviceUnderTest.openSession("alice");
+
+		session.keyDown('!', 100);
+		assertTrue(session.complete().isCorrupted());
+
+		for (RawKeyEvent event : createAttempt(PASSWORD, 1)) {
+			if (event.isDown()) {
+				assertTrue(session.keyDown(event.getKey(), event
+						.getClientTime()));
+			} else {
+				assertTrue(session.keyUp(event.getKey(), event
+						.getClientTime()));
+			}
+		}
+		assertEquals(0, session.getActiveKeyCount());
+		assertTrue(session.complete().isMatch());
+	}
+
+	@Test
+	public void matchingAttemptsAdaptTemplate() throws IOException {
+		matcher.setAdaptiveWindow(9);
+		assertEquals(DWELL[0] - 4, matcher.getCompiledTemplate().getMinDwell(0));
+
+		assertFalse(serviceUnderTest.verify("alice", createAttempt(PASSWORD, 3))
+				.isMatch());
+		assertEquals(DWELL[0] - 4, matcher.getCompiledTemplate().getMinDwell(0));
+
+		assertTrue(serviceUnderTest.verify("alice", createAttempt(PASSWORD, 1))
+				.isMatch());
+
+		// the slowest sample made way for the attempt
+		assertEquals(9, matcher.getNumberOfTemplatesCaptured());
+		assertEquals(DWELL[0] - 3, matcher.getCompiledTemplate().getMinDwell(0));
+	}
+
+	@Test
+	public void reusedSessionScoresAgainstAdaptedTemplate() throws IOException {
+		matcher.setAdaptiveWindow(9);
+		VerificationSession session = serviceUnderTest.openSession("alice");
+		List<RawKeyEvent> fastest = toEvents(createSample(-4));
+		assertEquals(KeystrokeMatcher.EXACT_MATCH, matcher
+				.getDistance(createSample(-4)), 0.0f);
+
+		assertTrue(complete(session, createAttempt(PASSWORD, 1)).isMatch());
+
+		// the fastest sample has left the window, so typing it again no
+		// longer matches, just as in a new session
+		VerificationResult result = complete(session, fastest);
+		assertFalse(result.isMatch());
+		assertTrue(result.isRejectedEarly());
+		assertFalse(serviceUnderTest.verify("alice", fastest).isMatch());
+	}
+
+	@Test
+	public void matchesThroughRegistryAdaptAndSaveTemplate() throws IOException {
+		final Map<String, List<KeystrokeSequence>> stored = new HashMap<String, List<KeystrokeSequence>>();
+		TemplateStorage storage = new TemplateStorage() {
+			public List<KeystrokeSequence> getStoredTemplate(String userName)
+					throws IOException {
+				if (!stored.containsKey(userName)) {
+					throw new FileNotFoundException(userName);
+				}
+				return new ArrayList<KeystrokeSequence>(stored.get(userName));
+			}
+
+			public void saveTemplate(String userName,
+					List<KeystrokeSequence> template) {
+				stored.put(userName, new ArrayList<KeystrokeSequence>(template));
+			}
+		};
+		List<KeystrokeSequence> template = new ArrayList<KeystrokeSequence>();
+		for (int jitter = -4; jitter <= 4; jitter++) {
+			template.add(createSample(jitter));
+		}
+		storage.saveTemplate("alice", template);
+
+		StatisticalMatcherRegistry registry = new StatisticalMatcherRegistry(
+				storage, 10, 60000);
+		registry.setAdaptiveWindow(9);
+		VerificationService service = new VerificationService(registry);
+
+		assertTrue(service.verify("alice", createAttempt(PASSWORD, 1))
+				.isMatch());
+
+		// the cached matcher moved, and kept its entry
+		StatisticalMatcher cached = registry.getMatcher("alice");
+		assertEquals(1L, registry.getMissCount());
+		assertEquals(DWELL[0] - 3, cached.getCompiledTemplate().getMinDwell(0));
+
+		// and so does the template loaded once it is gone
+		registry.invalidateAll();
+		StatisticalMatcher reloaded = registry.getMatcher("alice");
+		assertNotSame(cached, reloaded);
+		assertEquals(9, reloaded.getNumberOfTemplatesCaptured());
+		assertEquals(DWELL[0] - 3, reloaded.getCompiledTemplate().getMinDwell(0));
+	}
+
+	private List<RawKeyEvent> toEvents(KeystrokeSequence sequence) {
+		List<RawKeyEvent> result = new ArrayList<RawKeyEvent>();
+		for (int i = 0; i < sequence.size(); i++) {
+			result.add(RawKeyEvent.keyDown(sequence.getValue(i), sequence
+					.getStartTime(i)));
+			result.add(RawKeyEvent.keyUp(sequence.getValue(i), sequence
+					.getEndTime(i)));
+		}
+		return result;
+	}
+
+	private VerificationResult complete(VerificationSession session,
+			List<RawKeyEvent> events) {
+		for (RawKeyEvent event : events) {
+			if (event.isDown()) {
+				session.keyDown(event.getKey(), event.getClientTime());
+			} else {
+				session.keyUp(event.getKey(), event.getClientTime());
+			}
+		}
+		return session.complete();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeClientTimeIsRejected() throws IOException {
+		serviceUnderTest.openSession("alice").keyDown('s', -1);
+	}
+
+	@Test(expected = IOException.class)
+	public void unknownUserCanNotOpenSession() throws IOException {
+		serviceUnderTest.openSession("bob");
+	}
+}
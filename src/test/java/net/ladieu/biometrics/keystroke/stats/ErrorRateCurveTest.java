@@ -0,0 +1,73 @@
+package net.ladieu.biometrics.keystroke.stats;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ErrorRateCurveTest {
+
+	private static final float[] GENUINE = { 1.0f, 1.0f, 0.9f, 0.8f, 0.6f };
+	private static final float[] IMPOSTOR = { 0.7f, 0.5f, 0.4f, 0.4f, 0.0f };
+
+	@Test
+	public void ratesFollowTheThreshold() {
+		ErrorRateCurve curve = new ErrorRateCurve(GENUINE, IMPOSTOR);
+
+		assertEquals(1.0, curve.getFalseAcceptRate(0.0f), 0.0);
+		assertEquals(0.0, curve.getFalseRejectRate(0.0f), 0.0);
+
+		assertEquals(0.2, curve.getFalseAcceptRate(0.7f), 0.0001);
+		assertEquals(0.2, curve.getFalseRejectRate(0.7f), 0.0001);
+
+		assertEquals(0.0, curve.getFalseAcceptRate(1.0f), 0.0);
+		assertEquals(0.6, curve.getFalseRejectRate(1.0f), 0.0001);
+	}
+
+	@Test
+	public void thresholdsAreTheDistinctDistancesAndOneAbove() {
+		float[] thresholds = new ErrorRateCurve(GENUINE, IMPOSTOR)
+				.getThresholds();
+
+		assertEquals(9, thresholds.length);
+		assertEquals(0.0f, thresholds[0], 0.0f);
+		assertEquals(1.0f, thresholds[7], 0.0f);
+		assertTrue(thresholds[8] > 1.0f);
+	}
+
+	@Test
+	public void equalErrorIsWhereTheRatesCross() {
+		ErrorRateCurve curve = new ErrorRateCurve(GENUINE, IMPOSTOR);
+
+		assertEquals(0.7f, curve.getEqualErrorThreshold(), 0.0f);
+		assertEquals(0.2, curve.getEqualErrorRate(), 0.0001);
+	}
+
+	@Test
+	public void falseAcceptTargetPicksLowestSafeThreshold() {
+		ErrorRateCurve curve = new ErrorRateCurve(GENUINE, IMPOSTOR);
+
+		assertEquals(0.8f, curve.getThresholdForFalseAcceptRate(0.0), 0.0f);
+		assertEquals(0.5f, curve.getThresholdForFalseAcceptRate(0.4), 0.0f);
+	}
+
+	@Test
+	public void pooledCurveHoldsEveryDistance() {
+		ErrorRateCurve first = new ErrorRateCurve(GENUINE, IMPOSTOR);
+		ErrorRateCurve second = new ErrorRateCurve(new float[] { 0.2f },
+				new float[] { 0.9f });
+
+		ErrorRateCurve pooled = ErrorRateCurve.pool(Arrays.asList(first,
+				second));
+
+		assertEquals(6, pooled.getGenuineCount());
+		assertEquals(6, pooled.getImpostorCount());
+		assertEquals(2 / 6.0, pooled.getFalseAcceptRate(0.7f), 0.0001);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void impostorDistancesAreRequired() {
+		new ErrorRateCurve(GENUINE, new float[0]);
+	}
+}
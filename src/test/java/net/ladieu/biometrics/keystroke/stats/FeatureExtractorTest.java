@@ -0,0 +1,116 @@
+package net.ladieu.biometrics.keystroke.stats;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.ladieu.biometrics.keystroke.model.Keystroke;
+import net.ladieu.biometrics.keystroke.model.KeystrokeSequence;
+import net.ladieu.biometrics.keystroke.model.KeystrokeTimings;
+import net.ladieu.biometrics.keystroke.model.PackedKeystrokeSequence;
+import net.ladieu.biometrics.keystroke.stats.FeatureExtractor.Feature;
+
+import org.junit.Test;
+
+public class FeatureExtractorTest {
+
+	/**
+	 * a: 100-180, b: 250-330, c: 300-420 (pressed before b is released)
+	 */
+	private KeystrokeSequence createSequence(long offset) {
+		KeystrokeSequence sequence = new KeystrokeSequence();
+		Keystroke a = new Keystroke('a', 100 + offset);
+		Keystroke b = new Keystroke('b', 250 + offset);
+		Keystroke c = new Keystroke('c', 300 + offset);
+		sequence.addKeystroke(a);
+		a.release(180 + offset);
+		sequence.addKeystroke(b);
+		sequence.addKeystroke(c);
+		b.release(330 + offset);
+		c.release(420 + offset);
+		return sequence;
+	}
+
+	@Test
+	public void everyFeatureIsExtracted() {
+		long[] features = new FeatureExtractor()
+				.extract(createSequence(0));
+
+		assertTrue(Arrays.toString(features), Arrays.equals(new long[] {
+				// dwell, flight, down-down, up-up
+				80, 0, 0, 0,
+				80, 70, 150, 150,
+				120, -30, 50, 90 }, features));
+	}
+
+	@Test
+	public void dwellAndFlightMatchSequenceTimings() {
+		FeatureExtractor extractor = new FeatureExtractor(Feature.DWELL,
+				Feature.FLIGHT);
+		KeystrokeSequence sequence = createSequence(0);
+
+		for (KeystrokeTimings timings : new KeystrokeTimings[] { sequence,
+				PackedKeystrokeSequence.pack(sequence) }) {
+			long[] features = extractor.extract(timings);
+			for (int i = 0; i < timings.size(); i++) {
+				assertEquals(timings.getDwellTime(i), features[extractor
+						.getIndex(i, Feature.DWELL)]);
+				assertEquals(timings.getFlightTime(i), features[extractor
+						.getIndex(i, Feature.FLIGHT)]);
+			}
+		}
+	}
+
+	@Test
+	public void unreleasedKeystrokeHasNoDwellOrUpUpTime() {
+		KeystrokeSequence sequence = new KeystrokeSequence();
+		Keystroke a = new Keystroke('a', 100);
+		sequence.addKeystroke(a);
+		a.release(150);
+		sequence.addKeystroke(new Keystroke('b', 200));
+
+		long[] features = new FeatureExtractor(Feature.DWELL, Feature.UP_UP)
+				.extract(sequence);
+
+		assertTrue(Arrays.equals(new long[] { 50, 0, 0, 0 }, features));
+	}
+
+	@Test
+	public void matrixHoldsOneRowPerSample() {
+		List<KeystrokeSequence> samples = new ArrayList<KeystrokeSequence>();
+		samples.add(createSequence(0));
+		samples.add(createSequence(1000));
+
+		FeatureExtractor extractor = new FeatureExtractor(Feature.DWELL,
+				Feature.DOWN_DOWN);
+		FeatureMatrix matrix = extractor.extract(samples);
+
+		assertEquals(2, matrix.getRowCount());
+		assertEquals(6, matrix.getColumnCount());
+		assertTrue(Arrays.equals(extractor.extract(samples.get(1)), matrix
+				.getRow(1)));
+
+		int dwellOfC = extractor.getIndex(2, Feature.DWELL);
+		assertTrue(Arrays.equals(new long[] { 120, 120 }, matrix
+				.getColumn(dwellOfC)));
+		assertEquals(120.0, matrix.getColumnMeans()[dwellOfC], 0.0);
+		assertEquals(120.0, matrix.getColumnStatistics(dwellOfC).getMedian(),
+				0.0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void samplesMustHaveTheSameLength() {
+		List<KeystrokeSequence> samples = new ArrayList<KeystrokeSequence>();
+		samples.add(createSequence(0));
+		samples.add(new KeystrokeSequence());
+
+		new FeatureExtractor().extract(samples);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void featureNotExtractedHasNoIndex() {
+		new FeatureExtractor(Feature.DWELL).getIndex(0, Feature.FLIGHT);
+	}
+}
@@ -0,0 +1,125 @@
+package net.ladieu.biometrics.keystroke.stats;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.jfree.data.statistics.BoxAndWhiskerCalculator;
+import org.jfree.data.statistics.BoxAndWhiskerItem;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RunningBoxAndWhiskerStatisticsTest {
+
+	private RunningBoxAndWhiskerStatistics statsUnderTest;
+	private List<Number> sample;
+	private Random random;
+
+	@Before
+	public void setUp() {
+		statsUnderTest = new RunningBoxAndWhiskerStatistics();
+		sample = new ArrayList<Number>();
+		random = new Random(42);
+	}
+
+	private void add(long value) {
+		statsUnderTest.add(value);
+		sample.add(value);
+	}
+
+	private void assertMatchesCalculator() {
+		BoxAndWhiskerItem expected = BoxAndWhiskerCalculator
+				.calculateBoxAndWhiskerStatistics(sample);
+		BoxPlotStatistics actual = statsUnderTest.createStatistics();
+
+		assertMatches(expected, actual);
+		assertEquals(expected.getOutliers(), statsUnderTest.getOutliers());
+	}
+
+	/**
+	 * Asserts that our statistics agree with JFreeChart's for the same sample.
+	 */
+	static void assertMatches(BoxAndWhiskerItem expected,
+			BoxPlotStatistics actual) {
+		assertEquals(expected.getMean().doubleValue(), actual.getMean(), 1e-9);
+		assertEquals(expected.getMedian().doubleValue(), actual.getMedian(),
+				0.0);
+		assertEquals(expected.getQ1().doubleValue(), actual.getQ1(), 0.0);
+		assertEquals(expected.getQ3().doubleValue(), actual.getQ3(), 0.0);
+		assertEquals(expected.getMinRegularValue().longValue(), actual
+				.getMinRegularValue());
+		assertEquals(expected.getMaxRegularValue().longValue(), actual
+				.getMaxRegularValue());
+		assertEquals(expected.getMinOutlier().longValue(), actual
+				.getMinOutlier());
+		assertEquals(expected.getMaxOutlier().longValue(), actual
+				.getMaxOutlier());
+
+		List<?> expectedOutliers = expected.getOutliers();
+		long[] actualOutliers = actual.getOutliers();
+		assertEquals(expectedOutliers.size(), actualOutliers.length);
+		for (int i = 0; i < actualOutliers.length; i++) {
+			assertEquals(((Number) expectedOutliers.get(i)).longValue(),
+					actualOutliers[i]);
+		}
+	}
+
+	@Test
+	public void singleValueIsItsOwnRange() {
+		add(7);
+		assertMatchesCalculator();
+		assertEquals(7L, statsUnderTest.getMinRegularValue());
+		assertEquals(7L, statsUnderTest.getMaxRegularValue());
+	}
+
+	@Test
+	public void outliersAreExcludedFromRegularRange() {
+		add(10);
+		add(11);
+		add(12);
+		add(13);
+		add(100);
+		add(-50);
+
+		assertMatchesCalculator();
+		assertEquals(10L, statsUnderTest.getMinRegularValue());
+		assertEquals(13L, statsUnderTest.getMaxRegularValue());
+	}
+
+	@Test
+	public void matchesCalculatorAsValuesAreAdded() {
+		for (int i = 0; i < 200; i++) {
+			add(random.nextInt(300) - 50);
+			assertMatchesCalculator();
+		}
+	}
+
+	@Test
+	public void matchesCalculatorAsValuesAreRemoved() {
+		for (int i = 0; i < 100; i++) {
+			add(random.nextInt(40));
+		}
+
+		while (sample.size() > 1) {
+			Number removed = sample.remove(random.nextInt(sample.size()));
+			assertTrue(statsUnderTest.remove(removed.longValue()));
+			assertMatchesCalculator();
+		}
+	}
+
+	@Test
+	public void removingAbsentValueHasNoEffect() {
+		add(1);
+		add(2);
+		assertFalse(statsUnderTest.remove(3));
+		assertEquals(2, statsUnderTest.getCount());
+		assertMatchesCalculator();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void emptyStatisticsCanNotBeCreated() {
+		statsUnderTest.createStatistics();
+	}
+}